@@ -37,13 +37,14 @@ import com.jme3.ai.agents.util.GameEntity;
 import com.jme3.scene.Spatial;
 import com.jme3.math.FastMath;
 import com.jme3.math.Vector3f;
+import com.jme3.util.TempVars;
 
 /**
  * Class that represents Agent.
  *
  * @author Jesús Martín Berlanga
  * @author Tihomir Radosavljević
- * @version 1.7.4
+ * @version 1.9.0
  */
 public class Agent<T> extends GameEntity {
 
@@ -201,13 +202,16 @@ public class Agent<T> extends GameEntity {
      *
      * If the distance is inside [minDistance. maxDistance] It is considered in
      * the same neighborhood if the forwardness is higher than "1 -
-     * sinMaxAngle".
+     * sinMaxAngle". <br> <br>
+     *
+     * Position of neighbour is taken from its snapshot.
      *
      * @param GameEntity The other agent
      * @param minDistance Min. distance to be in the same "neighborhood"
      * @param maxDistance Max. distance to be in the same "neighborhood"
      * @param maxAngle Max angle in radians
      *
+     * @see GameEntity#getSnapshotTranslation()
      * @throws SteeringExceptions.NegativeValueException If minDistance or
      * maxDistance is lower than 0
      *
@@ -224,7 +228,8 @@ public class Agent<T> extends GameEntity {
         if (this == neighbour) {
             isInBoidNeighborhood = false;
         } else {
-            float distanceSquared = distanceSquaredRelativeToGameEntity(neighbour);
+            //neighbour is read from snapshot, so result doesn't depend on update order
+            float distanceSquared = distanceSquaredFromPosition(neighbour.getSnapshotTranslation());
             // definitely in neighborhood if inside minDistance sphere
             if (distanceSquared < (minDistance * minDistance)) {
                 isInBoidNeighborhood = true;
@@ -234,8 +239,9 @@ public class Agent<T> extends GameEntity {
             } // otherwise, test angular offset from forward axis.
             else {
                 if (this.getAcceleration() != null) {
-                    Vector3f unitOffset = this.offset(neighbour).divide(distanceSquared);
-                    float forwardness = this.forwardness(unitOffset);
+                    TempVars vars = TempVars.get();
+                    float forwardness = this.forwardness(offset(neighbour.getSnapshotTranslation(), vars.vect1));
+                    vars.release();
                     isInBoidNeighborhood = forwardness > FastMath.cos(maxAngle);
                 } else {
                     isInBoidNeighborhood = false;
@@ -254,20 +260,21 @@ public class Agent<T> extends GameEntity {
      * @return The time until nearest approach
      */
     public float predictNearestApproachTime(GameEntity gameEntity) {
+        TempVars vars = TempVars.get();
         Vector3f agentVelocity = velocity;
         Vector3f otherVelocity = gameEntity.getVelocity();
 
         if (agentVelocity == null) {
-            agentVelocity = new Vector3f();
+            agentVelocity = Vector3f.ZERO;
         }
 
         if (otherVelocity == null) {
-            otherVelocity = new Vector3f();
+            otherVelocity = Vector3f.ZERO;
         }
 
         /* "imagine we are at the origin with no velocity,
          compute the relative velocity of the other vehicle" */
-        Vector3f relVel = otherVelocity.subtract(agentVelocity);
+        Vector3f relVel = vars.vect3.set(otherVelocity).subtractLocal(agentVelocity);
         float relSpeed = relVel.length();
 
         /* "Now consider the path of the other vehicle in this relative
@@ -276,12 +283,13 @@ public class Agent<T> extends GameEntity {
          the nearest approach." */
 
         // "Take the unit tangent along the other vehicle's path"
-        Vector3f relTangent = relVel.divide(relSpeed);
+        Vector3f relTangent = relVel.divideLocal(relSpeed);
 
         /* "find distance from its path to origin (compute offset from
          other to us, find length of projection onto path)" */
-        Vector3f offset = gameEntity.offset(this);
+        Vector3f offset = gameEntity.offset(this, vars.vect4);
         float projection = relTangent.dot(offset);
+        vars.release();
 
         return projection / relSpeed;
     }
@@ -302,17 +310,20 @@ public class Agent<T> extends GameEntity {
         Vector3f otherVelocity = agent.getVelocity();
 
         if (agentVelocity == null) {
-            agentVelocity = new Vector3f();
+            agentVelocity = Vector3f.ZERO;
         }
 
         if (otherVelocity == null) {
-            otherVelocity = new Vector3f();
+            otherVelocity = Vector3f.ZERO;
         }
 
-        Vector3f myTravel = agentVelocity.mult(time);
-        Vector3f otherTravel = otherVelocity.mult(time);
+        TempVars vars = TempVars.get();
+        Vector3f myTravel = vars.vect3.set(agentVelocity).multLocal(time);
+        Vector3f otherTravel = vars.vect4.set(otherVelocity).multLocal(time);
+        float distance = myTravel.distance(otherTravel);
+        vars.release();
 
-        return myTravel.distance(otherTravel);
+        return distance;
     }
 
     /**
@@ -338,21 +349,18 @@ public class Agent<T> extends GameEntity {
         Vector3f otherVelocity = gameEntity.getVelocity();
 
         if (agentVelocity == null) {
-            agentVelocity = new Vector3f();
+            agentVelocity = Vector3f.ZERO;
         }
 
         if (otherVelocity == null) {
-            otherVelocity = new Vector3f();
+            otherVelocity = Vector3f.ZERO;
         }
 
-        Vector3f myTravel = agentVelocity.mult(time);
-        Vector3f otherTravel = otherVelocity.mult(time);
-
         //annotation
-        ourPositionAtNearestApproach.set(myTravel);
-        hisPositionAtNearestApproach.set(otherTravel);
+        ourPositionAtNearestApproach.set(agentVelocity).multLocal(time);
+        hisPositionAtNearestApproach.set(otherVelocity).multLocal(time);
 
-        return myTravel.distance(otherTravel);
+        return ourPositionAtNearestApproach.distance(hisPositionAtNearestApproach);
     }
 
     @Override
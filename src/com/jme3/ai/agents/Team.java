@@ -29,13 +29,16 @@
  */
 package com.jme3.ai.agents;
 
+import com.jme3.ai.agents.util.GameEntity;
+import java.util.ArrayList;
+import java.util.Collections;
 import java.util.List;
 
 /**
  * Class for team of agents.
  *
  * @author Tihomir Radosavljević
- * @version 1.0.0
+ * @version 1.1.0
  */
 public class Team {
 
@@ -51,6 +54,11 @@ public class Team {
      * Members of team.
      */
     private List<Agent> members;
+    /**
+     * Members of team as game entities, shared by all behaviors that use this
+     * team as their neighbours. Null if members changed since it was made.
+     */
+    private List<GameEntity> membersAsGameEntities;
 
     public Team(String name) {
         this.name = name;
@@ -83,14 +91,32 @@ public class Team {
 
     public void setMembers(List<Agent> members) {
         this.members = members;
+        membersAsGameEntities = null;
     }
 
     public void addMember(Agent agent) {
         members.add(agent);
+        membersAsGameEntities = null;
     }
 
     public void removeMember(Agent agent) {
         members.remove(agent);
+        membersAsGameEntities = null;
+    }
+
+    /**
+     * Read-only copy of members as game entities. Same list is returned until
+     * members are changed through this team, so behaviors that use it can
+     * share cached neighbourhoods.
+     *
+     * @see com.jme3.ai.agents.util.control.NeighborhoodService
+     * @return members of team
+     */
+    public List<GameEntity> getMembersAsGameEntities() {
+        if (membersAsGameEntities == null) {
+            membersAsGameEntities = Collections.unmodifiableList(new ArrayList<GameEntity>(members));
+        }
+        return membersAsGameEntities;
     }
 
     @Override
@@ -38,8 +38,9 @@ import java.util.ArrayList;
 import java.util.List;
 import com.jme3.ai.agents.util.control.MonkeyBrainsAppState;
 import com.jme3.ai.agents.util.GameEntity;
+import com.jme3.ai.agents.util.spatial.SpatialHashGrid;
+import com.jme3.ai.agents.util.spatial.SpatialIndex;
 import com.jme3.math.Vector3f;
-import java.util.LinkedList;
 
 /**
  * Simple look behaviour for NPC. It calls for all behavior that are added in
@@ -53,9 +54,15 @@ import java.util.LinkedList;
  * @see MonkeyBrainsAppState#addAgent(com.jme3.ai.agents.Agent)
  * <br><br>
  * It is necessity to set visibilityRange, or the agent will be kind of blind.
+ * <br><br>
+ * If game has spatial grid, only game entities that the grid finds in
+ * visibility range are checked. Grid is refreshed before agents are updated,
+ * so its query radius is larger by grid margin, and found game entities are
+ * checked again on their current positions.
+ * @see MonkeyBrainsAppState#setSpatialGrid(com.jme3.ai.agents.util.spatial.SpatialHashGrid)
  *
  * @author Tihomir Radosavljević
- * @version 1.4.0
+ * @version 1.6.1
  */
 public class SimpleLookBehavior extends Behavior {
 
@@ -75,6 +82,21 @@ public class SimpleLookBehavior extends Behavior {
      * What entities will this behavior report seeing.
      */
     protected TypeOfWatching typeOfWatching;
+    /**
+     * Game entities seen in last look. The same list is returned from every
+     * look, and it is cleared and filled again in the next one.
+     */
+    protected List<GameEntity> seen = new ArrayList<GameEntity>();
+    /**
+     * How much farther than visibility range spatial grid is searched,
+     * negative for quarter of cell size of grid.
+     */
+    protected float gridMargin = -1;
+    /**
+     * Game entities found by spatial grid.
+     */
+    private GameEntity[] candidates = new GameEntity[16];
+    private final Vector3f forward = new Vector3f();
 
     public static enum TypeOfWatching {
 
@@ -148,30 +170,62 @@ public class SimpleLookBehavior extends Behavior {
      *
      * @param agent - watcher
      * @param viewAngle - viewing angle
-     * @return list of all game entities that can be seen by agent
+     * @return list of all game entities that can be seen by agent, the same
+     * list is returned from every look and it is overwritten in the next one,
+     * so it must be copied to be kept
      */
     protected List<GameEntity> look(Agent agent, float viewAngle) {
-        List<GameEntity> temp = new LinkedList<GameEntity>();
+        seen.clear();
+        float cosViewAngle = FastMath.cos(this.viewAngle);
+        boolean watchingAgents = typeOfWatching == TypeOfWatching.AGENT_WATCHING || typeOfWatching == TypeOfWatching.WATCH_EVERYTHING;
+        boolean watchingGameEntities = typeOfWatching == TypeOfWatching.GAME_ENTITY_WATCHING || typeOfWatching == TypeOfWatching.WATCH_EVERYTHING;
+        SpatialHashGrid grid = agent.getAppState().getSpatialGrid();
+        if (grid != null) {
+            int layerMask = 0;
+            if (watchingAgents) {
+                layerMask |= SpatialIndex.AGENT_LAYER;
+            }
+            if (watchingGameEntities) {
+                layerMask |= SpatialIndex.GAME_ENTITY_LAYER;
+            }
+            //grid has positions from before this tick, so game entities that
+            //moved into range since then are found with margin
+            float radius = visibilityRange + (gridMargin < 0 ? grid.getCellSize() * 0.25f : gridMargin);
+            int count = grid.queryRadius(agent.getLocalTranslation(), radius, layerMask, candidates);
+            while (count == candidates.length) {
+                candidates = new GameEntity[candidates.length * 2];
+                count = grid.queryRadius(agent.getLocalTranslation(), radius, layerMask, candidates);
+            }
+            //lookable() checks current positions, not positions in grid
+            for (int i = 0; i < count; i++) {
+                GameEntity candidate = candidates[i];
+                candidates[i] = null;
+                if (candidate.isEnabled() && candidate != agent && lookable(agent, candidate, cosViewAngle)) {
+                    seen.add(candidate);
+                }
+            }
+            return seen;
+        }
         //are there seen agents
-        if (typeOfWatching == TypeOfWatching.AGENT_WATCHING || typeOfWatching == TypeOfWatching.WATCH_EVERYTHING) {
-            List<Agent> agents = MonkeyBrainsAppState.getInstance().getAgents();
+        if (watchingAgents) {
+            List<Agent> agents = agent.getAppState().getAgents();
             for (int i = 0; i < agents.size(); i++) {
                 if (agents.get(i).isEnabled()) {
-                    if (!agents.get(i).equals(agent) && lookable(agent, agents.get(i))) {
-                        temp.add(agents.get(i));
+                    if (!agents.get(i).equals(agent) && lookable(agent, agents.get(i), cosViewAngle)) {
+                        seen.add(agents.get(i));
                     }
                 }
             }
         }
-        if (typeOfWatching == TypeOfWatching.GAME_ENTITY_WATCHING || typeOfWatching == TypeOfWatching.WATCH_EVERYTHING) {
-            List<GameEntity> gameEntities = MonkeyBrainsAppState.getInstance().getGameEntities();
-            for (GameEntity gameEntity : gameEntities) {
-                if (gameEntity.isEnabled() && lookable(agent, gameEntity)) {
-                    temp.add(gameEntity);
+        if (watchingGameEntities) {
+            List<GameEntity> gameEntities = agent.getAppState().getGameEntities();
+            for (int i = 0; i < gameEntities.size(); i++) {
+                if (gameEntities.get(i).isEnabled() && lookable(agent, gameEntities.get(i), cosViewAngle)) {
+                    seen.add(gameEntities.get(i));
                 }
             }
         }
-        return temp;
+        return seen;
     }
 
     /**
@@ -184,18 +238,52 @@ public class SimpleLookBehavior extends Behavior {
      * @return
      */
     public boolean lookable(Agent observer, GameEntity gameEntity) {
+        return lookable(observer, gameEntity, FastMath.cos(viewAngle));
+    }
+
+    /**
+     * Checking if game entity is in visibility range and view angle, without
+     * square roots and arc cosines.
+     *
+     * @param observer
+     * @param gameEntity
+     * @param cosViewAngle cosine of view angle
+     * @return true if observer can see game entity
+     */
+    protected boolean lookable(Agent observer, GameEntity gameEntity, float cosViewAngle) {
+        if (visibilityRange < 0) {
+            return false;
+        }
+        Vector3f observerPosition = observer.getLocalTranslation();
+        Vector3f position = gameEntity.getLocalTranslation();
+        float dx = position.x - observerPosition.x;
+        float dy = position.y - observerPosition.y;
+        float dz = position.z - observerPosition.z;
+        float distanceSquared = dx * dx + dy * dy + dz * dz;
         //if agent is not in visible range
-        if (observer.getLocalTranslation().distance(gameEntity.getLocalTranslation())
-                > visibilityRange) {
+        if (distanceSquared > visibilityRange * visibilityRange) {
             return false;
         }
-        Vector3f direction = observer.getLocalRotation().mult(new Vector3f(0, 0, -1));
-        Vector3f direction2 = observer.getLocalTranslation().subtract(gameEntity.getLocalTranslation()).normalizeLocal();
-        float angle = direction.angleBetween(direction2);
-        if (angle > viewAngle) {
+        if (viewAngle < 0) {
             return false;
         }
-        return true;
+        if (viewAngle >= FastMath.PI) {
+            return true;
+        }
+        if (distanceSquared == 0) {
+            //there is no direction, angle is considered to be right angle
+            return viewAngle >= FastMath.HALF_PI;
+        }
+        //angle between backward direction and direction from game entity to
+        //observer is same as angle between forward direction and direction
+        //from observer to game entity
+        observer.getLocalRotation().mult(Vector3f.UNIT_Z, forward);
+        float dot = forward.x * dx + forward.y * dy + forward.z * dz;
+        float threshold = cosViewAngle * cosViewAngle * distanceSquared;
+        if (cosViewAngle >= 0) {
+            return dot >= 0 && dot * dot >= threshold;
+        }
+        return dot >= 0 || dot * dot <= threshold;
     }
 
     /**
@@ -258,4 +346,23 @@ public class SimpleLookBehavior extends Behavior {
     public void setVisibilityRange(float visibilityRange) {
         this.visibilityRange = visibilityRange;
     }
+
+    /**
+     * @return how much farther than visibility range spatial grid is searched
+     */
+    public float getGridMargin() {
+        return gridMargin;
+    }
+
+    /**
+     * Game entities that moved farther than margin since spatial grid was
+     * refreshed are not found, so it should be at least the largest distance
+     * that game entity moves in one tick.
+     *
+     * @param gridMargin how much farther than visibility range spatial grid
+     * is searched, negative for quarter of cell size of grid
+     */
+    public void setGridMargin(float gridMargin) {
+        this.gridMargin = gridMargin;
+    }
 }
@@ -35,6 +35,7 @@ import com.jme3.ai.agents.util.control.MonkeyBrainsAppState;
 import java.util.ArrayList;
 import java.util.LinkedList;
 import java.util.List;
+import java.util.RandomAccess;
 
 /**
  * Simple main behavior for NPC. Main behavior contains other Behaviors and if
@@ -43,14 +44,14 @@ import java.util.List;
  * CompoundSteeringBehaviour to merge more steer behaviors into one.
  *
  * @author Tihomir Radosavljević
- * @version 1.1.1
+ * @version 1.3.0
  */
 public class SimpleMainBehavior extends Behavior {
 
     /**
-     * Behaviors are implemented as LinkedList for flexibility. If there isn't
-     * changing behaviors while agent is active you can change it to ArrayList
-     * for speed.
+     * Behaviors are implemented as ArrayList, so updating them doesn't
+     * allocate iterator every frame. Other lists can be set with
+     * setBehaviors().
      *
      * @see ArrayList
      * @see LinkedList
@@ -58,7 +59,7 @@ public class SimpleMainBehavior extends Behavior {
     protected List<Behavior> behaviors;
     /**
      * Instance of aiAppState. Main behavior will not work if aiAppState is not
-     * in progress.
+     * in progress. If it isn't set, game of agent is used.
      *
      * @see MonkeyBrainsAppState#inProgress
      */
@@ -72,18 +73,37 @@ public class SimpleMainBehavior extends Behavior {
     public SimpleMainBehavior(Agent agent) {
         //Main behavior doesn't have need for spatials.
         super(agent);
-        aiAppState = MonkeyBrainsAppState.getInstance();
-        behaviors = new LinkedList<Behavior>();
+        behaviors = new ArrayList<Behavior>();
         enabled = true;
     }
 
     @Override
     protected void controlUpdate(float tpf) {
-        for (Behavior behaviour : behaviors) {
-            behaviour.update(tpf);
+        if (behaviors instanceof RandomAccess) {
+            for (int i = 0; i < behaviors.size(); i++) {
+                behaviors.get(i).update(tpf);
+            }
+        } else {
+            for (Behavior behaviour : behaviors) {
+                behaviour.update(tpf);
+            }
         }
     }
 
+    /**
+     * @return game in which this behavior works
+     */
+    public MonkeyBrainsAppState getAiAppState() {
+        if (aiAppState == null) {
+            return agent.getAppState();
+        }
+        return aiAppState;
+    }
+
+    public void setAiAppState(MonkeyBrainsAppState aiAppState) {
+        this.aiAppState = aiAppState;
+    }
+
     /**
      * Remove all behaviors from this behavior.
      */
@@ -44,11 +44,17 @@ import java.util.List;
  * attributes that are all common for steering behaviors. <br><br>
  *
  * You can change the braking factor (to a value lower than 1) so that this
- * behavior will slow down the agent velocity.
+ * behavior will slow down the agent velocity. <br><br>
+ *
+ * Steering is calculated with calculateSteering(Vector3f), which writes
+ * result into given vector, so updating steering behavior doesn't allocate
+ * new vectors. Behaviors that override only calculateSteering() still work,
+ * their result is copied into store vector. Behavior that implements store
+ * variants opts into them by returning true from isStoreSteering().
  *
  * @author Tihomir Radosavljević
  * @author Jesús Martín Berlanga
- * @version 1.5.2
+ * @version 1.7.1
  */
 public abstract class AbstractSteeringBehavior extends Behavior {
 
@@ -64,7 +70,28 @@ public abstract class AbstractSteeringBehavior extends Behavior {
      * Time per frame.
      */
     protected float timePerFrame;
-
+    /**
+     * Steering vector and acceleration of the last update, reused every
+     * frame.
+     */
+    private final Vector3f steering = new Vector3f();
+    private final Vector3f acceleration = new Vector3f();
+    /**
+     * New velocity of agent, and velocity limited to maximum move speed.
+     * They are separate so agent keeps velocity before limiting, as it
+     * always did.
+     */
+    private final Vector3f newVelocity = new Vector3f();
+    private final Vector3f limitedVelocity = new Vector3f();
+    /**
+     * Vectors that this behavior gave to agent as its acceleration and
+     * velocity. Only these are changed in place, vectors that agent got from
+     * anyone else are replaced, because they can be shared or constants.
+     */
+    private Vector3f agentAcceleration;
+    private Vector3f agentVelocity;
+    private final Vector3f translation = new Vector3f();
+    private final Quaternion lookRotation = new Quaternion();
     /**
      * @see Behavior#Behavior(com.jme3.ai.agents.Agent)
      */
@@ -89,19 +116,62 @@ public abstract class AbstractSteeringBehavior extends Behavior {
      */
     protected abstract Vector3f calculateSteering();
 
+    /**
+     * Method for calculating steering vector without allocating new vectors.
+     * Default implementation copies result of calculateSteering() into store.
+     *
+     * @param store vector into which steering vector is written
+     * @return store
+     */
+    protected Vector3f calculateSteering(Vector3f store) {
+        return store.set(calculateSteering());
+    }
+
+    /**
+     * Tells if store variants of steering methods are used for this behavior.
+     * Default is false, so behavior that overrides only allocating variants
+     * works as before. Built-in behaviors that implement store variants return
+     * true only if getClass() is their own class, so their subclasses outside
+     * of framework that override only allocating variants still get them
+     * called. Subclass that implements store variants too can return true.
+     *
+     * @return true if store variants of steering methods are used
+     */
+    protected boolean isStoreSteering() {
+        return false;
+    }
+
     /**
      * Method for calculating new velocity of agent based on steering vector.
+     * Returned vector is reused in next update.
      *
-     * @see AbstractSteeringBehavior#calculateSteering()
+     * @see AbstractSteeringBehavior#calculateSteering(com.jme3.math.Vector3f)
      * @return The new velocity for this agent based on steering vector
      */
     protected Vector3f calculateNewVelocity() {
-        agent.setAcceleration(calculateSteering().mult(1 / agentTotalMass()));
-        velocity = velocity.add(agent.getAcceleration());
-        agent.setVelocity(velocity);
+        if (isStoreSteering()) {
+            calculateSteering(steering);
+        } else {
+            steering.set(calculateSteering());
+        }
+        acceleration.set(steering).multLocal(1 / agentTotalMass());
+        velocity = newVelocity.set(velocity).addLocal(acceleration);
+        //agent gets copies, vectors of behavior are changed again next update
+        if (agent.getAcceleration() == agentAcceleration && agentAcceleration != null) {
+            agentAcceleration.set(acceleration);
+        } else {
+            agentAcceleration = new Vector3f(acceleration);
+            agent.setAcceleration(agentAcceleration);
+        }
+        if (agent.getVelocity() == agentVelocity && agentVelocity != null) {
+            agentVelocity.set(velocity);
+        } else {
+            agentVelocity = new Vector3f(velocity);
+            agent.setVelocity(agentVelocity);
+        }
 
         if (velocity.length() > agent.getMaxMoveSpeed()) {
-            velocity = velocity.normalize().mult(agent.getMaxMoveSpeed());
+            velocity = limitedVelocity.set(velocity).normalizeLocal().multLocal(agent.getMaxMoveSpeed());
         }
         return velocity;
     }
@@ -112,9 +182,8 @@ public abstract class AbstractSteeringBehavior extends Behavior {
      * @param tpf time per frame
      */
     protected void rotateAgent(float tpf) {
-        Quaternion q = new Quaternion();
-        q.lookAt(velocity, new Vector3f(0, 1, 0));
-        agent.getLocalRotation().slerp(q, agent.getRotationSpeed() * tpf);
+        lookRotation.lookAt(velocity, Vector3f.UNIT_Y);
+        agent.getLocalRotation().slerp(lookRotation, agent.getRotationSpeed() * tpf);
     }
 
     /**
@@ -178,9 +247,9 @@ public abstract class AbstractSteeringBehavior extends Behavior {
     protected void controlUpdate(float tpf) {
         this.timePerFrame = tpf;
         //calculate new velocity
-        Vector3f vel = calculateNewVelocity().mult(tpf).mult(this.brakingFactor);
+        Vector3f vel = translation.set(calculateNewVelocity()).multLocal(tpf).multLocal(this.brakingFactor);
         //translate agent
-        agent.setLocalTranslation(agent.getLocalTranslation().add(vel));
+        agent.setLocalTranslation(vel.addLocal(agent.getLocalTranslation()));
         //rotate agent
         rotateAgent(tpf);
     }
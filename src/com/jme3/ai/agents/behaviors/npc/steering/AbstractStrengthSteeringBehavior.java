@@ -35,6 +35,7 @@ import com.jme3.ai.agents.behaviors.npc.steering.SteeringExceptions.NegativeValu
 import com.jme3.math.Plane;
 import com.jme3.math.Vector3f;
 import com.jme3.scene.Spatial;
+import com.jme3.util.TempVars;
 
 /**
  * With this class it will be possible to increase or decrease the steering
@@ -48,14 +49,18 @@ import com.jme3.scene.Spatial;
  * <br><br>
  *
  * You need to call setupStrengthControl( ... ), otherwhise this class will work
- * the same as AstractSteeringBehavior.
+ * the same as AstractSteeringBehavior. <br><br>
+ *
+ * Behaviors should implement calculateRawSteering(Vector3f), which writes
+ * raw steering into given vector, and strength is then applied to that vector
+ * in place.
  *
  * @see SteerStrengthType
  * @see AbstractSteeringBehavior
  *
  * @author Jesús Martín Berlanga
  * @author Tihomir Radosavljević
- * @version 2.1.1
+ * @version 2.2.0
  */
 public abstract class AbstractStrengthSteeringBehavior extends AbstractSteeringBehavior {
 
@@ -205,6 +210,9 @@ public abstract class AbstractStrengthSteeringBehavior extends AbstractSteeringB
      */
     @Override
     protected Vector3f calculateSteering() {
+        if (isStoreSteering()) {
+            return calculateSteering(new Vector3f());
+        }
 
         Vector3f strengthSteeringForce = calculateRawSteering();
 
@@ -233,6 +241,47 @@ public abstract class AbstractStrengthSteeringBehavior extends AbstractSteeringB
         return strengthSteeringForce;
     }
 
+    /**
+     * Calculates the steering force with the specified strength, without
+     * allocating new vectors.
+     *
+     * @see AbstractStrengthSteeringBehavior#calculateSteering()
+     * @param store vector into which steering force is written
+     * @return store
+     */
+    @Override
+    protected Vector3f calculateSteering(Vector3f store) {
+        if (!isStoreSteering()) {
+            return super.calculateSteering(store);
+        }
+
+        calculateRawSteering(store);
+
+        switch (this.type) {
+            case SCALAR:
+                store.multLocal(this.scalar);
+                break;
+
+            case AXIS:
+                store.set(store.x * this.x, store.y * this.y, store.z * this.z);
+                break;
+
+            case PLANE:
+                TempVars vars = TempVars.get();
+                this.plane.getClosestPoint(vars.vect1.set(store), store).multLocal(this.scalar);
+                vars.release();
+                break;
+
+        }
+
+        //if there is no steering force, than the steering vector is zero
+        if (store.equals(Vector3f.NAN)) {
+            store.zero();
+        }
+
+        return store;
+    }
+
     /**
      * If a behavior class extend from CompoundSteeringBehaviour instead of
      * AbstractSteeringBehavior, it must implement this method instead of
@@ -242,4 +291,18 @@ public abstract class AbstractStrengthSteeringBehavior extends AbstractSteeringB
      * @return
      */
     protected abstract Vector3f calculateRawSteering();
+
+    /**
+     * Calculates raw steering force without allocating new vectors. Default
+     * implementation copies result of calculateRawSteering() into store, so
+     * built-in behaviors override this method and calculateRawSteering() only
+     * delegates to it.
+     *
+     * @see AbstractStrengthSteeringBehavior#calculateRawSteering()
+     * @param store vector into which raw steering force is written
+     * @return store
+     */
+    protected Vector3f calculateRawSteering(Vector3f store) {
+        return store.set(calculateRawSteering());
+    }
 }
\ No newline at end of file
@@ -36,6 +36,7 @@ import com.jme3.ai.agents.util.GameEntity;
 import com.jme3.math.FastMath;
 import com.jme3.math.Vector3f;
 import com.jme3.scene.Spatial;
+import com.jme3.util.TempVars;
 import java.util.List;
 
 /**
@@ -48,8 +49,12 @@ import java.util.List;
  * forward vector. This steering will tend to turn our character so it is
  * aligned with its neighbors."
  *
+ * Store variants of steering are used only when behavior is exactly
+ * AlignmentBehavior, so subclass that overrides only calculateRawSteering()
+ * still gets it called.
+ *
  * @author Jesús Martín Berlanga
- * @version 1.2.1
+ * @version 1.5.3
  */
 public class AlignmentBehavior extends AbstractStrengthSteeringBehavior {
 
@@ -72,7 +77,7 @@ public class AlignmentBehavior extends AbstractStrengthSteeringBehavior {
     public AlignmentBehavior(Agent agent) {
         super(agent);
         try {
-            neighbours = convertToGameEntities(agent.getTeam().getMembers());
+            neighbours = agent.getTeam().getMembersAsGameEntities();
         } catch (NullPointerException npe) {
             throw new AgentExceptions.TeamNotFoundException(agent);
         }
@@ -92,7 +97,7 @@ public class AlignmentBehavior extends AbstractStrengthSteeringBehavior {
             this.validateMaxDistance(maxDistance);
             this.maxDistance = maxDistance;
             this.maxAngle = maxAngle;
-            neighbours = convertToGameEntities(agent.getTeam().getMembers());
+            neighbours = agent.getTeam().getMembersAsGameEntities();
         } catch (NullPointerException npe) {
             throw new AgentExceptions.TeamNotFoundException(agent);
         }
@@ -114,7 +119,7 @@ public class AlignmentBehavior extends AbstractStrengthSteeringBehavior {
             this.validateMaxDistance(maxDistance);
             this.maxDistance = maxDistance;
             this.maxAngle = maxAngle;
-            neighbours = convertToGameEntities(agent.getTeam().getMembers());
+            neighbours = agent.getTeam().getMembersAsGameEntities();
         } catch (NullPointerException npe) {
             throw new AgentExceptions.TeamNotFoundException(agent);
         }
@@ -187,23 +192,35 @@ public class AlignmentBehavior extends AbstractStrengthSteeringBehavior {
      */
     @Override
     protected Vector3f calculateRawSteering() {
+        return calculateRawSteering(new Vector3f());
+    }
+
+    /**
+     * @see AlignmentBehavior#calculateRawSteering()
+     */
+    @Override
+    protected Vector3f calculateRawSteering(Vector3f store) {
         // steering accumulator and count of neighbors, both initially zero
-        Vector3f steering = new Vector3f();
+        store.zero();
         int realNeighbors = 0;
+        // neighbourhood is shared with other flocking behaviors of agent
+        List<GameEntity> inNeighborhood = this.agent.getAppState().getNeighborhoodService()
+                .getNeighbours(this.agent, this.neighbours, this.agent.getRadius() * 3, this.maxDistance, this.maxAngle);
+        TempVars vars = TempVars.get();
+        Vector3f forward = vars.vect1;
         // for each of the other vehicles...
-        for (GameEntity gameEntity : neighbours) {
-            if (this.agent.inBoidNeighborhood(gameEntity, this.agent.getRadius() * 3, this.maxDistance, this.maxAngle)) {
-                // accumulate sum of neighbor's positions
-                steering = steering.add(gameEntity.fordwardVector());
-                realNeighbors++;
-            }
+        for (int i = 0; i < inNeighborhood.size(); i++) {
+            // accumulate sum of neighbor's forward vectors
+            store.addLocal(inNeighborhood.get(i).getSnapshotForwardVector(forward));
+            realNeighbors++;
         }
+        vars.release();
         // divide by neighbors, subtract off current position to get error-correcting direction
         if (realNeighbors > 0) {
-            steering = steering.divide(realNeighbors);
-            steering = this.agent.offset(steering);
+            store.divideLocal(realNeighbors);
+            this.agent.offset(store, store);
         }
-        return steering;
+        return store;
     }
 
     public void setNeighbours(List<GameEntity> neighbours) {
@@ -211,8 +228,18 @@ public class AlignmentBehavior extends AbstractStrengthSteeringBehavior {
     }
 
     public void setNeighboursFromTeam(Team team) {
-        this.neighbours = convertToGameEntities(team.getMembers());
+        this.neighbours = team.getMembersAsGameEntities();
     }
     
     
-}
\ No newline at end of file
+
+    /**
+     * Store variants of steering methods are implemented in this class.
+     *
+     * @see AbstractSteeringBehavior#isStoreSteering()
+     */
+    @Override
+    protected boolean isStoreSteering() {
+        return getClass() == AlignmentBehavior.class;
+    }
+}
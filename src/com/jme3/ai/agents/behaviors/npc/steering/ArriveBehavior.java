@@ -39,17 +39,17 @@ import com.jme3.scene.Spatial;
  * causes the character to slow down as it approaches the target, eventually
  * slowing to a stop coincident with the target.
  *
+ * Store variants of steering are used only when behavior is exactly
+ * ArriveBehavior, so subclass that overrides only calculateRawSteering()
+ * still gets it called.
+ *
  * @see SeekBehavior
  *
  * @author Jesús Martín Berlanga
- * @version 1.2.1
+ * @version 1.4.1
  */
 public class ArriveBehavior extends SeekBehavior {
 
-    /**
-     * Distance of targetPosition that is acceptable.
-     */
-    private static final float ERROR_FACTOR = 0.001f;
     /**
      * Rate of negative acceleration.
      */
@@ -85,7 +85,7 @@ public class ArriveBehavior extends SeekBehavior {
      */
     public ArriveBehavior(Agent agent, Vector3f seekingPosition) {
         super(agent, seekingPosition);
-        this.slowingDistance = agent.getLocalTranslation().subtract(seekingPosition).length() * 0.1f;
+        this.slowingDistance = agent.distanceFromPosition(seekingPosition) * 0.1f;
     }
 
     /**
@@ -96,7 +96,7 @@ public class ArriveBehavior extends SeekBehavior {
      */
     public ArriveBehavior(Agent agent, Vector3f seekingPosition, Spatial spatial) {
         super(agent, seekingPosition, spatial);
-        this.slowingDistance = agent.getLocalTranslation().subtract(seekingPosition).length() * 0.1f;
+        this.slowingDistance = agent.distanceFromPosition(seekingPosition) * 0.1f;
     }
 
     /**
@@ -165,25 +165,37 @@ public class ArriveBehavior extends SeekBehavior {
      */
     @Override
     protected Vector3f calculateRawSteering() {
-        float distanceToTarget;
+        return calculateRawSteering(new Vector3f());
+    }
+
+    /**
+     * @see ArriveBehavior#calculateRawSteering()
+     */
+    @Override
+    protected Vector3f calculateRawSteering(Vector3f store) {
         float radious = 0;
 
+        float distanceToTarget;
         if (this.getTarget() != null) {
             distanceToTarget = this.agent.distanceRelativeToGameEntity(this.getTarget());
             radious = this.getTarget().getRadius();
         } else if (this.getSeekingPosition() != null) {
-            distanceToTarget = this.agent.getLocalTranslation().subtract(this.getSeekingPosition()).length();
-        } else {
-            return new Vector3f(); //We dont have any target or location to arrive 
-        }
-        if (distanceToTarget < radious + ArriveBehavior.ERROR_FACTOR) {
-            this.setBrakingFactor(0);
-        } else if (distanceToTarget < this.slowingDistance) {
-            this.setBrakingFactor(distanceToTarget / this.slowingDistance);
+            distanceToTarget = this.agent.distanceFromPosition(this.getSeekingPosition());
         } else {
-            this.setBrakingFactor(1);
+            return store.zero(); //We dont have any target or location to arrive 
         }
+        this.setBrakingFactor(SteeringKernels.arrivalFactor(distanceToTarget, radious, this.slowingDistance));
+
+        return super.calculateRawSteering(store);
+    }
 
-        return super.calculateRawSteering();
+    /**
+     * Store variants of steering methods are implemented in this class.
+     *
+     * @see AbstractSteeringBehavior#isStoreSteering()
+     */
+    @Override
+    protected boolean isStoreSteering() {
+        return getClass() == ArriveBehavior.class;
     }
 }
@@ -48,7 +48,7 @@ import java.util.List;
  * @see CompoundSteeringBehavior
  *
  * @author Jesús Martín Berlanga
- * @version 2.0.1
+ * @version 2.0.2
  */
 public class BalancedCompoundSteeringBehavior extends CompoundSteeringBehavior {
 
@@ -151,4 +151,15 @@ public class BalancedCompoundSteeringBehavior extends CompoundSteeringBehavior {
             partialForces.clear();
         }
     }
+
+    /**
+     * Only allocating variant of calculatePartialForce is overridden, so
+     * store variants of compound behavior are not used.
+     *
+     * @see AbstractSteeringBehavior#isStoreSteering()
+     */
+    @Override
+    protected boolean isStoreSteering() {
+        return false;
+    }
 }
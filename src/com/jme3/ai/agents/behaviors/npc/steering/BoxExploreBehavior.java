@@ -41,7 +41,7 @@ import java.util.List;
  * This is the simplest implementation of explore behavior.
  *
  * @author Jesús Martín Berlanga
- * @version 1.0.1
+ * @version 1.0.3
  */
 public class BoxExploreBehavior extends AbstractStrengthSteeringBehavior {
 
@@ -130,7 +130,7 @@ public class BoxExploreBehavior extends AbstractStrengthSteeringBehavior {
 
             for (int i = 0; i < this.targets.size(); i++) {
                 Vector3f target = this.targets.get(i);
-                float distanceFromTarget = this.agent.offset(target).length();
+                float distanceFromTarget = this.agent.distanceFromPosition(target);
 
                 if (distanceFromTarget < this.subdivisionDistance / 2) {
                     this.targets.remove(i);
@@ -141,8 +141,7 @@ public class BoxExploreBehavior extends AbstractStrengthSteeringBehavior {
             }
 
             if (closest != null) {
-                SeekBehavior seek = new SeekBehavior(this.agent, closest);
-                steer = seek.calculateRawSteering();
+                steer = SteeringKernels.seek(this.agent, closest, new Vector3f());
             } else {
                 isFinished = true;
             }
@@ -41,8 +41,12 @@ import java.util.List;
 /**
  * Move toward center of neighbors.
  *
+ * Store variants of steering are used only when behavior is exactly
+ * CohesionBehavior, so subclass that overrides only calculateRawSteering()
+ * still gets it called.
+ *
  * @author Jesús Martín Berlanga
- * @version 1.1.3
+ * @version 1.4.3
  */
 public class CohesionBehavior extends AbstractStrengthSteeringBehavior {
 
@@ -60,7 +64,7 @@ public class CohesionBehavior extends AbstractStrengthSteeringBehavior {
     public CohesionBehavior(Agent agent) {
         super(agent);
         try {
-            this.neighbours = convertToGameEntities(agent.getTeam().getMembers());
+            this.neighbours = agent.getTeam().getMembersAsGameEntities();
         } catch (NullPointerException npe) {
             throw new AgentExceptions.TeamNotFoundException(agent);
         }
@@ -85,7 +89,7 @@ public class CohesionBehavior extends AbstractStrengthSteeringBehavior {
             this.validateMaxDistance(maxDistance);
             this.maxDistance = maxDistance;
             this.maxAngle = maxAngle;
-            this.neighbours = convertToGameEntities(agent.getTeam().getMembers());
+            this.neighbours = agent.getTeam().getMembersAsGameEntities();
         } catch (NullPointerException npe) {
             throw new AgentExceptions.TeamNotFoundException(agent);
         }
@@ -99,7 +103,7 @@ public class CohesionBehavior extends AbstractStrengthSteeringBehavior {
     public CohesionBehavior(Agent agent, Spatial spatial) {
         super(agent, spatial);
         try {
-            this.neighbours = convertToGameEntities(agent.getTeam().getMembers());
+            this.neighbours = agent.getTeam().getMembersAsGameEntities();
         } catch (NullPointerException npe) {
             throw new AgentExceptions.TeamNotFoundException(agent);
         }
@@ -117,7 +121,7 @@ public class CohesionBehavior extends AbstractStrengthSteeringBehavior {
             this.validateMaxDistance(maxDistance);
             this.maxDistance = maxDistance;
             this.maxAngle = maxAngle;
-            this.neighbours = convertToGameEntities(agent.getTeam().getMembers());
+            this.neighbours = agent.getTeam().getMembersAsGameEntities();
         } catch (NullPointerException npe) {
             throw new AgentExceptions.TeamNotFoundException(agent);
         }
@@ -190,25 +194,34 @@ public class CohesionBehavior extends AbstractStrengthSteeringBehavior {
      */
     @Override
     protected Vector3f calculateRawSteering() {
+        return calculateRawSteering(new Vector3f());
+    }
+
+    /**
+     * @see CohesionBehavior#calculateRawSteering()
+     */
+    @Override
+    protected Vector3f calculateRawSteering(Vector3f store) {
         // steering accumulator and count of neighbors, both initially zero
-        Vector3f steering = new Vector3f();
+        store.zero();
         int realNeighbors = 0;
 
+        // neighbourhood is shared with other flocking behaviors of agent
+        List<GameEntity> inNeighborhood = this.agent.getAppState().getNeighborhoodService()
+                .getNeighbours(this.agent, this.neighbours, this.agent.getRadius() * 3, this.maxDistance, this.maxAngle);
         // for each of the other vehicles...
-        for (GameEntity neighbour : this.neighbours) {
-            if (this.agent.inBoidNeighborhood(neighbour, this.agent.getRadius() * 3, this.maxDistance, this.maxAngle)) {
-                // accumulate sum of neighbor's positions
-                steering = steering.add(neighbour.getLocalTranslation());
-                realNeighbors++;
-            }
+        for (int i = 0; i < inNeighborhood.size(); i++) {
+            // accumulate sum of neighbor's positions
+            store.addLocal(inNeighborhood.get(i).getSnapshotTranslation());
+            realNeighbors++;
         }
 
         // divide by neighbors, subtract off current position to get error-correcting direction
         if (realNeighbors > 0) {
-            steering = steering.divide(realNeighbors);
-            steering = this.agent.offset(steering);
+            store.divideLocal(realNeighbors);
+            this.agent.offset(store, store);
         }
-        return steering;
+        return store;
     }
 
     public void setNeighbours(List<GameEntity> neighbours) {
@@ -216,6 +229,16 @@ public class CohesionBehavior extends AbstractStrengthSteeringBehavior {
     }
 
     public void setNeighboursFromTeam(Team team) {
-        this.neighbours = convertToGameEntities(team.getMembers());
+        this.neighbours = team.getMembersAsGameEntities();
+    }
+
+    /**
+     * Store variants of steering methods are implemented in this class.
+     *
+     * @see AbstractSteeringBehavior#isStoreSteering()
+     */
+    @Override
+    protected boolean isStoreSteering() {
+        return getClass() == CohesionBehavior.class;
     }
-}
\ No newline at end of file
+}
@@ -53,8 +53,12 @@ import com.jme3.scene.Spatial;
  * uses that layer. Otherwise, it moves on to the second layer, and so on.
  * <br><br>
  *
+ * Store variants of steering are used only when behavior is exactly
+ * CompoundSteeringBehavior, so subclass that overrides only
+ * calculateRawSteering() still gets it called.
+ *
  * @author Jesús Martín Berlanga
- * @version 2.1
+ * @version 2.2.2
  */
 public class CompoundSteeringBehavior extends AbstractStrengthSteeringBehavior {
 
@@ -184,6 +188,10 @@ public class CompoundSteeringBehavior extends AbstractStrengthSteeringBehavior {
      * Partial behaviors
      */
     protected steerBehaviorsLayerList behaviors;
+    /**
+     * Steering force of behavior that is currently added to total force.
+     */
+    private final Vector3f partialForce = new Vector3f();
 
     /**
      * @see
@@ -249,8 +257,16 @@ public class CompoundSteeringBehavior extends AbstractStrengthSteeringBehavior {
      */
     @Override
     protected Vector3f calculateRawSteering() {
+        return calculateRawSteering(new Vector3f());
+    }
 
-        Vector3f totalForce = new Vector3f();
+    /**
+     * @see CompoundSteeringBehavior#calculateRawSteering()
+     */
+    @Override
+    protected Vector3f calculateRawSteering(Vector3f store) {
+
+        Vector3f totalForce = store.zero();
         float totalBraking = 1;
 
         this.behaviors.moveAtBeginning();
@@ -268,7 +284,7 @@ public class CompoundSteeringBehavior extends AbstractStrengthSteeringBehavior {
                         break;
                     } else {
                         //If not, reset the total force
-                        totalForce = new Vector3f();
+                        totalForce.zero();
                         //and reset braking
                         totalBraking = 1;
                     }
@@ -278,11 +294,16 @@ public class CompoundSteeringBehavior extends AbstractStrengthSteeringBehavior {
                     validCounter = 0;
                 }
 
-                Vector3f force = this.calculatePartialForce(this.behaviors.getBehavior());
+                Vector3f force;
+                if (isStoreSteering()) {
+                    force = this.calculatePartialForce(this.behaviors.getBehavior(), this.partialForce);
+                } else {
+                    force = this.partialForce.set(this.calculatePartialForce(this.behaviors.getBehavior()));
+                }
                 if (force.length() > this.behaviors.getMinLengthToInvalidSteer()) {
                     validCounter++;
                 }
-                totalForce = totalForce.add(force);
+                totalForce.addLocal(force);
                 totalBraking *= this.behaviors.getBehavior().getBrakingFactor();
 
                 inLayerCounter++;
@@ -304,6 +325,18 @@ public class CompoundSteeringBehavior extends AbstractStrengthSteeringBehavior {
         return behavior.calculateSteering();
     }
 
+    /**
+     * Calculates the steering force of a single behavior without allocating
+     * new vectors.
+     *
+     * @param behavior The behavior.
+     * @param store vector into which steering force is written
+     * @return store
+     */
+    protected Vector3f calculatePartialForce(AbstractSteeringBehavior behavior, Vector3f store) {
+        return behavior.calculateSteering(store);
+    }
+
     /**
      * Usual update pattern for steering behaviors.
      *
@@ -318,4 +351,14 @@ public class CompoundSteeringBehavior extends AbstractStrengthSteeringBehavior {
         }
         super.controlUpdate(tpf);
     }
-}
\ No newline at end of file
+
+    /**
+     * Store variants of steering methods are implemented in this class.
+     *
+     * @see AbstractSteeringBehavior#isStoreSteering()
+     */
+    @Override
+    protected boolean isStoreSteering() {
+        return getClass() == CompoundSteeringBehavior.class;
+    }
+}
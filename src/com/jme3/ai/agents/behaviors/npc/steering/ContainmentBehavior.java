@@ -31,6 +31,9 @@ package com.jme3.ai.agents.behaviors.npc.steering;
 
 import com.jme3.ai.agents.Agent;
 import com.jme3.ai.agents.behaviors.npc.steering.SteeringExceptions.InvalidAreaException;
+import com.jme3.ai.agents.util.control.RayCastService;
+import com.jme3.ai.agents.util.control.RayCastService.RayQuery;
+import com.jme3.ai.agents.util.spatial.ContainmentVolume;
 import com.jme3.collision.CollisionResult;
 import com.jme3.collision.CollisionResults;
 import com.jme3.math.FastMath;
@@ -48,10 +51,19 @@ import com.jme3.scene.Spatial;
  * towards the allowed region." <br><br>
  *
  * "Examples of containment include: fish swimming in an aquarium and hockey
- * players skating within an ice rink."
+ * players skating within an ice rink." <br><br>
+ *
+ * By default area is bounding volume of containment area, and exit surface is
+ * found with ray test through its mesh. If containment volume baked from the
+ * area is set, both are found in it instead. If batched ray casts are enabled,
+ * ray test is submitted to ray cast service and exit surface found in previous
+ * frame is used.
+ *
+ * @see ContainmentVolume
+ * @see RayCastService
  *
  * @author Jesús Martín Berlanga
- * @version 1.0.1
+ * @version 1.2.1
  */
 public class ContainmentBehavior extends AbstractStrengthSteeringBehavior {
 
@@ -67,6 +79,13 @@ public class ContainmentBehavior extends AbstractStrengthSteeringBehavior {
      */
     private Vector3f exitPoint;
     private Vector3f surfaceNormal;
+    /**
+     * Predicted position of agent, updated every frame.
+     */
+    private final Vector3f predictedPosition = new Vector3f();
+    private ContainmentVolume containmentVolume;
+    private boolean batchedRayCasts;
+    private RayQuery exitQuery;
 
     /**
      * @param containmentArea Area where the agent will be restricted
@@ -108,7 +127,11 @@ public class ContainmentBehavior extends AbstractStrengthSteeringBehavior {
     @Override
     protected Vector3f calculateRawSteering() {
         Vector3f steer = new Vector3f();
-        Vector3f predictedPos = this.agent.getPredictedPosition();
+        Vector3f predictedPos = this.agent.getPredictedPosition(this.predictedPosition);
+
+        if (this.containmentVolume != null) {
+            return this.calculateVolumeSteering(predictedPos, steer);
+        }
 
         //Check if the agent is outside the area
         if (!this.containmentArea.getWorldBound().contains(this.agent.getLocalTranslation())) {
@@ -121,7 +144,11 @@ public class ContainmentBehavior extends AbstractStrengthSteeringBehavior {
         } else {
             //Check if correction is necessary
             if (!this.containmentArea.getWorldBound().contains(predictedPos)) {
-                this.processExitSurface();
+                if (this.batchedRayCasts) {
+                    this.processBatchedExitSurface();
+                } else {
+                    this.processExitSurface();
+                }
 
                 if (exitPoint != null && surfaceNormal != null) {
                     //Check If the normal vector will mantain the agent inside the area, 
@@ -137,6 +164,87 @@ public class ContainmentBehavior extends AbstractStrengthSteeringBehavior {
         return steer;
     }
 
+    /**
+     * Steering inside of containment volume. Outside of it agent goes to
+     * closest point of the surface, or to the center if surface is too far.
+     */
+    private Vector3f calculateVolumeSteering(Vector3f predictedPos, Vector3f steer) {
+        Vector3f position = this.agent.getLocalTranslation();
+        if (this.exitPoint == null) {
+            this.exitPoint = new Vector3f();
+        }
+        if (this.surfaceNormal == null) {
+            this.surfaceNormal = new Vector3f();
+        }
+
+        if (!this.containmentVolume.contains(position)) {
+            if (this.containmentVolume.exit(position, this.exitPoint, this.surfaceNormal)) {
+                steer.set(this.exitPoint).subtractLocal(position);
+            } else {
+                steer.set(this.containmentVolume.getCenter()).subtractLocal(position);
+            }
+        } else if (!this.containmentVolume.contains(predictedPos)
+                && this.containmentVolume.exit(predictedPos, this.exitPoint, this.surfaceNormal)) {
+            steer.set(this.surfaceNormal).multLocal(this.exitPoint.distance(predictedPos));
+        }
+        return steer;
+    }
+
+    /**
+     * Setting containment volume used instead of bounding volume and ray
+     * tests. It must be baked from the same containment area.
+     *
+     * @param containmentVolume containment volume, null for using bounding
+     * volume and ray tests
+     */
+    public void setContainmentVolume(ContainmentVolume containmentVolume) {
+        this.containmentVolume = containmentVolume;
+    }
+
+    public ContainmentVolume getContainmentVolume() {
+        return this.containmentVolume;
+    }
+
+    /**
+     * Taking exit surface found by ray test of previous frame, and submitting
+     * ray test for next frame.
+     */
+    protected void processBatchedExitSurface() {
+        this.surfaceNormal = null;
+        this.exitPoint = null;
+        if (this.exitQuery == null) {
+            this.exitQuery = new RayQuery();
+        }
+
+        if (this.exitQuery.isHit()) {
+            this.surfaceNormal = this.exitQuery.getContactNormal().clone();
+            this.exitPoint = this.exitQuery.getContactPoint().clone();
+        }
+
+        Vector3f vel = this.agent.getVelocity();
+        if (vel == null) {
+            vel = Vector3f.ZERO;
+        }
+        this.exitQuery.set(this.containmentArea, this.agent.getLocalTranslation(), vel, Float.POSITIVE_INFINITY);
+        this.agent.getAppState().getRayCastService().submit(this.exitQuery);
+    }
+
+    /**
+     * Enabling submitting ray tests to ray cast service of agent's game,
+     * instead of casting them through containment area in every frame.
+     * Containment area is treated as static.
+     *
+     * @param batchedRayCasts true for using ray cast service
+     * @see RayCastService
+     */
+    public void setBatchedRayCasts(boolean batchedRayCasts) {
+        this.batchedRayCasts = batchedRayCasts;
+    }
+
+    public boolean isBatchedRayCasts() {
+        return this.batchedRayCasts;
+    }
+
     protected void processExitSurface() {
         this.surfaceNormal = null;
         this.exitPoint = null;
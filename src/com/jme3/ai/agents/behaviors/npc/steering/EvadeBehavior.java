@@ -38,8 +38,12 @@ import com.jme3.scene.Spatial;
  * Evasion is analogous to pursuit, except that flee is used to steer away from
  * the predicted future position of the target character.
  *
+ * Store variants of steering are used only when behavior is exactly
+ * EvadeBehavior, so subclass that overrides only calculateRawSteering() still
+ * gets it called.
+ *
  * @author Jesús Martín Berlanga
- * @version 1.2.1
+ * @version 1.3.2
  */
 public class EvadeBehavior extends FleeBehavior {
 
@@ -74,10 +78,28 @@ public class EvadeBehavior extends FleeBehavior {
      */
     @Override
     protected Vector3f calculateRawSteering() {
-        Vector3f projectedLocation = this.getTarget().getPredictedPosition();
+        return calculateRawSteering(new Vector3f());
+    }
+
+    /**
+     * @see EvadeBehavior#calculateRawSteering()
+     */
+    @Override
+    protected Vector3f calculateRawSteering(Vector3f store) {
+        this.getTarget().getPredictedPosition(store);
 
         //Return flee steering force
-        Vector3f desiredVelocity = projectedLocation.subtract(agent.getLocalTranslation());
-        return desiredVelocity.subtract(velocity).negate();
+        store.subtractLocal(agent.getLocalTranslation());
+        return store.subtractLocal(velocity).negateLocal();
+    }
+
+    /**
+     * Store variants of steering methods are implemented in this class.
+     *
+     * @see AbstractSteeringBehavior#isStoreSteering()
+     */
+    @Override
+    protected boolean isStoreSteering() {
+        return getClass() == EvadeBehavior.class;
     }
 }
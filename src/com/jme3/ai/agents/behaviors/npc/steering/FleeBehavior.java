@@ -40,9 +40,13 @@ import com.jme3.scene.Spatial;
  *
  * You can flee another agent or a specific space location.
  *
+ * Store variants of steering are used only when behavior is exactly
+ * FleeBehavior, so subclass that overrides only calculateRawSteering() still
+ * gets it called.
+ *
  * @author Tihomir Radosavljević
  * @author Jesús Martín Berlanga
- * @version 1.2
+ * @version 1.4.2
  */
 public class FleeBehavior extends AbstractStrengthSteeringBehavior {
 
@@ -107,22 +111,20 @@ public class FleeBehavior extends AbstractStrengthSteeringBehavior {
      */
     @Override
     protected Vector3f calculateRawSteering() {
-        Vector3f desiredVelocity;
+        return calculateRawSteering(new Vector3f());
+    }
 
+    /**
+     * @see FleeBehavior#calculateRawSteering()
+     */
+    @Override
+    protected Vector3f calculateRawSteering(Vector3f store) {
         if (this.target != null) {
-            desiredVelocity = target.getLocalTranslation().subtract(agent.getLocalTranslation());
+            return SteeringKernels.flee(this.agent, this.target.getLocalTranslation(), store);
         } else if (this.fleePosition != null) {
-            desiredVelocity = this.fleePosition.subtract(agent.getLocalTranslation());
-        } else {
-            return new Vector3f(); //We do not have any target or flee position
-        }
-        Vector3f aVelocity = this.agent.getVelocity();
-
-        if (aVelocity == null) {
-            aVelocity = new Vector3f();
+            return SteeringKernels.flee(this.agent, this.fleePosition, store);
         }
-
-        return desiredVelocity.subtract(aVelocity).negate();
+        return store.zero(); //We do not have any target or flee position
     }
 
     /**
@@ -152,4 +154,14 @@ public class FleeBehavior extends AbstractStrengthSteeringBehavior {
         this.fleePosition = fleePosition;
         this.target = null;
     }
+
+    /**
+     * Store variants of steering methods are implemented in this class.
+     *
+     * @see AbstractSteeringBehavior#isStoreSteering()
+     */
+    @Override
+    protected boolean isStoreSteering() {
+        return getClass() == FleeBehavior.class;
+    }
 }
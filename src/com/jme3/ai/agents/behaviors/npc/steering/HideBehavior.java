@@ -32,6 +32,8 @@ package com.jme3.ai.agents.behaviors.npc.steering;
 import com.jme3.ai.agents.Agent;
 import com.jme3.ai.agents.behaviors.BehaviorExceptions;
 import com.jme3.ai.agents.util.GameEntity;
+import com.jme3.ai.agents.util.spatial.DynamicAabbTree;
+import com.jme3.ai.agents.util.spatial.SpatialIndex;
 import com.jme3.math.Vector3f;
 import com.jme3.scene.Spatial;
 import java.util.List;
@@ -42,16 +44,18 @@ import java.util.List;
  * <br><br>
  *
  * First of all we check which is the nearest obstacle with a radius equal or
- * lower than the agent, then we hide behind it.
+ * lower than the agent, then we hide behind it. If obstacle tree is set,
+ * nearest obstacle is found in the tree instead of list of obstacles.
  *
  * @author Jesús Martín Berlanga
- * @version 1.0.1
+ * @version 1.2.0
  */
 public class HideBehavior extends AbstractStrengthSteeringBehavior {
 
     private float separationFromObstacle;
     private Agent target;
     private List<GameEntity> obstacles;
+    private DynamicAabbTree obstacleTree;
 
     /**
      * @param obstacles Obstacles that this agent will use to hide from the
@@ -113,24 +117,27 @@ public class HideBehavior extends AbstractStrengthSteeringBehavior {
         GameEntity closestObstacle = null;
         float closestDistanceFromAgent = Float.POSITIVE_INFINITY;
 
-        for (GameEntity obstacle : this.obstacles) {
-            if (obstacle != this.agent) {
-                float distanceFromAgent = this.agent.distanceRelativeToGameEntity(obstacle);
+        if (this.obstacleTree != null) {
+            closestObstacle = this.obstacleTree.nearest(this.agent.getLocalTranslation(), this.agent.getRadius(), this.agent, SpatialIndex.ALL_LAYERS);
+        } else {
+            for (GameEntity obstacle : this.obstacles) {
+                if (obstacle != this.agent) {
+                    float distanceFromAgent = this.agent.distanceRelativeToGameEntity(obstacle);
 
-                if (distanceFromAgent < closestDistanceFromAgent && obstacle.getRadius() >= this.agent.getRadius()) {
-                    closestObstacle = obstacle;
-                    closestDistanceFromAgent = distanceFromAgent;
+                    if (distanceFromAgent < closestDistanceFromAgent && obstacle.getRadius() >= this.agent.getRadius()) {
+                        closestObstacle = obstacle;
+                        closestDistanceFromAgent = distanceFromAgent;
+                    }
                 }
             }
         }
 
         if (closestObstacle != null && this.agent.distanceRelativeToGameEntity(closestObstacle) > closestObstacle.getRadius()) {
             Vector3f targetToObstacleOffset = this.target.offset(closestObstacle);
-            Vector3f seekPos = this.target.getLocalTranslation().add(targetToObstacleOffset).add(
-                    targetToObstacleOffset.normalize().mult(this.separationFromObstacle));
+            Vector3f seekPos = this.target.getLocalTranslation().add(targetToObstacleOffset).addLocal(
+                    targetToObstacleOffset.normalizeLocal().multLocal(this.separationFromObstacle));
 
-            SeekBehavior seek = new SeekBehavior(this.agent, seekPos);
-            return seek.calculateRawSteering();
+            return SteeringKernels.seek(this.agent, seekPos, targetToObstacleOffset);
         }
 
         return steer;
@@ -139,4 +146,13 @@ public class HideBehavior extends AbstractStrengthSteeringBehavior {
     public void setObstacles(List<GameEntity> obstacles) {
         this.obstacles = obstacles;
     }
+
+    /**
+     * @param obstacleTree tree in which nearest obstacle is searched, null for
+     * using list of obstacles
+     * @see ObstacleAvoidanceBehavior#setObstacleTree(DynamicAabbTree)
+     */
+    public void setObstacleTree(DynamicAabbTree obstacleTree) {
+        this.obstacleTree = obstacleTree;
+    }
 }
\ No newline at end of file
@@ -34,6 +34,8 @@ import com.jme3.ai.agents.behaviors.BehaviorExceptions;
 import com.jme3.math.FastMath;
 import com.jme3.math.Vector3f;
 import com.jme3.scene.Spatial;
+import com.jme3.scene.Spatial;
+import com.jme3.util.TempVars;
 
 /**
  * This is similar to pursuit behavior, but pursuiers must stay away from the
@@ -41,10 +43,14 @@ import com.jme3.scene.Spatial;
  * "evade". Furthermore pursuers use "arrive" instead of "seek" to approach to
  * their objective.
  *
+ * Store variants of steering are used only when behavior is exactly
+ * LeaderFollowingBehavior, so subclass that overrides only
+ * calculateRawSteering() still gets it called.
+ *
  * @see PursuitBehavior
  *
  * @author Jesús Martín Berlanga
- * @version 1.4
+ * @version 1.5.1
  */
 public class LeaderFollowingBehavior extends SeekBehavior {
 
@@ -53,6 +59,10 @@ public class LeaderFollowingBehavior extends SeekBehavior {
     private float minimumAngle;
     private ArriveBehavior arriveBehavior;
     private EvadeBehavior evadeBehavior;
+    /**
+     * Position that arrive behavior is seeking, updated every frame.
+     */
+    private final Vector3f projectedLocation = new Vector3f();
 
     /**
      * @see SeekBehavior#SeekBehavior(com.jme3.ai.agents.Agent,
@@ -156,28 +166,34 @@ public class LeaderFollowingBehavior extends SeekBehavior {
      */
     @Override
     protected Vector3f calculateRawSteering() {
-        Vector3f steer;
+        return calculateRawSteering(new Vector3f());
+    }
+
+    /**
+     * @see LeaderFollowingBehavior#calculateRawSteering()
+     */
+    @Override
+    protected Vector3f calculateRawSteering(Vector3f store) {
         float distanceBetwen = this.agent.distanceRelativeToGameEntity(this.getTarget());
 
         //See how far ahead we need to leed
-        Vector3f fullProjectedLocation = this.getTarget().getPredictedPosition();
-        Vector3f predictedPositionDiff = fullProjectedLocation.subtract(this.getTarget().getLocalTranslation());
-        Vector3f projectedLocation = this.getTarget().getLocalTranslation().add(predictedPositionDiff.mult(
-                this.calculateFocusFactor(distanceBetwen)));
+        Vector3f targetPosition = this.getTarget().getLocalTranslation();
+        this.getTarget().getPredictedPosition(this.projectedLocation).subtractLocal(targetPosition)
+                .multLocal(this.calculateFocusFactor(distanceBetwen)).addLocal(targetPosition);
 
-        this.arriveBehavior.setSeekingPosition(projectedLocation);
+        this.arriveBehavior.setSeekingPosition(this.projectedLocation);
 
-        steer = this.arriveBehavior.calculateRawSteering();
+        this.arriveBehavior.calculateRawSteering(store);
 
         if (!(distanceBetwen > this.distanceToEvade) && !(this.getTarget().forwardness(this.agent) < FastMath.cos(this.minimumAngle))) { //Incorrect angle and Is in the proper distance to evade -> Evade the leader
 
-            Vector3f arriveSteer = steer.mult(distanceBetwen / this.distanceToEvade);
-            Vector3f evadeSteer = this.evadeBehavior.calculateRawSteering();
-            evadeSteer.mult(this.distanceToEvade / (1 + distanceBetwen));
-            steer = (new Vector3f()).add(arriveSteer).add(evadeSteer);
+            store.multLocal(distanceBetwen / this.distanceToEvade);
+            TempVars vars = TempVars.get();
+            store.addLocal(this.evadeBehavior.calculateRawSteering(vars.vect1));
+            vars.release();
         }
 
-        return steer;
+        return store;
     }
 
     /**
@@ -194,4 +210,14 @@ public class LeaderFollowingBehavior extends SeekBehavior {
 
         return factor;
     }
-}
\ No newline at end of file
+
+    /**
+     * Store variants of steering methods are implemented in this class.
+     *
+     * @see AbstractSteeringBehavior#isStoreSteering()
+     */
+    @Override
+    protected boolean isStoreSteering() {
+        return getClass() == LeaderFollowingBehavior.class;
+    }
+}
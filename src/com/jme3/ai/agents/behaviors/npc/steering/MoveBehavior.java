@@ -36,8 +36,12 @@ import com.jme3.scene.Spatial;
 /**
  * Simple move behavior: Agent moves in the "moveDirection" direction.
  *
+ * Store variants of steering are used only when behavior is exactly
+ * MoveBehavior, so subclass that overrides only calculateRawSteering() still
+ * gets it called.
+ *
  * @autor Jesús Martín Berlanga
- * @version 1.1.1
+ * @version 1.2.2
  */
 public class MoveBehavior extends AbstractStrengthSteeringBehavior {
 
@@ -76,10 +80,27 @@ public class MoveBehavior extends AbstractStrengthSteeringBehavior {
      */
     @Override
     protected Vector3f calculateRawSteering() {
-        Vector3f steer = new Vector3f();
+        return calculateRawSteering(new Vector3f());
+    }
+
+    /**
+     * @see MoveBehavior#calculateRawSteering()
+     */
+    @Override
+    protected Vector3f calculateRawSteering(Vector3f store) {
         if (this.moveDirection != null) {
-            steer = this.moveDirection;
+            return store.set(this.moveDirection);
         }
-        return steer;
+        return store.zero();
+    }
+
+    /**
+     * Store variants of steering methods are implemented in this class.
+     *
+     * @see AbstractSteeringBehavior#isStoreSteering()
+     */
+    @Override
+    protected boolean isStoreSteering() {
+        return getClass() == MoveBehavior.class;
     }
-}
\ No newline at end of file
+}
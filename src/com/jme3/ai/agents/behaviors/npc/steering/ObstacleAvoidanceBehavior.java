@@ -31,9 +31,12 @@ package com.jme3.ai.agents.behaviors.npc.steering;
 
 import com.jme3.ai.agents.Agent;
 import com.jme3.ai.agents.util.GameEntity;
+import com.jme3.ai.agents.util.spatial.DynamicAabbTree;
+import com.jme3.ai.agents.util.spatial.SpatialIndex;
 import com.jme3.math.Vector3f;
 import com.jme3.math.FastMath;
 import com.jme3.scene.Spatial;
+import com.jme3.util.TempVars;
 import java.util.List;
 import java.util.Random;
 
@@ -59,18 +62,36 @@ import java.util.Random;
  * <br>
  *
  * It is needed that the obstacles (Agents) have the "radius" atribute correctly
- * setted up.
+ * setted up. <br> <br>
+ *
+ * If obstacle tree is set, only obstacles that can be in the collision
+ * cylinder are found in the tree and tested, and list of obstacles is not
+ * used.
  *
  * @see GameEntity#setRadius(float)
+ * @see #setObstacleTree(DynamicAabbTree)
  *
  * @author Jesús Martín Berlanga
- * @version 1.1.1
+ * @version 1.2.2
  */
 public class ObstacleAvoidanceBehavior extends AbstractStrengthSteeringBehavior {
 
     private float minDistance;
     private float minTimeToCollision;
     private List<GameEntity> obstacles;
+    private DynamicAabbTree obstacleTree;
+    /**
+     * Obstacles found in obstacle tree, one array for every thread, because
+     * agents are updated in parallel. Array starts small and is doubled only
+     * when query fills it, so its size depends on the most crowded query and
+     * not on the number of obstacles or agents.
+     */
+    private static final ThreadLocal<GameEntity[][]> CANDIDATES = new ThreadLocal<GameEntity[][]>() {
+        @Override
+        protected GameEntity[][] initialValue() {
+            return new GameEntity[][]{new GameEntity[16]};
+        }
+    };
 
     /**
      * @param obstacles A list with the obstacles (Agents)
@@ -169,53 +190,111 @@ public class ObstacleAvoidanceBehavior extends AbstractStrengthSteeringBehavior
 
             // test all obstacles for intersection with my forward axis,
             // select the one whose intersection is nearest
-            for (GameEntity obstacle : this.obstacles) {
-                float distanceFromCenterToCenter = this.agent.distanceRelativeToGameEntity(obstacle);
-                if (distanceFromCenterToCenter > this.minDistance) {
-                    break;
+            if (this.obstacleTree != null) {
+                int count = this.queryCollisionCylinder(minDistanceToCollision);
+                GameEntity[] candidates = this.getCandidates();
+                for (int i = 0; i < count; i++) {
+                    if (candidates[i] != this.agent) {
+                        nearestObstacleSteerForce = this.avoid(candidates[i], minDistanceToCollision, nearestObstacleSteerForce);
+                    }
+                    candidates[i] = null;
+                }
+            } else {
+                for (GameEntity obstacle : this.obstacles) {
+                    nearestObstacleSteerForce = this.avoid(obstacle, minDistanceToCollision, nearestObstacleSteerForce);
                 }
+            }
+        }
+        return nearestObstacleSteerForce;
+    }
 
-                float distanceFromCenterToObstacleSuperf = distanceFromCenterToCenter - obstacle.getRadius();
-                float distance = distanceFromCenterToObstacleSuperf - this.agent.getRadius();
+    /**
+     * Finding obstacles in tree that could be in collision cylinder. Obstacle
+     * is in front of the agent and close enough to its path only if its sphere
+     * touches sphere with agent radius that moves along the velocity from
+     * queryLength behind the agent to queryLength in front of it.
+     *
+     * @return number of obstacles written in candidates
+     */
+    private int queryCollisionCylinder(float minDistanceToCollision) {
+        GameEntity[][] store = CANDIDATES.get();
+        Vector3f position = this.agent.getLocalTranslation();
+        float radius = this.agent.getRadius();
+        float speed = this.agent.getVelocity().length();
+        if (speed == 0) {
+            int count = this.obstacleTree.queryOverlap(position, radius, SpatialIndex.ALL_LAYERS, store[0]);
+            while (count == store[0].length) {
+                store[0] = new GameEntity[store[0].length * 2];
+                count = this.obstacleTree.queryOverlap(position, radius, SpatialIndex.ALL_LAYERS, store[0]);
+            }
+            return count;
+        }
+        float queryLength = FastMath.sqrt(minDistanceToCollision * minDistanceToCollision + radius * radius) + radius;
+        TempVars vars = TempVars.get();
+        Vector3f direction = vars.vect1.set(this.agent.getVelocity()).divideLocal(speed);
+        Vector3f start = vars.vect2.set(direction).multLocal(-queryLength).addLocal(position);
+        int count = this.obstacleTree.querySweep(start, direction, 2 * queryLength, radius, SpatialIndex.ALL_LAYERS, store[0]);
+        while (count == store[0].length) {
+            store[0] = new GameEntity[store[0].length * 2];
+            count = this.obstacleTree.querySweep(start, direction, 2 * queryLength, radius, SpatialIndex.ALL_LAYERS, store[0]);
+        }
+        vars.release();
+        return count;
+    }
 
-                if (distanceFromCenterToObstacleSuperf < 0) {
-                    distanceFromCenterToObstacleSuperf = 0;
-                }
+    /**
+     * @return steer force for avoiding obstacle if it is stronger than current
+     * force, current force otherwise
+     */
+    private Vector3f avoid(GameEntity obstacle, float minDistanceToCollision, Vector3f nearestObstacleSteerForce) {
+        float distanceFromCenterToCenter = this.agent.distanceRelativeToGameEntity(obstacle);
+        if (distanceFromCenterToCenter > this.minDistance) {
+            return nearestObstacleSteerForce;
+        }
 
-                if (distance < 0) {
-                    distance = 0;
-                }
+        float distanceFromCenterToObstacleSuperf = distanceFromCenterToCenter - obstacle.getRadius();
+        float distance = distanceFromCenterToObstacleSuperf - this.agent.getRadius();
 
-                // if it is at least in the radius of the collision cylinder and we are facing the obstacle
-                if (this.agent.forwardness(obstacle) > 0
-                        && //Are we facing the obstacle ?
-                        distance * distance
-                        < ((minDistanceToCollision * minDistanceToCollision)
-                        + (this.agent.getRadius() * this.agent.getRadius())) //Pythagoras Theorem
-                        ) {
-                    Vector3f velocityNormalized = this.agent.getVelocity().normalize();
-                    Vector3f distanceVec = this.agent.offset(obstacle).normalize().mult(distanceFromCenterToObstacleSuperf);
-                    Vector3f projectedVector = velocityNormalized.mult(velocityNormalized.dot(distanceVec));
-
-                    Vector3f collisionDistanceOffset = projectedVector.subtract(distanceVec);
-
-                    if (collisionDistanceOffset.length() < this.agent.getRadius()) {
-                        Vector3f collisionDistanceDirection;
-
-                        if (!collisionDistanceOffset.equals(Vector3f.ZERO)) {
-                            collisionDistanceDirection = collisionDistanceOffset.normalize();
-                        } else {
-                            collisionDistanceDirection = randomVectInPlane(this.agent.getVelocity(), this.agent.getLocalTranslation()).normalize();
-                        }
-
-                        Vector3f steerForce = collisionDistanceDirection.mult((this.agent.getRadius() - collisionDistanceOffset.length())
-                                / this.agent.getRadius());
-
-                        if (steerForce.length() > nearestObstacleSteerForce.length()) {
-                            nearestObstacleSteerForce = steerForce;
-                        }
-                    }
+        if (distanceFromCenterToObstacleSuperf < 0) {
+            distanceFromCenterToObstacleSuperf = 0;
+        }
+
+        if (distance < 0) {
+            distance = 0;
+        }
+
+        // if it is at least in the radius of the collision cylinder and we are facing the obstacle
+        if (this.agent.forwardness(obstacle) > 0
+                && //Are we facing the obstacle ?
+                distance * distance
+                < ((minDistanceToCollision * minDistanceToCollision)
+                + (this.agent.getRadius() * this.agent.getRadius())) //Pythagoras Theorem
+                ) {
+            TempVars vars = TempVars.get();
+            Vector3f velocityNormalized = vars.vect1.set(this.agent.getVelocity()).normalizeLocal();
+            Vector3f distanceVec = this.agent.offset(obstacle, vars.vect2).normalizeLocal().multLocal(distanceFromCenterToObstacleSuperf);
+            Vector3f projectedVector = velocityNormalized.multLocal(velocityNormalized.dot(distanceVec));
+
+            Vector3f collisionDistanceOffset = projectedVector.subtractLocal(distanceVec);
+            float collisionDistance = collisionDistanceOffset.length();
+            Vector3f steerForce = null;
+
+            if (collisionDistance < this.agent.getRadius()) {
+                Vector3f collisionDistanceDirection;
+
+                if (!collisionDistanceOffset.equals(Vector3f.ZERO)) {
+                    collisionDistanceDirection = collisionDistanceOffset.normalizeLocal();
+                } else {
+                    collisionDistanceDirection = randomVectInPlane(this.agent.getVelocity(), this.agent.getLocalTranslation()).normalizeLocal();
                 }
+
+                steerForce = collisionDistanceDirection.mult((this.agent.getRadius() - collisionDistance)
+                        / this.agent.getRadius());
+            }
+            vars.release();
+
+            if (steerForce != null && steerForce.length() > nearestObstacleSteerForce.length()) {
+                return steerForce;
             }
         }
         return nearestObstacleSteerForce;
@@ -273,6 +352,62 @@ public class ObstacleAvoidanceBehavior extends AbstractStrengthSteeringBehavior
         this.obstacles = obstacles;
     }
 
+    protected DynamicAabbTree getObstacleTree() {
+        return this.obstacleTree;
+    }
+
+    /**
+     * Setting tree in which obstacles are searched instead of list of
+     * obstacles. Tree must be refreshed when obstacles move, for example by
+     * adding it to MonkeyBrainsAppState.
+     *
+     * @param obstacleTree tree of obstacles, null for using list of obstacles
+     * @see
+     * com.jme3.ai.agents.util.control.MonkeyBrainsAppState#addSpatialIndex(com.jme3.ai.agents.util.spatial.SpatialIndex)
+     */
+    public void setObstacleTree(DynamicAabbTree obstacleTree) {
+        this.obstacleTree = obstacleTree;
+    }
+
+    /**
+     * Finding obstacles in tree whose center is closer than radius to the
+     * agent. Found obstacles are in getCandidates() until next query on the
+     * same thread, and should be cleared with clearCandidates(int) after use.
+     *
+     * @return number of found obstacles
+     */
+    protected int queryObstaclesInRadius(float radius) {
+        GameEntity[][] store = CANDIDATES.get();
+        Vector3f position = this.agent.getLocalTranslation();
+        int count = this.obstacleTree.queryRadius(position, radius, SpatialIndex.ALL_LAYERS, store[0]);
+        while (count == store[0].length) {
+            store[0] = new GameEntity[store[0].length * 2];
+            count = this.obstacleTree.queryRadius(position, radius, SpatialIndex.ALL_LAYERS, store[0]);
+        }
+        return count;
+    }
+
+    /**
+     * @return obstacles found by last query on this thread, array is shared
+     * by all behaviors updated on the same thread
+     */
+    protected GameEntity[] getCandidates() {
+        return CANDIDATES.get()[0];
+    }
+
+    /**
+     * Removing found obstacles from candidates, so shared array doesn't keep
+     * them from being garbage collected.
+     *
+     * @param count number of obstacles found by last query
+     */
+    protected void clearCandidates(int count) {
+        GameEntity[] candidates = CANDIDATES.get()[0];
+        for (int i = 0; i < count; i++) {
+            candidates[i] = null;
+        }
+    }
+
     protected float getMinTimeToCollision() {
         return this.minTimeToCollision;
     }
@@ -39,8 +39,12 @@ import com.jme3.scene.Spatial;
  * character. Effective pursuit requires a prediction of the target’s future
  * position.
  *
+ * Store variants of steering are used only when behavior is exactly
+ * PursuitBehavior, so subclass that overrides only calculateRawSteering()
+ * still gets it called.
+ *
  * @author Jesús Martín Berlanga
- * @version 1.2
+ * @version 1.3.2
  */
 public class PursuitBehavior extends SeekBehavior {
 
@@ -75,18 +79,36 @@ public class PursuitBehavior extends SeekBehavior {
      */
     @Override
     protected Vector3f calculateRawSteering() {
+        return calculateRawSteering(new Vector3f());
+    }
+
+    /**
+     * @see PursuitBehavior#calculateRawSteering()
+     */
+    @Override
+    protected Vector3f calculateRawSteering(Vector3f store) {
         //See how far ahead we need to leed
-        Vector3f projectedLocation = this.getTarget().getPredictedPosition();
+        this.getTarget().getPredictedPosition(store);
 
         //Seek behaviour
-        Vector3f desierdVel = projectedLocation.subtract(this.agent.getLocalTranslation());
+        store.subtractLocal(this.agent.getLocalTranslation());
 
         Vector3f aVelocity = this.agent.getVelocity();
 
-        if (aVelocity == null) {
-            aVelocity = new Vector3f();
+        if (aVelocity != null) {
+            store.subtractLocal(aVelocity);
         }
 
-        return desierdVel.subtract(aVelocity);
+        return store;
+    }
+
+    /**
+     * Store variants of steering methods are implemented in this class.
+     *
+     * @see AbstractSteeringBehavior#isStoreSteering()
+     */
+    @Override
+    protected boolean isStoreSteering() {
+        return getClass() == PursuitBehavior.class;
     }
 }
@@ -46,8 +46,12 @@ import java.util.List;
  * the 'doorway' by seek behavior, avoid walls, and maintain separation from
  * each other."
  *
+ * Store variants of steering are used only when behavior is exactly
+ * QueuingBehavior, so subclass that overrides only calculateRawSteering()
+ * still gets it called.
+ *
  * @author Jesús Martín Berlanga
- * @version 1.0.1
+ * @version 1.1.2
  */
 public class QueuingBehavior extends AbstractStrengthSteeringBehavior {
 
@@ -97,6 +101,14 @@ public class QueuingBehavior extends AbstractStrengthSteeringBehavior {
      */
     @Override
     protected Vector3f calculateRawSteering() {
+        return calculateRawSteering(new Vector3f());
+    }
+
+    /**
+     * @see QueuingBehavior#calculateRawSteering()
+     */
+    @Override
+    protected Vector3f calculateRawSteering(Vector3f store) {
         Vector3f agentVelocity = this.agent.getVelocity();
 
         int numberObstaclesFactor = 1;
@@ -123,7 +135,7 @@ public class QueuingBehavior extends AbstractStrengthSteeringBehavior {
         }
 
         this.setBrakingFactor((distanceFactor + velocityFactor + (1 / numberObstaclesFactor)) / 3);
-        return new Vector3f();
+        return store.zero();
     }
 
     public void setNeighbours(List<Agent> neighbours) {
@@ -133,4 +145,14 @@ public class QueuingBehavior extends AbstractStrengthSteeringBehavior {
     public void setNeighboursFromTeam(Team team) {
         this.neighbours = team.getMembers();
     }
-}
\ No newline at end of file
+
+    /**
+     * Store variants of steering methods are implemented in this class.
+     *
+     * @see AbstractSteeringBehavior#isStoreSteering()
+     */
+    @Override
+    protected boolean isStoreSteering() {
+        return getClass() == QueuingBehavior.class;
+    }
+}
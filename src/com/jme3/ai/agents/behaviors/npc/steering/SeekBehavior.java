@@ -39,9 +39,13 @@ import com.jme3.scene.Spatial;
  *
  * You can seek another agent or a specific space location.
  *
+ * Store variants of steering are used only when behavior is exactly
+ * SeekBehavior, so subclass that overrides only calculateRawSteering() still
+ * gets it called.
+ *
  * @author Tihomir Radosavljević
  * @author Jesús Martín Berlanga
- * @version 1.5.1
+ * @version 1.7.2
  */
 public class SeekBehavior extends AbstractStrengthSteeringBehavior {
 
@@ -110,22 +114,28 @@ public class SeekBehavior extends AbstractStrengthSteeringBehavior {
      */
     @Override
     protected Vector3f calculateRawSteering() {
-        Vector3f desiredVelocity;
+        return calculateRawSteering(new Vector3f());
+    }
 
+    /**
+     * @see SeekBehavior#calculateRawSteering()
+     */
+    @Override
+    protected Vector3f calculateRawSteering(Vector3f store) {
         if (this.target != null) {
-            desiredVelocity = target.getLocalTranslation().subtract(agent.getLocalTranslation());
+            store.set(target.getLocalTranslation()).subtractLocal(agent.getLocalTranslation());
         } else if (this.seekingPosition != null) {
-            desiredVelocity = this.seekingPosition.subtract(agent.getLocalTranslation()).normalize();
+            return SteeringKernels.seek(this.agent, this.seekingPosition, store);
         } else {
-            return new Vector3f(); //We do not have a target or position to seek
+            return store.zero(); //We do not have a target or position to seek
         }
         Vector3f aVelocity = this.agent.getVelocity();
 
-        if (aVelocity == null) {
-            aVelocity = new Vector3f();
+        if (aVelocity != null) {
+            store.subtractLocal(aVelocity);
         }
 
-        return desiredVelocity.subtract(aVelocity);
+        return store;
     }
 
     /**
@@ -155,4 +165,14 @@ public class SeekBehavior extends AbstractStrengthSteeringBehavior {
         this.seekingPosition = seekingPosition;
         this.target = null;
     }
+
+    /**
+     * Store variants of steering methods are implemented in this class.
+     *
+     * @see AbstractSteeringBehavior#isStoreSteering()
+     */
+    @Override
+    protected boolean isStoreSteering() {
+        return getClass() == SeekBehavior.class;
+    }
 }
@@ -35,6 +35,7 @@ import com.jme3.ai.agents.util.GameEntity;
 import com.jme3.math.Vector3f;
 import com.jme3.math.FastMath;
 import com.jme3.scene.Spatial;
+import com.jme3.util.TempVars;
 import java.util.LinkedList;
 import java.util.List;
 
@@ -53,8 +54,12 @@ import java.util.List;
  * view of the character that is steering. It is good to ignore anything behind
  * the character."
  *
+ * Store variants of steering are used only when behavior is exactly
+ * SeparationBehavior, so subclass that overrides only calculateRawSteering()
+ * still gets it called.
+ *
  * @author Jesús Martín Berlanga
- * @version 1.3.2
+ * @version 1.6.2
  */
 public class SeparationBehavior extends AbstractStrengthSteeringBehavior {
 
@@ -122,21 +127,32 @@ public class SeparationBehavior extends AbstractStrengthSteeringBehavior {
      */
     @Override
     protected Vector3f calculateRawSteering() {
+        return calculateRawSteering(new Vector3f());
+    }
+
+    /**
+     * @see SeparationBehavior#calculateRawSteering()
+     */
+    @Override
+    protected Vector3f calculateRawSteering(Vector3f store) {
         //Propities whom behaviour belongs.
         Vector3f agentLocation = super.agent.getLocalTranslation();
-        Vector3f steering = new Vector3f();
-
-        for (GameEntity obstacle : this.obstacles) {
-            //If the obstacle is not himself
-            if (obstacle != this.agent && obstacle.distanceRelativeToGameEntity(this.agent) < this.minDistance) {
-                Vector3f location = obstacle.getLocalTranslation().subtract(agentLocation);
-                float lengthSquared = location.lengthSquared();
-                location.normalizeLocal();
-                steering.addLocal(location.negate().mult(1f / ((float) FastMath.pow(lengthSquared, 2))));
-            }
+        store.zero();
+
+        //obstacles closer than min distance, without agent himself
+        List<GameEntity> closeObstacles = this.agent.getAppState().getNeighborhoodService()
+                .getNeighbours(this.agent, this.obstacles, this.minDistance, this.minDistance, 0);
+        TempVars vars = TempVars.get();
+        Vector3f location = vars.vect1;
+        for (int i = 0; i < closeObstacles.size(); i++) {
+            location.set(closeObstacles.get(i).getSnapshotTranslation()).subtractLocal(agentLocation);
+            float lengthSquared = location.lengthSquared();
+            location.normalizeLocal();
+            store.addLocal(location.negateLocal().multLocal(1f / ((float) FastMath.pow(lengthSquared, 2))));
         }
+        vars.release();
 
-        return steering;
+        return store;
     }
 
     public void setMinDistance(float minDistance) {
@@ -153,4 +169,14 @@ public class SeparationBehavior extends AbstractStrengthSteeringBehavior {
             obstacles.add(teamAgent);
         }
     }
+
+    /**
+     * Store variants of steering methods are implemented in this class.
+     *
+     * @see AbstractSteeringBehavior#isStoreSteering()
+     */
+    @Override
+    protected boolean isStoreSteering() {
+        return getClass() == SeparationBehavior.class;
+    }
 }
@@ -40,11 +40,15 @@ import javax.swing.Timer;
  * Slows down the velocity produced by a behavior container (g.e.
  * CompoundSteeringBehavior)
  *
+ * Store variants of steering are used only when behavior is exactly
+ * SlowBehavior, so subclass that overrides only calculateSteering() still
+ * gets it called.
+ *
  * @see CompoundSteeringBehavior
  * @see com.jme3.ai.agents.behaviors.npc.SimpleMainBehavior
  *
  * @author Jesús Martín Berlanga
- * @version 2.1.1
+ * @version 2.2.2
  */
 public class SlowBehavior extends AbstractSteeringBehavior {
 
@@ -157,7 +161,22 @@ public class SlowBehavior extends AbstractSteeringBehavior {
         return Vector3f.ZERO;
     }
 
+    @Override
+    protected Vector3f calculateSteering(Vector3f store) {
+        return store.zero();
+    }
+
     public void setMaxBrakingFactor(float maxBrakingFactor) {
         this.maxBrakingFactor = maxBrakingFactor;
     }
+
+    /**
+     * Store variants of steering methods are implemented in this class.
+     *
+     * @see AbstractSteeringBehavior#isStoreSteering()
+     */
+    @Override
+    protected boolean isStoreSteering() {
+        return getClass() == SlowBehavior.class;
+    }
 }
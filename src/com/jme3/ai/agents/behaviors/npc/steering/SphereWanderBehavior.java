@@ -37,6 +37,7 @@ import com.jme3.math.Ray;
 import com.jme3.math.Vector2f;
 import com.jme3.math.Vector3f;
 import com.jme3.scene.Spatial;
+import com.jme3.util.TempVars;
 import java.util.Random;
 
 /**
@@ -51,8 +52,12 @@ import java.util.Random;
  *
  * The steer force is contained in the XY plane.
  *
+ * Store variants of steering are used only when behavior is exactly
+ * SphereWanderBehavior, so subclass that overrides only
+ * calculateRawSteering() still gets it called.
+ *
  * @author Jesús Martín Berlanga
- * @version 1.0
+ * @version 1.2.2
  */
 public class SphereWanderBehavior extends AbstractStrengthSteeringBehavior {
 
@@ -77,6 +82,8 @@ public class SphereWanderBehavior extends AbstractStrengthSteeringBehavior {
     private float maxRandom;
     private float rotationFactor;
     private BoundingSphere wanderSphere;
+    private final Ray ray = new Ray();
+    private final CollisionResults results = new CollisionResults();
 
     /**
      * Constructor for wander behavior.
@@ -137,8 +144,16 @@ public class SphereWanderBehavior extends AbstractStrengthSteeringBehavior {
      */
     @Override
     protected Vector3f calculateRawSteering() {
+        return calculateRawSteering(new Vector3f());
+    }
+
+    /**
+     * @see SphereWanderBehavior#calculateRawSteering()
+     */
+    @Override
+    protected Vector3f calculateRawSteering(Vector3f store) {
         changeTargetPosition(timePerFrame);
-        return this.agent.offset(this.targetPosition).mult((0.5f / this.sphereRadius) * this.agent.getMoveSpeed());
+        return this.agent.offset(this.targetPosition, store).multLocal((0.5f / this.sphereRadius) * this.agent.getMoveSpeed());
     }
 
     /**
@@ -148,34 +163,38 @@ public class SphereWanderBehavior extends AbstractStrengthSteeringBehavior {
      */
     protected void changeTargetPosition(float tpf) {
         time -= tpf;
+        TempVars vars = TempVars.get();
         Vector3f forward;
 
         if (this.agent.getVelocity() != null) {
-            forward = this.agent.getVelocity().normalize();
+            forward = vars.vect1.set(this.agent.getVelocity()).normalizeLocal();
         } else {
-            forward = this.agent.fordwardVector();
+            forward = this.agent.fordwardVector(vars.vect1);
         }
 
         if (forward.equals(Vector3f.UNIT_Y)) {
-            forward = forward.add(new Vector3f(0, 0, SphereWanderBehavior.SIDE_REFERENCE_OFFSET));
+            forward.addLocal(0, 0, SphereWanderBehavior.SIDE_REFERENCE_OFFSET);
         }
 
         //Update sphere position  
-        this.wanderSphere.setCenter(this.agent.getLocalTranslation().add(forward.mult(SphereWanderBehavior.OFFSET_DISTANCE + this.agent.getRadius() + this.sphereRadius)));
+        this.wanderSphere.setCenter(vars.vect2.set(forward).multLocal(SphereWanderBehavior.OFFSET_DISTANCE + this.agent.getRadius() + this.sphereRadius)
+                .addLocal(this.agent.getLocalTranslation()));
 
         if (time <= 0) {
             this.calculateNewRandomDir();
             time = timeInterval;
         }
 
-        Vector3f sideVector = forward.cross(Vector3f.UNIT_Y).normalize();
-        Vector3f rayDir = (this.agent.offset(wanderSphere.getCenter())).add(sideVector.mult(this.randomDirection.x));//.add(Vector3f.UNIT_Y.mult(this.randomDirection.y));       
+        Vector3f sideVector = forward.cross(Vector3f.UNIT_Y, vars.vect3).normalizeLocal();
+        Vector3f rayDir = this.agent.offset(wanderSphere.getCenter(), vars.vect4).addLocal(sideVector.multLocal(this.randomDirection.x));//.add(Vector3f.UNIT_Y.mult(this.randomDirection.y));       
 
-        Ray ray = new Ray(this.agent.getLocalTranslation(), rayDir);
-        CollisionResults results = new CollisionResults();
-        this.wanderSphere.collideWith(ray, results);
+        this.results.clear();
+        this.ray.setOrigin(this.agent.getLocalTranslation());
+        this.ray.setDirection(rayDir);
+        vars.release();
+        this.wanderSphere.collideWith(this.ray, this.results);
 
-        CollisionResult collisionResult = results.getCollision(1); //The collision with the second hemisphere
+        CollisionResult collisionResult = this.results.getCollision(1); //The collision with the second hemisphere
         this.targetPosition = collisionResult.getContactPoint();
     }
 
@@ -251,4 +270,14 @@ public class SphereWanderBehavior extends AbstractStrengthSteeringBehavior {
         }
         this.sphereRadius = sphereRadius;
     }
+
+    /**
+     * Store variants of steering methods are implemented in this class.
+     *
+     * @see AbstractSteeringBehavior#isStoreSteering()
+     */
+    @Override
+    protected boolean isStoreSteering() {
+        return getClass() == SphereWanderBehavior.class;
+    }
 }
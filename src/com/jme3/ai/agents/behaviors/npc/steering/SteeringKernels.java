@@ -0,0 +1,146 @@
+/**
+ * Copyright (c) 2014, jMonkeyEngine All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *
+ * Redistributions of source code must retain the above copyright notice, this
+ * list of conditions and the following disclaimer.
+ *
+ * Redistributions in binary form must reproduce the above copyright notice,
+ * this list of conditions and the following disclaimer in the documentation
+ * and/or other materials provided with the distribution.
+ *
+ * Neither the name of 'jMonkeyEngine' nor the names of its contributors may be
+ * used to endorse or promote products derived from this software without
+ * specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ */
+package com.jme3.ai.agents.behaviors.npc.steering;
+
+import com.jme3.ai.agents.util.GameEntity;
+import com.jme3.math.Vector3f;
+
+/**
+ * Stateless steering calculations used by built-in steering behaviors. They
+ * only read given vectors and write result in store vector, so behaviors that
+ * need seek or flee steering as part of their own calculation can use them
+ * instead of creating new behavior every frame. Arrival is not a kernel,
+ * ArriveBehavior brakes seek steering with arrivalFactor(). <br><br>
+ *
+ * Velocity can be null, and it is then treated as zero. Store vector can be
+ * the same object as any of the arguments.
+ *
+ * @see SeekBehavior
+ * @see FleeBehavior
+ * @see ArriveBehavior
+ *
+ * @author Tihomir Radosavljević
+ * @version 1.0.1
+ */
+public final class SteeringKernels {
+
+    /**
+     * Distance from target, increased by target radius, at which arrival is
+     * finished.
+     */
+    public static final float ARRIVAL_ERROR = 0.001f;
+
+    private SteeringKernels() {
+    }
+
+    /**
+     * Steering toward target position. Desired velocity is unit vector from
+     * position to target.
+     *
+     * @param position current position
+     * @param velocity current velocity, can be null
+     * @param target position that is seeked
+     * @param store vector in which result is stored
+     * @return store
+     */
+    public static Vector3f seek(Vector3f position, Vector3f velocity, Vector3f target, Vector3f store) {
+        float x = target.x - position.x;
+        float y = target.y - position.y;
+        float z = target.z - position.z;
+        store.set(x, y, z).normalizeLocal();
+        if (velocity != null) {
+            store.subtractLocal(velocity);
+        }
+        return store;
+    }
+
+    /**
+     * @param gameEntity game entity that seeks target
+     * @param target position that is seeked
+     * @param store vector in which result is stored
+     * @return store
+     * @see SteeringKernels#seek(Vector3f, Vector3f, Vector3f, Vector3f)
+     */
+    public static Vector3f seek(GameEntity gameEntity, Vector3f target, Vector3f store) {
+        return seek(gameEntity.getLocalTranslation(), gameEntity.getVelocity(), target, store);
+    }
+
+    /**
+     * Steering away from target position. Desired velocity is offset from
+     * target to position, it is not normalized.
+     *
+     * @param position current position
+     * @param velocity current velocity, can be null
+     * @param target position from which we flee
+     * @param store vector in which result is stored
+     * @return store
+     */
+    public static Vector3f flee(Vector3f position, Vector3f velocity, Vector3f target, Vector3f store) {
+        float x = target.x - position.x;
+        float y = target.y - position.y;
+        float z = target.z - position.z;
+        store.set(x, y, z);
+        if (velocity != null) {
+            store.subtractLocal(velocity);
+        }
+        return store.negateLocal();
+    }
+
+    /**
+     * @param gameEntity game entity that flees from target
+     * @param target position from which we flee
+     * @param store vector in which result is stored
+     * @return store
+     * @see SteeringKernels#flee(Vector3f, Vector3f, Vector3f, Vector3f)
+     */
+    public static Vector3f flee(GameEntity gameEntity, Vector3f target, Vector3f store) {
+        return flee(gameEntity.getLocalTranslation(), gameEntity.getVelocity(), target, store);
+    }
+
+    /**
+     * Factor for slowing down when approaching target. It is 0 when target is
+     * reached, it decreases linearly inside slowing distance, and it is 1
+     * outside of it.
+     *
+     * @param distance distance from target
+     * @param targetRadius radius of target, 0 for position
+     * @param slowingDistance distance where slowing starts
+     * @return factor from [0, 1]
+     */
+    public static float arrivalFactor(float distance, float targetRadius, float slowingDistance) {
+        if (distance < targetRadius + ARRIVAL_ERROR) {
+            return 0;
+        }
+        if (distance < slowingDistance) {
+            return distance / slowingDistance;
+        }
+        return 1;
+    }
+}
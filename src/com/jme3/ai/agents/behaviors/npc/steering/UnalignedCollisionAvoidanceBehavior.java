@@ -33,8 +33,10 @@ import com.jme3.ai.agents.Agent;
 import com.jme3.ai.agents.util.GameEntity;
 import com.jme3.math.Vector3f;
 import com.jme3.scene.Spatial;
+import com.jme3.util.TempVars;
 import com.jme3.math.Plane;
 
+import java.util.Iterator;
 import java.util.List;
 
 /**
@@ -47,10 +49,14 @@ import java.util.List;
  * that potential collision. Returns a steering force vector, which is zero
  * length if there is no impending collision.
  *
+ * If obstacle tree is set and min distance is finite, only obstacles closer
+ * than min distance are found in the tree and tested.
+ *
  * @see ObstacleAvoidanceBehavior
+ * @see ObstacleAvoidanceBehavior#setObstacleTree(com.jme3.ai.agents.util.spatial.DynamicAabbTree)
  *
  * @author Jesús Martín Berlanga
- * @version 1.1.1
+ * @version 1.3.2
  */
 public class UnalignedCollisionAvoidanceBehavior extends ObstacleAvoidanceBehavior {
 
@@ -141,12 +147,31 @@ public class UnalignedCollisionAvoidanceBehavior extends ObstacleAvoidanceBehavi
         float minTime = this.getMinTimeToCollision();
 
         // xxx solely for annotation
-        Vector3f xxxThreatPositionAtNearestApproach = null;
-        Vector3f xxxOurPositionAtNearestApproach = null;
+        TempVars vars = TempVars.get();
+        Vector3f xxxThreatPositionAtNearestApproach = vars.vect1;
+        Vector3f xxxOurPositionAtNearestApproach = vars.vect2;
+        Vector3f threatPositionAtNearestApproach = vars.vect3;
+        Vector3f ourPositionAtNearestApproach = vars.vect4;
 
         /* "For each of the other vehicles, determine which (if any)
          pose the most immediate threat of collision." */
-        for (GameEntity obstacle : this.getObstacles()) {
+        //candidates found in obstacle tree are read by index, without list
+        //wrapper and iterator, otherwise all obstacles are iterated
+        GameEntity[] candidates = null;
+        Iterator<GameEntity> obstacles = null;
+        int count = 0;
+        int size;
+        if (this.getObstacleTree() != null && super.getMinDistance() != Float.POSITIVE_INFINITY) {
+            count = this.queryObstaclesInRadius(super.getMinDistance());
+            candidates = this.getCandidates();
+            size = count;
+        } else {
+            List<GameEntity> obstacleList = this.getObstacles();
+            obstacles = obstacleList.iterator();
+            size = obstacleList.size();
+        }
+        for (int i = 0; i < size; i++) {
+            GameEntity obstacle = candidates != null ? candidates[i] : obstacles.next();
             if (obstacle != this.agent && obstacle.distanceRelativeToGameEntity(this.agent) < super.getMinDistance()) {
                 // "avoid when future positions are this close (or less)"
                 // "At OpenSeer" => float collisionDangerThreshold = this.agent.getRadius() * 2;
@@ -160,20 +185,18 @@ public class UnalignedCollisionAvoidanceBehavior extends ObstacleAvoidanceBehavi
                  threatened collision..." */
                 if ((time >= 0) && (time < minTime * (obstacle.getRadius() + this.agent.getRadius()))) {
                     // "At OpenSeer" =>  if ((time >= 0) && (time < minTime))
-                    Vector3f threatPositionAtNearestApproach = new Vector3f();
-                    Vector3f ourPositionAtNearestApproach = new Vector3f();
-
                     /* "if the two will be close enough to collide,
                      make a note of it" */
                     if (this.agent.computeNearestApproachPositions(obstacle, time, ourPositionAtNearestApproach, threatPositionAtNearestApproach) < collisionDangerThreshold) {
                         minTime = time;
                         threat = obstacle;
-                        xxxThreatPositionAtNearestApproach = threatPositionAtNearestApproach;
-                        xxxOurPositionAtNearestApproach = ourPositionAtNearestApproach;
+                        xxxThreatPositionAtNearestApproach.set(threatPositionAtNearestApproach);
+                        xxxOurPositionAtNearestApproach.set(ourPositionAtNearestApproach);
                     }
                 }
             }
         }
+        this.clearCandidates(count);
 
         // "if a potential collision was found, compute steering to avoid"
         if (threat != null) {
@@ -218,7 +241,7 @@ public class UnalignedCollisionAvoidanceBehavior extends ObstacleAvoidanceBehavi
                     sidePlane.setOriginNormal(this.agent.getLocalTranslation(), agentFordwardVector);
 
                     Vector3f sidePoint = sidePlane.getClosestPoint(threat.getLocalTranslation());
-                    Vector3f sideVector = this.agent.offset(sidePoint).normalize().negate();
+                    Vector3f sideVector = this.agent.offset(sidePoint, sidePoint).normalizeLocal().negateLocal();
 
                     if (sideVector.negate().equals(Vector3f.ZERO)) {
                         //Move in a random direction
@@ -233,6 +256,8 @@ public class UnalignedCollisionAvoidanceBehavior extends ObstacleAvoidanceBehavi
             }
         }
 
+        vars.release();
+
         if (steer == null) {
             steer = new Vector3f();
         }
@@ -31,6 +31,9 @@ package com.jme3.ai.agents.behaviors.npc.steering;
 
 import com.jme3.ai.agents.Agent;
 import com.jme3.ai.agents.behaviors.npc.steering.SteeringExceptions.WallApproachWithoutWallException;
+import com.jme3.ai.agents.util.control.RayCastService;
+import com.jme3.ai.agents.util.control.RayCastService.RayQuery;
+import com.jme3.ai.agents.util.spatial.DistanceField;
 import com.jme3.collision.CollisionResult;
 import com.jme3.collision.CollisionResults;
 import com.jme3.math.Ray;
@@ -43,10 +46,24 @@ import com.jme3.scene.Spatial;
  * offset from it" <br><br>
  *
  * Keep in mind that this relates to wall approach not necessarily to collision
- * detection.
+ * detection. <br><br>
+ *
+ * By default surface of the wall is found with 15 ray tests every frame. If
+ * distance field baked from the wall is set, closest point of the wall is
+ * found in it instead. If batched ray casts are enabled, rays are submitted to
+ * ray cast service and their results are used in next frame, so the surface
+ * that is approached is found from positions of the agent one and two frames
+ * ago.
+ *
+ * Store variants of steering are used only when behavior is exactly
+ * WallApproachBehavior, so subclass that overrides only
+ * calculateRawSteering() still gets it called.
+ *
+ * @see DistanceField
+ * @see RayCastService
  *
  * @author Jesús Martín Berlanga
- * @version 1.1
+ * @version 1.5.1
  */
 public class WallApproachBehavior extends AbstractStrengthSteeringBehavior {
 
@@ -77,10 +94,33 @@ public class WallApproachBehavior extends AbstractStrengthSteeringBehavior {
             return this.direction;
         }
     }
+    /**
+     * All ray tests, values() makes new array on every call.
+     */
+    private static final RayTests[] RAY_TESTS = RayTests.values();
     private Node wall;
     private float offsetToMaintain;
     private float rayTestOffset;
     private static final float MIN_RAY_TEST_OFFSET = 0.001f;
+    private DistanceField distanceField;
+    private final Ray ray = new Ray();
+    private final CollisionResults results = new CollisionResults();
+    private final Vector3f closestPoint = new Vector3f();
+    /**
+     * Temporary vectors for offsets from surface, and closest surface
+     * locations reused in every frame.
+     */
+    private final Vector3f extraOffset = new Vector3f();
+    private final Vector3f surfaceOffset = new Vector3f();
+    private final Vector3f surfaceDirection = new Vector3f();
+    private final LowerDistances distances = new LowerDistances();
+    private boolean batchedRayCasts;
+    /**
+     * Queries in directions of ray tests, and query toward surface
+     * approximated from them.
+     */
+    private RayQuery[] testQueries;
+    private RayQuery surfaceQuery;
 
     /**
      * @throws SteeringExceptions.NegativeValueException If offsetToMaintain is
@@ -156,7 +196,22 @@ public class WallApproachBehavior extends AbstractStrengthSteeringBehavior {
      */
     @Override
     protected Vector3f calculateRawSteering() {
-        Vector3f steer = new Vector3f();
+        return calculateRawSteering(new Vector3f());
+    }
+
+    /**
+     * @see WallApproachBehavior#calculateRawSteering()
+     */
+    @Override
+    protected Vector3f calculateRawSteering(Vector3f store) {
+        Vector3f steer = store.zero();
+
+        if (this.distanceField != null) {
+            return this.calculateDistanceFieldSteering(steer);
+        }
+        if (this.batchedRayCasts) {
+            return this.calculateBatchedSteering(steer);
+        }
 
         Vector3f aproximatedSurfaceLocationDir = this.approximateSurfaceLocation();
 
@@ -164,91 +219,214 @@ public class WallApproachBehavior extends AbstractStrengthSteeringBehavior {
             Vector3f surfaceLocation = this.surfaceLocation(aproximatedSurfaceLocationDir);
 
             if (surfaceLocation != null) {
-                Vector3f extraOffset = this.agent.offset(surfaceLocation).negate().normalize().mult(this.offsetToMaintain);
+                steer = this.seekOffsetFrom(surfaceLocation, steer);
+            }
+        }
+
+        return steer;
+    }
+
+    /**
+     * Seeking point on offset from closest point of the wall in distance
+     * field. The wall is ignored if it is farther than ray tests would reach.
+     */
+    private Vector3f calculateDistanceFieldSteering(Vector3f steer) {
+        Vector3f position = this.agent.getLocalTranslation();
+        if (!this.distanceField.closestPoint(position, this.closestPoint)
+                || this.closestPoint.distanceSquared(position) >= this.rayTestOffset * this.rayTestOffset) {
+            return steer;
+        }
+        Vector3f extraOffset = this.extraOffset.set(position).subtractLocal(this.closestPoint);
+        if (extraOffset.lengthSquared() == 0) {
+            this.distanceField.normal(position, extraOffset);
+        }
+        extraOffset.normalizeLocal().multLocal(this.offsetToMaintain);
 
-                SeekBehavior seek = new SeekBehavior(this.agent, surfaceLocation.add(extraOffset));
-                steer = seek.calculateRawSteering();
+        return SteeringKernels.seek(this.agent, extraOffset.addLocal(this.closestPoint), steer);
+    }
+
+    /**
+     * Steering toward surface found by queries of previous frame, and
+     * submitting queries for next frame. Query toward surface is submitted in
+     * direction approximated from ray tests of previous frame.
+     */
+    private Vector3f calculateBatchedSteering(Vector3f steer) {
+        RayCastService service = this.agent.getAppState().getRayCastService();
+        Vector3f position = this.agent.getLocalTranslation();
+        if (this.testQueries == null) {
+            this.testQueries = new RayQuery[RAY_TESTS.length];
+            for (int i = 0; i < RAY_TESTS.length; i++) {
+                this.testQueries[i] = new RayQuery();
             }
+            this.surfaceQuery = new RayQuery();
         }
 
+        if (this.surfaceQuery.isHit()) {
+            steer = this.seekOffsetFrom(this.surfaceQuery.getContactPoint(), steer);
+        }
+
+        this.distances.clear();
+        for (int i = 0; i < this.testQueries.length; i++) {
+            if (this.testQueries[i].isHit()) {
+                this.distances.addDistance(this.agent.offset(this.testQueries[i].getContactPoint(), this.surfaceOffset));
+            }
+        }
+        if (this.distances.distanceSum(this.surfaceDirection)) {
+            this.surfaceQuery.set(this.wall, position, this.surfaceDirection, Float.POSITIVE_INFINITY);
+            service.submit(this.surfaceQuery);
+        }
+
+        for (int i = 0; i < RAY_TESTS.length; i++) {
+            this.testQueries[i].set(this.wall, position, RAY_TESTS[i].getDirection(), Float.POSITIVE_INFINITY);
+            service.submit(this.testQueries[i]);
+        }
         return steer;
     }
 
     /**
-     * Check for intersections with the wall - Ray test
+     * Seeking point that is offsetToMaintain away from surface location, on
+     * the side of the agent.
      */
-    private Vector3f approximateSurfaceLocation() {
-        class LowerDistances {
+    private Vector3f seekOffsetFrom(Vector3f surfaceLocation, Vector3f steer) {
+        Vector3f target = this.agent.offset(surfaceLocation, this.extraOffset).negateLocal().normalizeLocal()
+                .multLocal(this.offsetToMaintain).addLocal(surfaceLocation);
+        return SteeringKernels.seek(this.agent, target, steer);
+    }
 
-            private Vector3f[] lowerDistances = new Vector3f[]{
-                Vector3f.POSITIVE_INFINITY,
-                Vector3f.POSITIVE_INFINITY,
-                Vector3f.POSITIVE_INFINITY,};
+    /**
+     * Enabling submitting rays to ray cast service of agent's game, instead of
+     * casting them through the wall in every frame. The wall is treated as
+     * static.
+     *
+     * @param batchedRayCasts true for using ray cast service
+     * @see RayCastService
+     */
+    public void setBatchedRayCasts(boolean batchedRayCasts) {
+        this.batchedRayCasts = batchedRayCasts;
+    }
 
-            private void addDistance(Vector3f distance) {
-                float distanceLength = distance.length();
+    public boolean isBatchedRayCasts() {
+        return this.batchedRayCasts;
+    }
 
-                int lowerPos = -1;
-                float currentLength = Float.MAX_VALUE;
+    /**
+     * Setting distance field used instead of ray tests. It must be baked from
+     * the same wall, with max distance at least (offsetToMaintain + agent
+     * radius) * 4.
+     *
+     * @param distanceField distance field, null for using ray tests
+     */
+    public void setDistanceField(DistanceField distanceField) {
+        this.distanceField = distanceField;
+    }
 
-                for (int i = 0; i < lowerDistances.length; i++) {
-                    float length = lowerDistances[i].length();
+    public DistanceField getDistanceField() {
+        return this.distanceField;
+    }
 
-                    if (length > currentLength) {
-                        currentLength = length;
-                        lowerPos = i;
-                    }
-                }
+    /**
+     * Check for intersections with the wall - Ray test
+     */
+    private Vector3f approximateSurfaceLocation() {
+        this.distances.clear();
 
-                if (lowerPos != -1 && lowerDistances[lowerPos].length() > distanceLength) {
-                    lowerDistances[lowerPos] = distance;
-                }
-            }
+        for (RayTests rayTest : RAY_TESTS) {
+            Vector3f rayTestSurfaceLocation = this.surfaceLocation(rayTest.getDirection());
 
-            private Vector3f distanceSum() {
-                Vector3f sum = new Vector3f();
-                boolean almostOne = false;
+            if (rayTestSurfaceLocation != null) {
+                this.distances.addDistance(agent.offset(rayTestSurfaceLocation, this.surfaceOffset));
+            }
+        }
 
-                for (int i = 0; i < lowerDistances.length; i++) {
-                    if (lowerDistances[i] != null && lowerDistances[i].length() < rayTestOffset) {
-                        sum = sum.add(lowerDistances[i]);
-                        almostOne = true;
-                    }
-                }
+        return this.distances.distanceSum(this.surfaceDirection) ? this.surfaceDirection : null;
+    }
 
-                if (almostOne) {
-                    return sum;
-                } else {
-                    return null;
-                }
+    /**
+     * The three closest surface locations. Added distances are copied, so
+     * the same vector can be passed again.
+     */
+    private class LowerDistances {
+
+        private final Vector3f[] lowerDistances = new Vector3f[]{
+            new Vector3f(),
+            new Vector3f(),
+            new Vector3f()};
+        /**
+         * Lengths of lower distances, infinite for empty place.
+         */
+        private final float[] lengths = new float[lowerDistances.length];
+
+        private void clear() {
+            for (int i = 0; i < lowerDistances.length; i++) {
+                lowerDistances[i].set(Vector3f.POSITIVE_INFINITY);
+                lengths[i] = Float.POSITIVE_INFINITY;
             }
         }
 
-        LowerDistances distances = new LowerDistances();
+        private void addDistance(Vector3f distance) {
+            float distanceLength = distance.length();
 
-        for (RayTests rayTest : WallApproachBehavior.RayTests.values()) {
-            Vector3f rayTestSurfaceLocation = this.surfaceLocation(rayTest.getDirection());
+            int lowerPos = -1;
+            float currentLength = Float.MAX_VALUE;
 
-            if (rayTestSurfaceLocation != null) {
-                distances.addDistance(agent.offset(rayTestSurfaceLocation));
+            for (int i = 0; i < lowerDistances.length; i++) {
+                float length = lengths[i];
+
+                if (length > currentLength) {
+                    currentLength = length;
+                    lowerPos = i;
+                }
+            }
+
+            if (lowerPos != -1 && lengths[lowerPos] > distanceLength) {
+                lowerDistances[lowerPos].set(distance);
+                lengths[lowerPos] = distanceLength;
             }
         }
 
-        return distances.distanceSum();
+        /**
+         * @param store vector in which sum of distances shorter than ray
+         * test offset is stored
+         * @return false if there is no such distance
+         */
+        private boolean distanceSum(Vector3f store) {
+            store.zero();
+            boolean almostOne = false;
+
+            for (int i = 0; i < lowerDistances.length; i++) {
+                if (lengths[i] < rayTestOffset) {
+                    store.addLocal(lowerDistances[i]);
+                    almostOne = true;
+                }
+            }
+
+            return almostOne;
+        }
     }
 
     private Vector3f surfaceLocation(Vector3f direction) {
         Vector3f surfaceLocation = null;
 
-        CollisionResults results = new CollisionResults();
-        Ray ray = new Ray(this.agent.getLocalTranslation(), direction);
-        this.wall.collideWith(ray, results);
+        this.results.clear();
+        this.ray.setOrigin(this.agent.getLocalTranslation());
+        this.ray.setDirection(direction);
+        this.wall.collideWith(this.ray, this.results);
 
         CollisionResult collisionResult = results.getClosestCollision();
 
         if (collisionResult != null && !Float.isNaN(collisionResult.getDistance()) && !Float.isInfinite(collisionResult.getDistance())) {
-            surfaceLocation = results.getClosestCollision().getContactPoint();
+            surfaceLocation = collisionResult.getContactPoint();
         }
         return surfaceLocation;
     }
-}
\ No newline at end of file
+
+    /**
+     * Store variant of steering is implemented in this class.
+     *
+     * @see AbstractSteeringBehavior#isStoreSteering()
+     */
+    @Override
+    protected boolean isStoreSteering() {
+        return getClass() == WallApproachBehavior.class;
+    }
+}
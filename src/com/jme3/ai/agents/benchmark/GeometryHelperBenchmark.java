@@ -0,0 +1,132 @@
+/**
+ * Copyright (c) 2014, jMonkeyEngine All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *
+ * Redistributions of source code must retain the above copyright notice, this
+ * list of conditions and the following disclaimer.
+ *
+ * Redistributions in binary form must reproduce the above copyright notice,
+ * this list of conditions and the following disclaimer in the documentation
+ * and/or other materials provided with the distribution.
+ *
+ * Neither the name of 'jMonkeyEngine' nor the names of its contributors may be
+ * used to endorse or promote products derived from this software without
+ * specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ */
+package com.jme3.ai.agents.benchmark;
+
+import com.jme3.ai.agents.Agent;
+import com.jme3.math.FastMath;
+import com.jme3.math.Quaternion;
+import com.jme3.math.Vector3f;
+import com.jme3.scene.Node;
+
+/**
+ * Comparing allocating geometry helpers of GameEntity with their store and
+ * squared variants. Forwardness is also compared with the way it was computed
+ * before, with angleBetween() and cosine of it. For every helper it reports
+ * nanoseconds and bytes per call, and exit status is 1 if store variants
+ * allocate. <br><br>
+ *
+ * Arguments: calls per measurement (default 5000000).
+ *
+ * @author Tihomir Radosavljević
+ * @version 1.0.0
+ */
+public class GeometryHelperBenchmark {
+
+    private static final int ROUNDS = 3;
+    /**
+     * Bytes per call that are still counted as no allocation, reading
+     * allocation counter allocates a little.
+     */
+    private static final double ALLOCATION_TOLERANCE = 0.01;
+    private static final String[] NAMES = {
+        "offset", "offset(store)",
+        "fordwardVector", "fordwardVector(store)",
+        "getPredictedPosition", "getPredictedPosition(store)",
+        "distanceRelativeToGameEntity", "distanceSquaredRelativeToGameEntity",
+        "forwardness with angleBetween", "forwardness"};
+    /**
+     * Keeps results alive, so JIT compiler doesn't remove calls.
+     */
+    private static float sink;
+
+    public static void main(String[] args) {
+        int calls = args.length > 0 ? Integer.parseInt(args[0]) : 5000000;
+        AllocationCounter counter = new AllocationCounter();
+        Agent agent = new Agent("agent", new Node());
+        Agent other = new Agent("other", new Node());
+        agent.setLocalTranslation(1, 2, 3);
+        agent.setLocalRotation(new Quaternion().fromAngleAxis(0.3f, Vector3f.UNIT_Y));
+        other.setLocalTranslation(5, 1, -2);
+        other.setVelocity(new Vector3f(1, 0, 1));
+        Vector3f store = new Vector3f();
+        boolean allocates = false;
+        for (int round = 0; round < ROUNDS; round++) {
+            for (int helper = 0; helper < NAMES.length; helper++) {
+                long bytes = counter.allocatedBytes();
+                long start = System.nanoTime();
+                for (int i = 0; i < calls; i++) {
+                    sink += call(helper, agent, other, store);
+                }
+                long time = System.nanoTime() - start;
+                bytes = counter.allocatedBytes() - bytes;
+                double bytesPerCall = (double) bytes / calls;
+                //odd helpers are variants that must not allocate
+                boolean storeVariant = helper % 2 == 1;
+                if (round == ROUNDS - 1) {
+                    System.out.println(NAMES[helper] + ": " + (double) time / calls + " ns/call, "
+                            + (bytes < 0 ? "unknown" : String.valueOf(bytesPerCall)) + " bytes/call");
+                    if (storeVariant && bytesPerCall > ALLOCATION_TOLERANCE) {
+                        allocates = true;
+                    }
+                }
+            }
+        }
+        if (allocates) {
+            System.out.println("FAILED: store variants allocate");
+            System.exit(1);
+        }
+    }
+
+    private static float call(int helper, Agent agent, Agent other, Vector3f store) {
+        switch (helper) {
+            case 0:
+                return agent.offset(other).x;
+            case 1:
+                return agent.offset(other, store).x;
+            case 2:
+                return agent.fordwardVector().z;
+            case 3:
+                return agent.fordwardVector(store).z;
+            case 4:
+                return other.getPredictedPosition().x;
+            case 5:
+                return other.getPredictedPosition(store).x;
+            case 6:
+                return agent.distanceRelativeToGameEntity(other);
+            case 7:
+                return agent.distanceSquaredRelativeToGameEntity(other);
+            case 8:
+                Vector3f looks = agent.getLocalRotation().mult(new Vector3f(0, 0, 1)).normalize();
+                return FastMath.cos(looks.angleBetween(agent.offset(other).normalize()));
+            default:
+                return agent.forwardness(other);
+        }
+    }
+}
@@ -0,0 +1,164 @@
+/**
+ * Copyright (c) 2014, jMonkeyEngine All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *
+ * Redistributions of source code must retain the above copyright notice, this
+ * list of conditions and the following disclaimer.
+ *
+ * Redistributions in binary form must reproduce the above copyright notice,
+ * this list of conditions and the following disclaimer in the documentation
+ * and/or other materials provided with the distribution.
+ *
+ * Neither the name of 'jMonkeyEngine' nor the names of its contributors may be
+ * used to endorse or promote products derived from this software without
+ * specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ */
+package com.jme3.ai.agents.benchmark;
+
+import com.jme3.ai.agents.Agent;
+import com.jme3.ai.agents.util.GameEntity;
+import com.jme3.ai.agents.util.spatial.KdTree;
+import com.jme3.ai.agents.util.spatial.SpatialIndex;
+import com.jme3.math.FastMath;
+import com.jme3.math.Vector3f;
+import com.jme3.scene.Node;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+/**
+ * Comparing k nearest neighbours from KdTree with linear scan over all game
+ * entities, the way HideBehavior and BoxExploreBehavior search for closest
+ * one, at 1k, 10k and 100k game entities. For every size it reports cost of
+ * refreshing tree after all game entities moved, cost of one query for 1
+ * and 7 nearest, and bytes allocated per query. Exit status is 1 if tree
+ * and scan find different distances. <br><br>
+ *
+ * Arguments: number of queries per size (default 1000).
+ *
+ * @author Tihomir Radosavljević
+ * @version 1.0.0
+ */
+public class NearestNeighbourBenchmark {
+
+    private static final int[] SIZES = {1000, 10000, 100000};
+    private static final int[] NEIGHBOURS = {1, 7};
+    private static final int ROUNDS = 3;
+    /**
+     * Keeps results alive, so JIT compiler doesn't remove searches.
+     */
+    private static float sink;
+
+    public static void main(String[] args) {
+        int queries = args.length > 0 ? Integer.parseInt(args[0]) : 1000;
+        AllocationCounter counter = new AllocationCounter();
+        Random random = new Random(1);
+        for (int size : SIZES) {
+            List<Agent> agents = new ArrayList<Agent>(size);
+            KdTree tree = new KdTree();
+            float side = FastMath.sqrt(size) * 10;
+            for (int i = 0; i < size; i++) {
+                Agent agent = new Agent("agent" + i, new Node());
+                agent.setId(i);
+                agent.setLocalTranslation(random.nextFloat() * side, 0, random.nextFloat() * side);
+                tree.add(agent, SpatialIndex.AGENT_LAYER);
+                agents.add(agent);
+            }
+            for (int round = 0; round < ROUNDS; round++) {
+                for (Agent agent : agents) {
+                    agent.getLocalTranslation().addLocal(random.nextFloat() - 0.5f, 0, random.nextFloat() - 0.5f);
+                    agent.setLocalTranslation(agent.getLocalTranslation());
+                }
+                long start = System.nanoTime();
+                tree.refresh();
+                long refresh = System.nanoTime() - start;
+                StringBuilder line = new StringBuilder();
+                line.append(size).append(" game entities: refresh ").append(refresh / 1e6).append(" ms");
+                for (int k : NEIGHBOURS) {
+                    line.append(compare(tree, agents, k, queries, counter));
+                }
+                //only last round is warmed up
+                if (round == ROUNDS - 1) {
+                    System.out.println(line);
+                }
+            }
+        }
+    }
+
+    private static String compare(KdTree tree, List<Agent> agents, int k, int queries, AllocationCounter counter) {
+        int[] ids = new int[k];
+        float[] treeDistances = new float[k];
+        float[] scanDistances = new float[k];
+        float[] allTreeDistances = new float[queries * k];
+
+        long bytes = counter.allocatedBytes();
+        long start = System.nanoTime();
+        for (int q = 0; q < queries; q++) {
+            Agent agent = agents.get(q % agents.size());
+            int found = tree.queryNearest(agent.getLocalTranslation(), k, SpatialIndex.ALL_LAYERS, agent, ids, treeDistances);
+            System.arraycopy(treeDistances, 0, allTreeDistances, q * k, found);
+        }
+        long treeTime = System.nanoTime() - start;
+        long treeBytes = counter.allocatedBytes() - bytes;
+
+        start = System.nanoTime();
+        for (int q = 0; q < queries; q++) {
+            Agent agent = agents.get(q % agents.size());
+            int found = scanNearest(agents, agent, k, scanDistances);
+            for (int i = 0; i < found; i++) {
+                if (scanDistances[i] != allTreeDistances[q * k + i]) {
+                    System.out.println("FAILED: tree and scan differ for " + agent.getName());
+                    System.exit(1);
+                }
+            }
+        }
+        long scanTime = System.nanoTime() - start;
+        return ", " + k + "-NN tree " + treeTime / 1e3 / queries + " us/query ("
+                + (treeBytes < 0 ? "unknown" : String.valueOf((double) treeBytes / queries)) + " bytes/query), scan "
+                + scanTime / 1e3 / queries + " us/query";
+    }
+
+    /**
+     * Linear scan keeping k closest distances in sorted array.
+     */
+    private static int scanNearest(List<Agent> agents, GameEntity exclude, int k, float[] distancesSquared) {
+        Vector3f point = exclude.getLocalTranslation();
+        int found = 0;
+        for (int i = 0; i < agents.size(); i++) {
+            Agent agent = agents.get(i);
+            if (agent == exclude) {
+                continue;
+            }
+            Vector3f position = agent.getLocalTranslation();
+            float dx = position.x - point.x;
+            float dy = position.y - point.y;
+            float dz = position.z - point.z;
+            float distanceSquared = dx * dx + dy * dy + dz * dz;
+            if (found == k && distanceSquared >= distancesSquared[k - 1]) {
+                continue;
+            }
+            int index = found < k ? found++ : k - 1;
+            while (index > 0 && distancesSquared[index - 1] > distanceSquared) {
+                distancesSquared[index] = distancesSquared[index - 1];
+                index--;
+            }
+            distancesSquared[index] = distanceSquared;
+        }
+        sink += found > 0 ? distancesSquared[0] : 0;
+        return found;
+    }
+}
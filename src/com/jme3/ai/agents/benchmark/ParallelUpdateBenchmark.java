@@ -0,0 +1,137 @@
+/**
+ * Copyright (c) 2014, jMonkeyEngine All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *
+ * Redistributions of source code must retain the above copyright notice, this
+ * list of conditions and the following disclaimer.
+ *
+ * Redistributions in binary form must reproduce the above copyright notice,
+ * this list of conditions and the following disclaimer in the documentation
+ * and/or other materials provided with the distribution.
+ *
+ * Neither the name of 'jMonkeyEngine' nor the names of its contributors may be
+ * used to endorse or promote products derived from this software without
+ * specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ */
+package com.jme3.ai.agents.benchmark;
+
+import com.jme3.ai.agents.Agent;
+import com.jme3.ai.agents.behaviors.npc.SimpleMainBehavior;
+import com.jme3.ai.agents.behaviors.npc.steering.AlignmentBehavior;
+import com.jme3.ai.agents.behaviors.npc.steering.CohesionBehavior;
+import com.jme3.ai.agents.behaviors.npc.steering.CompoundSteeringBehavior;
+import com.jme3.ai.agents.behaviors.npc.steering.SeparationBehavior;
+import com.jme3.ai.agents.util.GameEntity;
+import com.jme3.ai.agents.util.control.HeadlessSimulation;
+import com.jme3.ai.agents.util.control.MonkeyBrainsAppState;
+import com.jme3.math.FastMath;
+import com.jme3.math.Vector3f;
+import com.jme3.scene.Node;
+import java.util.List;
+import java.util.Random;
+
+/**
+ * Scaling of parallel agent update at 1, 2, 4 and 8 threads. Agents flock
+ * with neighbours read from snapshots and kinematic store, as parallel
+ * update requires, so every thread count must end with the same positions.
+ * Harness reports time and allocation per tick, speedup against one thread,
+ * and exits with status 1 if positions differ. <br><br>
+ *
+ * Arguments: number of agents (default 5000), measured ticks (default 100).
+ *
+ * @author Tihomir Radosavljević
+ * @version 1.0.0
+ */
+public class ParallelUpdateBenchmark {
+
+    private static final float TPF = 0.02f;
+    private static final int[] THREADS = {1, 2, 4, 8};
+
+    public static void main(String[] args) {
+        int agents = args.length > 0 ? Integer.parseInt(args[0]) : 5000;
+        int ticks = args.length > 1 ? Integer.parseInt(args[1]) : 100;
+        AllocationCounter counter = new AllocationCounter();
+        System.out.println("agents " + agents + ", ticks " + ticks + ", processors "
+                + Runtime.getRuntime().availableProcessors());
+        double oneThread = 0;
+        double expectedHash = 0;
+        for (int threads : THREADS) {
+            MonkeyBrainsAppState appState = createGame(agents);
+            appState.setParallelism(threads);
+            HeadlessSimulation simulation = new HeadlessSimulation(appState, TPF);
+            simulation.run(ticks);
+            long bytes = counter.allocatedBytes();
+            HeadlessSimulation.Report report = simulation.run(ticks);
+            bytes = counter.allocatedBytes() - bytes;
+            double hash = positionHash(appState.getAgents());
+            appState.cleanup();
+            appState.setParallelism(1);
+
+            double millisPerTick = report.getNanoTime() / 1e6 / report.getTicks();
+            if (threads == 1) {
+                oneThread = millisPerTick;
+                expectedHash = hash;
+            }
+            System.out.println(threads + " threads: " + millisPerTick + " ms/tick, speedup "
+                    + oneThread / millisPerTick + ", "
+                    + (bytes < 0 ? "unknown" : String.valueOf(bytes / report.getTicks())) + " bytes/tick");
+            if (hash != expectedHash) {
+                System.out.println("FAILED: positions with " + threads + " threads differ from one thread");
+                System.exit(1);
+            }
+        }
+    }
+
+    private static double positionHash(List<Agent> agents) {
+        double hash = 0;
+        for (int i = 0; i < agents.size(); i++) {
+            Vector3f position = agents.get(i).getLocalTranslation();
+            hash = hash * 31 + position.x + position.y * 7 + position.z * 13;
+        }
+        return hash;
+    }
+
+    private static MonkeyBrainsAppState createGame(int count) {
+        MonkeyBrainsAppState appState = new MonkeyBrainsAppState();
+        appState.setRegistryMode(MonkeyBrainsAppState.RegistryMode.UNBOUNDED);
+        appState.setSnapshotsEnabled(true);
+        appState.setKinematicStoreEnabled(true);
+        Random random = new Random(1);
+        int side = (int) FastMath.sqrt(count) + 1;
+        for (int i = 0; i < count; i++) {
+            Agent agent = new Agent("agent" + i, new Node());
+            agent.setMass(1);
+            agent.setMaxMoveSpeed(2);
+            agent.setRotationSpeed(1);
+            agent.setRadius(0.5f);
+            agent.setVelocity(new Vector3f(random.nextFloat() - 0.5f, 0, random.nextFloat() - 0.5f));
+            appState.addAgent(agent, (i % side) * 2, 0, (i / side) * 2);
+        }
+        List<GameEntity> all = appState.getAgentsAsGameEntities();
+        for (Agent agent : appState.getAgents()) {
+            SimpleMainBehavior main = new SimpleMainBehavior(agent);
+            CompoundSteeringBehavior flock = new CompoundSteeringBehavior(agent);
+            flock.addSteerBehavior(new SeparationBehavior(agent, all, 3));
+            flock.addSteerBehavior(new AlignmentBehavior(agent, all, 5, FastMath.PI));
+            flock.addSteerBehavior(new CohesionBehavior(agent, all, 5, FastMath.PI));
+            main.addBehavior(flock);
+            agent.setMainBehavior(main);
+        }
+        appState.getKinematicStore().setVectorized(true);
+        return appState;
+    }
+}
@@ -0,0 +1,129 @@
+/**
+ * Copyright (c) 2014, jMonkeyEngine All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *
+ * Redistributions of source code must retain the above copyright notice, this
+ * list of conditions and the following disclaimer.
+ *
+ * Redistributions in binary form must reproduce the above copyright notice,
+ * this list of conditions and the following disclaimer in the documentation
+ * and/or other materials provided with the distribution.
+ *
+ * Neither the name of 'jMonkeyEngine' nor the names of its contributors may be
+ * used to endorse or promote products derived from this software without
+ * specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ */
+package com.jme3.ai.agents.benchmark;
+
+import com.jme3.ai.agents.Agent;
+import com.jme3.ai.agents.behaviors.npc.SimpleMainBehavior;
+import com.jme3.ai.agents.behaviors.npc.steering.SeekBehavior;
+import com.jme3.ai.agents.util.control.HeadlessSimulation;
+import com.jme3.ai.agents.util.control.MonkeyBrainsAppState;
+import com.jme3.math.FastMath;
+import com.jme3.math.Vector3f;
+import com.jme3.scene.Node;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Stress test of unbounded registry. Agents are spawned, ticked and removed
+ * in game with tenth of agents and in full game, and per-tick cost of one
+ * agent is compared. Exit status is 1 if cost of agent in full game is more
+ * than MAX_COST_RATIO times larger than in small game, so it can be run as
+ * check. <br><br>
+ *
+ * Arguments: number of agents (default 100000), measured ticks (default
+ * 50).
+ *
+ * @author Tihomir Radosavljević
+ * @version 1.0.0
+ */
+public class RegistryStressBenchmark {
+
+    private static final float TPF = 0.02f;
+    /**
+     * How many times more can update of one agent cost in full game than in
+     * game with tenth of agents.
+     */
+    private static final double MAX_COST_RATIO = 3;
+
+    public static void main(String[] args) {
+        int agents = args.length > 0 ? Integer.parseInt(args[0]) : 100000;
+        int ticks = args.length > 1 ? Integer.parseInt(args[1]) : 50;
+        AllocationCounter counter = new AllocationCounter();
+        //first run only warms up
+        run(agents / 10, ticks, counter, false);
+        double small = run(agents / 10, ticks, counter, true);
+        double full = run(agents, ticks, counter, true);
+        double ratio = full / small;
+        System.out.println("cost of agent update grew " + ratio + " times for 10 times more agents");
+        if (ratio > MAX_COST_RATIO) {
+            System.out.println("FAILED: per-tick cost is not bounded, limit is " + MAX_COST_RATIO);
+            System.exit(1);
+        }
+    }
+
+    /**
+     * @return nanoseconds per agent update
+     */
+    private static double run(int count, int ticks, AllocationCounter counter, boolean print) {
+        MonkeyBrainsAppState appState = new MonkeyBrainsAppState();
+        appState.setRegistryMode(MonkeyBrainsAppState.RegistryMode.UNBOUNDED);
+        List<Agent> agents = new ArrayList<Agent>(count);
+        int side = (int) FastMath.sqrt(count) + 1;
+        long start = System.nanoTime();
+        for (int i = 0; i < count; i++) {
+            Agent agent = new Agent("agent" + i, new Node());
+            agent.setMass(1);
+            agent.setMaxMoveSpeed(2);
+            agent.setRotationSpeed(1);
+            SimpleMainBehavior main = new SimpleMainBehavior(agent);
+            main.addBehavior(new SeekBehavior(agent, new Vector3f(side, 0, side)));
+            agent.setMainBehavior(main);
+            appState.addAgent(agent, i % side, 0, i / side);
+            agents.add(agent);
+        }
+        long spawn = System.nanoTime() - start;
+
+        HeadlessSimulation simulation = new HeadlessSimulation(appState, TPF);
+        simulation.run(ticks);
+        long bytes = counter.allocatedBytes();
+        HeadlessSimulation.Report report = simulation.run(ticks);
+        bytes = counter.allocatedBytes() - bytes;
+
+        start = System.nanoTime();
+        for (int i = agents.size() - 1; i >= 0; i--) {
+            appState.removeAgent(agents.get(i));
+        }
+        long remove = System.nanoTime() - start;
+        if (appState.getAgents().size() != 0) {
+            throw new IllegalStateException("Agents left after removing: " + appState.getAgents().size());
+        }
+        appState.cleanup();
+
+        double nanosPerAgent = (double) report.getNanoTime() / report.getAgentUpdates();
+        if (print) {
+            System.out.println(count + " agents: spawn " + spawn / 1e6 + " ms, "
+                    + report.getNanoTime() / 1e6 / report.getTicks() + " ms/tick, "
+                    + nanosPerAgent + " ns/agent update, "
+                    + (bytes < 0 ? "unknown" : String.valueOf(bytes / report.getTicks())) + " bytes/tick, "
+                    + "remove " + remove / 1e6 + " ms");
+        }
+        return nanosPerAgent;
+    }
+}
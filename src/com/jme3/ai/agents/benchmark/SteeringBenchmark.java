@@ -0,0 +1,155 @@
+/**
+ * Copyright (c) 2014, jMonkeyEngine All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *
+ * Redistributions of source code must retain the above copyright notice, this
+ * list of conditions and the following disclaimer.
+ *
+ * Redistributions in binary form must reproduce the above copyright notice,
+ * this list of conditions and the following disclaimer in the documentation
+ * and/or other materials provided with the distribution.
+ *
+ * Neither the name of 'jMonkeyEngine' nor the names of its contributors may be
+ * used to endorse or promote products derived from this software without
+ * specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ */
+package com.jme3.ai.agents.benchmark;
+
+import com.jme3.ai.agents.Agent;
+import com.jme3.ai.agents.behaviors.npc.SimpleMainBehavior;
+import com.jme3.ai.agents.behaviors.npc.steering.AlignmentBehavior;
+import com.jme3.ai.agents.behaviors.npc.steering.CohesionBehavior;
+import com.jme3.ai.agents.behaviors.npc.steering.CompoundSteeringBehavior;
+import com.jme3.ai.agents.behaviors.npc.steering.SeekBehavior;
+import com.jme3.ai.agents.behaviors.npc.steering.SeparationBehavior;
+import com.jme3.ai.agents.util.GameEntity;
+import com.jme3.ai.agents.util.control.HeadlessSimulation;
+import com.jme3.ai.agents.util.control.MonkeyBrainsAppState;
+import com.jme3.math.FastMath;
+import com.jme3.math.Vector3f;
+import com.jme3.scene.Node;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+/**
+ * Comparing steering with store vectors and steering with allocating
+ * methods, for the same behaviors and agents. Allocating variant is made by
+ * returning false from isStoreSteering(), so every behavior goes through
+ * calculateSteering() and calculateRawSteering() that return new vectors.
+ * <br><br>
+ *
+ * Arguments: number of agents (default 2000), measured ticks (default 500).
+ * Every case is warmed up with the same number of ticks before measuring.
+ *
+ * @author Tihomir Radosavljević
+ * @version 1.0.0
+ */
+public class SteeringBenchmark {
+
+    private static final float TPF = 0.02f;
+    private static final int ROUNDS = 3;
+
+    public static void main(String[] args) {
+        int agents = args.length > 0 ? Integer.parseInt(args[0]) : 2000;
+        int ticks = args.length > 1 ? Integer.parseInt(args[1]) : 500;
+        AllocationCounter counter = new AllocationCounter();
+        System.out.println("agents " + agents + ", ticks " + ticks);
+        for (int round = 0; round < ROUNDS; round++) {
+            for (int scenario = 0; scenario < 2; scenario++) {
+                for (int store = 1; store >= 0; store--) {
+                    String name = (scenario == 0 ? "seek" : "flock") + (store == 1 ? " store" : " allocating");
+                    MonkeyBrainsAppState appState = createGame(agents, scenario == 1, store == 1);
+                    HeadlessSimulation simulation = new HeadlessSimulation(appState, TPF);
+                    simulation.run(ticks);
+                    long bytes = counter.allocatedBytes();
+                    HeadlessSimulation.Report report = simulation.run(ticks);
+                    bytes = counter.allocatedBytes() - bytes;
+                    appState.cleanup();
+                    print(round, name, report, bytes, agents);
+                }
+            }
+        }
+    }
+
+    private static void print(int round, String name, HeadlessSimulation.Report report, long bytes, int agents) {
+        double microsPerTick = report.getNanoTime() / 1e3 / report.getTicks();
+        double bytesPerAgentTick = (double) bytes / report.getTicks() / agents;
+        System.out.println("round " + round + ", " + name + ": "
+                + microsPerTick + " us/tick, "
+                + (bytes < 0 ? "unknown" : String.valueOf(bytesPerAgentTick)) + " bytes/agent/tick");
+    }
+
+    private static MonkeyBrainsAppState createGame(int count, boolean flock, boolean store) {
+        MonkeyBrainsAppState appState = new MonkeyBrainsAppState();
+        appState.setRegistryMode(MonkeyBrainsAppState.RegistryMode.UNBOUNDED);
+        Random random = new Random(1);
+        List<GameEntity> all = new ArrayList<GameEntity>(count);
+        int side = (int) FastMath.sqrt(count) + 1;
+        for (int i = 0; i < count; i++) {
+            Agent agent = new Agent("agent" + i, new Node());
+            agent.setMass(1);
+            agent.setMaxMoveSpeed(2);
+            agent.setRotationSpeed(1);
+            agent.setRadius(0.5f);
+            agent.setVelocity(new Vector3f(random.nextFloat() - 0.5f, 0, random.nextFloat() - 0.5f));
+            appState.addAgent(agent, (i % side) * 2, 0, (i / side) * 2);
+            all.add(agent);
+        }
+        for (GameEntity gameEntity : all) {
+            Agent agent = (Agent) gameEntity;
+            SimpleMainBehavior main = new SimpleMainBehavior(agent);
+            if (flock) {
+                CompoundSteeringBehavior compound = store ? new CompoundSteeringBehavior(agent) : new CompoundSteeringBehavior(agent) {
+                    @Override
+                    protected boolean isStoreSteering() {
+                        return false;
+                    }
+                };
+                compound.addSteerBehavior(store ? new SeparationBehavior(agent, all, 3) : new SeparationBehavior(agent, all, 3) {
+                    @Override
+                    protected boolean isStoreSteering() {
+                        return false;
+                    }
+                });
+                compound.addSteerBehavior(store ? new AlignmentBehavior(agent, all, 5, FastMath.PI) : new AlignmentBehavior(agent, all, 5, FastMath.PI) {
+                    @Override
+                    protected boolean isStoreSteering() {
+                        return false;
+                    }
+                });
+                compound.addSteerBehavior(store ? new CohesionBehavior(agent, all, 5, FastMath.PI) : new CohesionBehavior(agent, all, 5, FastMath.PI) {
+                    @Override
+                    protected boolean isStoreSteering() {
+                        return false;
+                    }
+                });
+                main.addBehavior(compound);
+            } else {
+                Vector3f target = new Vector3f(random.nextFloat() * side * 2, 0, random.nextFloat() * side * 2);
+                main.addBehavior(store ? new SeekBehavior(agent, target) : new SeekBehavior(agent, target) {
+                    @Override
+                    protected boolean isStoreSteering() {
+                        return false;
+                    }
+                });
+            }
+            agent.setMainBehavior(main);
+        }
+        return appState;
+    }
+}
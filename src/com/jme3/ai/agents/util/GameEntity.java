@@ -39,6 +39,7 @@ import com.jme3.math.Vector3f;
 import com.jme3.renderer.RenderManager;
 import com.jme3.renderer.ViewPort;
 import com.jme3.scene.control.AbstractControl;
+import com.jme3.util.TempVars;
 
 /**
  * Base class for game objects that are interacting in game, and in general can
@@ -51,10 +52,15 @@ import com.jme3.scene.control.AbstractControl;
  * @see MonkeyBrainsAppState#addAgent(com.jme3.ai.agents.Agent, float, float, float) For
  * other GameEntity use:
  * @see MonkeyBrainsAppState#addGameObject(com.jme3.ai.agents.util.GameEntity)
+ * <br><br>
+ *
+ * Geometry helpers that return vectors have variants with store vector, and
+ * helpers that return only distance or forwardness don't allocate, so they
+ * can be used in loops over many game entities.
  *
  * @author Tihomir Radosavljević
  * @author Jesús Martín Berlanga
- * @version 1.3.2
+ * @version 1.9.0
  */
 public abstract class GameEntity extends AbstractControl {
 
@@ -98,17 +104,55 @@ public abstract class GameEntity extends AbstractControl {
      * unexpecting results.
      */
     protected int id;
+    /**
+     * State of game entity at the end of previous update.
+     *
+     * @see MonkeyBrainsAppState#setSnapshotsEnabled(boolean)
+     */
+    protected final KinematicSnapshot snapshot = new KinematicSnapshot();
+    /**
+     * Transform of spatial between two fixed AI ticks.
+     *
+     * @see MonkeyBrainsAppState#setFixedTimeStep(float)
+     */
+    protected final TransformInterpolation interpolation = new TransformInterpolation();
+    /**
+     * Time that passed since game entity was last updated, while its updates
+     * were skipped. Used internaly in framework.
+     *
+     * @see MonkeyBrainsAppState#setLodPolicy(com.jme3.ai.agents.util.control.UpdateLodPolicy)
+     */
+    protected float skippedTime = 0;
+    /**
+     * Slot of game entity in kinematic store, -1 if it isn't in any.
+     *
+     * @see KinematicStore
+     */
+    private int kinematicSlot = -1;
+    /**
+     * Game in which this game entity is. It is set when game entity is added
+     * to game.
+     */
+    protected MonkeyBrainsAppState appState;
 
     /**
      * @return The predicted position for this 'frame', taking into account
      * current position and velocity.
      */
     public Vector3f getPredictedPosition() {
-        Vector3f predictedPos = new Vector3f();
-        if (velocity != null) {
-            predictedPos = getLocalTranslation().add(velocity);
+        return getPredictedPosition(new Vector3f());
+    }
+
+    /**
+     * @see GameEntity#getPredictedPosition()
+     * @param store vector into which predicted position is written
+     * @return store
+     */
+    public Vector3f getPredictedPosition(Vector3f store) {
+        if (velocity == null) {
+            return store.zero();
         }
-        return predictedPos;
+        return store.set(getLocalTranslation()).addLocal(velocity);
     }
 
     /**
@@ -116,7 +160,16 @@ public abstract class GameEntity extends AbstractControl {
      * @return The offset relative to another game entity
      */
     public Vector3f offset(GameEntity gameEntity) {
-        return gameEntity.getLocalTranslation().subtract(getLocalTranslation());
+        return offset(gameEntity, new Vector3f());
+    }
+
+    /**
+     * @see GameEntity#offset(com.jme3.ai.agents.util.GameEntity)
+     * @param store vector into which offset is written
+     * @return store
+     */
+    public Vector3f offset(GameEntity gameEntity, Vector3f store) {
+        return offset(gameEntity.getLocalTranslation(), store);
     }
 
     /**
@@ -124,14 +177,33 @@ public abstract class GameEntity extends AbstractControl {
      * @return The offset relative to an position vector
      */
     public Vector3f offset(Vector3f positionVector) {
-        return positionVector.subtract(getLocalTranslation());
+        return offset(positionVector, new Vector3f());
+    }
+
+    /**
+     * @see GameEntity#offset(com.jme3.math.Vector3f)
+     * @param store vector into which offset is written, it can be
+     * positionVector
+     * @return store
+     */
+    public Vector3f offset(Vector3f positionVector, Vector3f store) {
+        return store.set(positionVector).subtractLocal(getLocalTranslation());
     }
 
     /**
      * @return The agent forward direction
      */
     public Vector3f fordwardVector() {
-        return getLocalRotation().mult(new Vector3f(0, 0, 1)).normalize();
+        return fordwardVector(new Vector3f());
+    }
+
+    /**
+     * @see GameEntity#fordwardVector()
+     * @param store vector into which forward direction is written
+     * @return store
+     */
+    public Vector3f fordwardVector(Vector3f store) {
+        return getLocalRotation().mult(Vector3f.UNIT_Z, store).normalizeLocal();
     }
 
     /**
@@ -143,19 +215,32 @@ public abstract class GameEntity extends AbstractControl {
      * @return The forwardness in relation with another agent
      */
     public float forwardness(GameEntity gameEntity) {
-        Vector3f agentLooks = fordwardVector();
-        float radiansAngleBetwen = agentLooks.angleBetween(offset(gameEntity).normalize());
-        return FastMath.cos(radiansAngleBetwen);
+        TempVars vars = TempVars.get();
+        float forwardness = forwardness(offset(gameEntity, vars.vect1));
+        vars.release();
+        return forwardness;
     }
 
     /**
+     * Forwardness is cosine of angle between forward direction and offset
+     * vector, so it is calculated as their dot product, without calculating
+     * the angle itself.
+     *
      * @param positionVector Offset vector.
      * @return The forwardness in relation with a position vector
      */
     public float forwardness(Vector3f offsetVector) {
-        Vector3f agentLooks = getLocalRotation().mult(new Vector3f(0, 0, 1)).normalize();
-        float radiansAngleBetwen = agentLooks.angleBetween(offsetVector.normalize());
-        return FastMath.cos(radiansAngleBetwen);
+        TempVars vars = TempVars.get();
+        Vector3f agentLooks = fordwardVector(vars.vect2);
+        float cosine = agentLooks.dot(vars.vect3.set(offsetVector).normalizeLocal());
+        vars.release();
+        //same limits as FastMath.acos(), which was used for the angle
+        if (!(cosine > -1)) {
+            return -1;
+        } else if (!(cosine < 1)) {
+            return 1;
+        }
+        return cosine;
     }
 
     /**
@@ -163,7 +248,7 @@ public abstract class GameEntity extends AbstractControl {
      * @return Distance relative to another game entity
      */
     public float distanceRelativeToGameEntity(GameEntity gameEntity) {
-        return offset(gameEntity).length();
+        return FastMath.sqrt(distanceSquaredRelativeToGameEntity(gameEntity));
     }
 
     /**
@@ -171,7 +256,7 @@ public abstract class GameEntity extends AbstractControl {
      * @return Distance from a position
      */
     public float distanceSquaredRelativeToGameEntity(GameEntity gameEntity) {
-        return offset(gameEntity).lengthSquared();
+        return distanceSquaredFromPosition(gameEntity.getLocalTranslation());
     }
 
     /**
@@ -179,7 +264,7 @@ public abstract class GameEntity extends AbstractControl {
      * @return Distance from a position
      */
     public float distanceFromPosition(Vector3f position) {
-        return offset(position).length();
+        return FastMath.sqrt(distanceSquaredFromPosition(position));
     }
 
     /**
@@ -187,7 +272,11 @@ public abstract class GameEntity extends AbstractControl {
      * @return Distance squared Distance from a position
      */
     public float distanceSquaredFromPosition(Vector3f position) {
-        return offset(position).lengthSquared();
+        Vector3f translation = getLocalTranslation();
+        float dx = position.x - translation.x;
+        float dy = position.y - translation.y;
+        float dz = position.z - translation.z;
+        return dx * dx + dy * dy + dz * dz;
     }
 
     public float getMass() {
@@ -324,10 +413,118 @@ public abstract class GameEntity extends AbstractControl {
         return id;
     }
 
+    /**
+     * Saving current position, velocity and rotation of game entity. Used
+     * internaly in framework before every update.
+     */
+    public void takeSnapshot() {
+        snapshot.take(this);
+    }
+
+    public KinematicSnapshot getSnapshot() {
+        return snapshot;
+    }
+
+    public TransformInterpolation getInterpolation() {
+        return interpolation;
+    }
+
+    /**
+     * @return game in which game entity is, or default game if it hasn't been
+     * added to any
+     */
+    public MonkeyBrainsAppState getAppState() {
+        if (appState == null) {
+            return MonkeyBrainsAppState.getInstance();
+        }
+        return appState;
+    }
+
+    public void setAppState(MonkeyBrainsAppState appState) {
+        this.appState = appState;
+    }
+
+    public float getSkippedTime() {
+        return skippedTime;
+    }
+
+    public void setSkippedTime(float skippedTime) {
+        this.skippedTime = skippedTime;
+    }
+
+    /**
+     * Position that other game entities should read while game entities are
+     * updated, so result doesn't depend on update order.
+     *
+     * @return position from snapshot, or current position if snapshot isn't
+     * taken
+     */
+    public Vector3f getSnapshotTranslation() {
+        if (snapshot.isTaken()) {
+            return snapshot.getTranslation();
+        }
+        return getLocalTranslation();
+    }
+
+    /**
+     * @see GameEntity#getSnapshotTranslation()
+     * @return velocity from snapshot, or current velocity if snapshot isn't
+     * taken
+     */
+    public Vector3f getSnapshotVelocity() {
+        if (snapshot.isTaken()) {
+            return snapshot.getVelocity();
+        }
+        return velocity;
+    }
+
+    /**
+     * @see GameEntity#getSnapshotTranslation()
+     * @return rotation from snapshot, or current rotation if snapshot isn't
+     * taken
+     */
+    public Quaternion getSnapshotRotation() {
+        if (snapshot.isTaken()) {
+            return snapshot.getRotation();
+        }
+        return getLocalRotation();
+    }
+
+    /**
+     * @see GameEntity#fordwardVector()
+     * @return forward direction from snapshot
+     */
+    public Vector3f getSnapshotForwardVector() {
+        return getSnapshotForwardVector(new Vector3f());
+    }
+
+    /**
+     * @see GameEntity#getSnapshotForwardVector()
+     * @param store vector into which forward direction is written
+     * @return store
+     */
+    public Vector3f getSnapshotForwardVector(Vector3f store) {
+        return getSnapshotRotation().mult(Vector3f.UNIT_Z, store).normalizeLocal();
+    }
+
     public void setId(int id) {
         this.id = id;
     }
 
+    /**
+     * Slot in which kinematic state of game entity was last gathered. Check
+     * it with KinematicStore#slotOf(GameEntity) before reading store.
+     *
+     * @return slot in kinematic store, -1 if game entity isn't in store
+     */
+    public int getKinematicSlot() {
+        return kinematicSlot;
+    }
+
+    void setKinematicSlot(int kinematicSlot) {
+        this.kinematicSlot = kinematicSlot;
+    }
+
     @Override
     public String toString() {
         return "GameEntity{" + id + '}';
@@ -0,0 +1,314 @@
+/**
+ * Copyright (c) 2014, jMonkeyEngine All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *
+ * Redistributions of source code must retain the above copyright notice, this
+ * list of conditions and the following disclaimer.
+ *
+ * Redistributions in binary form must reproduce the above copyright notice,
+ * this list of conditions and the following disclaimer in the documentation
+ * and/or other materials provided with the distribution.
+ *
+ * Neither the name of 'jMonkeyEngine' nor the names of its contributors may be
+ * used to endorse or promote products derived from this software without
+ * specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ */
+package com.jme3.ai.agents.util;
+
+import java.util.AbstractList;
+import java.util.List;
+import java.util.RandomAccess;
+
+/**
+ * Registry of game entities stored in one dense array. Removed game entity is
+ * replaced with the last one in array, and id of every game entity points to
+ * its place in array, so adding, removing, finding by id and iterating are
+ * done in constant time per game entity. <br><br>
+ *
+ * Order of game entities is not preserved when some of them are removed.
+ *
+ * @see IdAllocator
+ *
+ * @author Tihomir Radosavljević
+ * @version 1.1.1
+ */
+public class GameEntityRegistry<T extends GameEntity> {
+
+    /**
+     * Ids of game entities in registry.
+     */
+    private final IdAllocator ids;
+    /**
+     * Game entities, packed from index 0 to size - 1.
+     */
+    private GameEntity[] gameEntities;
+    /**
+     * Index in gameEntities for every slot of id allocator.
+     */
+    private int[] indexOfSlot;
+    private int size;
+    /**
+     * Read-only view of registry.
+     */
+    private final List<T> view;
+    /**
+     * Ids acquired for adding many game entities at once.
+     */
+    private int[] idBuffer = new int[0];
+
+    /**
+     * @param firstIndex index of first slot of ids
+     * @param capacity maximum number of game entities in registry
+     * @see IdAllocator#IdAllocator(int, int)
+     */
+    public GameEntityRegistry(int firstIndex, int capacity) {
+        ids = new IdAllocator(firstIndex, capacity);
+        gameEntities = new GameEntity[16];
+        indexOfSlot = new int[16];
+        view = new RegistryView();
+    }
+
+    /**
+     * @return true if there is room for at least one more game entity
+     */
+    public boolean hasFreeId() {
+        return ids.hasFreeId();
+    }
+
+    /**
+     * @return number of game entities that can still be added
+     */
+    public int getFreeIdCount() {
+        return ids.getFreeIdCount();
+    }
+
+    /**
+     * Making room for more game entities, so adding them doesn't need to grow
+     * storage.
+     *
+     * @param additional number of game entities that will be added
+     */
+    public void ensureCapacity(int additional) {
+        int needed = size + additional;
+        if (needed > gameEntities.length) {
+            GameEntity[] newGameEntities = new GameEntity[Math.max(needed, gameEntities.length * 2)];
+            System.arraycopy(gameEntities, 0, newGameEntities, 0, size);
+            gameEntities = newGameEntities;
+        }
+    }
+
+    /**
+     * Adding game entity to registry. It will get new unique id.
+     *
+     * @param gameEntity game entity that is added
+     * @return id of added game entity
+     * @throws IllegalStateException if registry is full
+     */
+    public int add(T gameEntity) {
+        int id = ids.acquire();
+        ensureCapacity(1);
+        ensureSlot(ids.slotOf(id));
+        place(gameEntity, id);
+        return id;
+    }
+
+    /**
+     * Adding many game entities at once. Storage is grown and ids are
+     * acquired only once for all of them.
+     *
+     * @param newGameEntities game entities that are added
+     * @throws IllegalStateException if there isn't room for all of them
+     */
+    public void addAll(List<? extends T> newGameEntities) {
+        int count = newGameEntities.size();
+        if (count == 0) {
+            return;
+        }
+        if (idBuffer.length < count) {
+            idBuffer = new int[Math.max(count, idBuffer.length * 2)];
+        }
+        ids.acquire(idBuffer, count);
+        ensureCapacity(count);
+        int maxSlot = 0;
+        for (int i = 0; i < count; i++) {
+            maxSlot = Math.max(maxSlot, ids.slotOf(idBuffer[i]));
+        }
+        ensureSlot(maxSlot);
+        for (int i = 0; i < count; i++) {
+            place(newGameEntities.get(i), idBuffer[i]);
+        }
+    }
+
+    private void ensureSlot(int slot) {
+        if (slot >= indexOfSlot.length) {
+            int[] newIndexOfSlot = new int[Math.max(slot + 1, indexOfSlot.length * 2)];
+            System.arraycopy(indexOfSlot, 0, newIndexOfSlot, 0, indexOfSlot.length);
+            indexOfSlot = newIndexOfSlot;
+        }
+    }
+
+    private void place(T gameEntity, int id) {
+        gameEntity.setId(id);
+        gameEntities[size] = gameEntity;
+        indexOfSlot[ids.slotOf(id)] = size;
+        size++;
+    }
+
+    /**
+     * Removing game entity from registry. Its id is released and the last
+     * game entity in registry takes its place.
+     *
+     * @param gameEntity game entity that is removed
+     * @return removed game entity, or null if it wasn't in registry
+     */
+    public T remove(GameEntity gameEntity) {
+        int index = indexOf(gameEntity);
+        if (index < 0) {
+            return null;
+        }
+        T removed = get(index);
+        ids.release(removed.getId());
+        size--;
+        if (index != size) {
+            GameEntity last = gameEntities[size];
+            gameEntities[index] = last;
+            indexOfSlot[ids.slotOf(last.getId())] = index;
+        }
+        gameEntities[size] = null;
+        return removed;
+    }
+
+    /**
+     * @param gameEntity
+     * @return true if game entity is in registry
+     */
+    public boolean contains(GameEntity gameEntity) {
+        return indexOf(gameEntity) >= 0;
+    }
+
+    /**
+     * Game entity is compared by identity, so game entity with the same id
+     * that isn't in registry is never found.
+     *
+     * @param gameEntity
+     * @return index of game entity in registry, -1 if it isn't in registry
+     */
+    public int indexOf(GameEntity gameEntity) {
+        if (gameEntity == null) {
+            return -1;
+        }
+        int index = indexOfId(gameEntity.getId());
+        if (index < 0 || gameEntities[index] != gameEntity) {
+            return -1;
+        }
+        return index;
+    }
+
+    /**
+     * @param id id of game entity
+     * @return game entity with that id, null if there isn't one in registry
+     */
+    public T getById(int id) {
+        int index = indexOfId(id);
+        if (index < 0) {
+            return null;
+        }
+        return get(index);
+    }
+
+    private int indexOfId(int id) {
+        if (!ids.isValid(id)) {
+            return -1;
+        }
+        return indexOfSlot[ids.slotOf(id)];
+    }
+
+    /**
+     * @param index index in registry, from 0 to size() - 1
+     * @return game entity on that index
+     */
+    @SuppressWarnings("unchecked")
+    public T get(int index) {
+        if (index < 0 || index >= size) {
+            throw new IndexOutOfBoundsException("Index: " + index + ", Size: " + size);
+        }
+        return (T) gameEntities[index];
+    }
+
+    /**
+     * @return number of game entities in registry
+     */
+    public int size() {
+        return size;
+    }
+
+    public boolean isEmpty() {
+        return size == 0;
+    }
+
+    /**
+     * @param id
+     * @return true if id belongs to game entity in registry
+     */
+    public boolean isValidId(int id) {
+        return ids.isValid(id);
+    }
+
+    /**
+     * Removing all game entities from registry.
+     */
+    public void clear() {
+        for (int i = 0; i < size; i++) {
+            gameEntities[i] = null;
+        }
+        size = 0;
+        ids.clear();
+    }
+
+    /**
+     * @return read-only list backed by this registry
+     */
+    public List<T> asList() {
+        return view;
+    }
+
+    private class RegistryView extends AbstractList<T> implements RandomAccess {
+
+        @Override
+        public T get(int index) {
+            return GameEntityRegistry.this.get(index);
+        }
+
+        @Override
+        public int size() {
+            return size;
+        }
+
+        @Override
+        public boolean contains(Object o) {
+            return o instanceof GameEntity && GameEntityRegistry.this.contains((GameEntity) o);
+        }
+
+        @Override
+        public int indexOf(Object o) {
+            if (o instanceof GameEntity) {
+                return GameEntityRegistry.this.indexOf((GameEntity) o);
+            }
+            return -1;
+        }
+    }
+}
@@ -0,0 +1,298 @@
+/**
+ * Copyright (c) 2014, jMonkeyEngine All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *
+ * Redistributions of source code must retain the above copyright notice, this
+ * list of conditions and the following disclaimer.
+ *
+ * Redistributions in binary form must reproduce the above copyright notice,
+ * this list of conditions and the following disclaimer in the documentation
+ * and/or other materials provided with the distribution.
+ *
+ * Neither the name of 'jMonkeyEngine' nor the names of its contributors may be
+ * used to endorse or promote products derived from this software without
+ * specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ */
+package com.jme3.ai.agents.util;
+
+/**
+ * Allocator of unique ids for game entities. Released ids are kept in queue
+ * of free slots, so getting new id and releasing old one are done in constant
+ * time no matter how many game entities are in game. <br><br>
+ *
+ * Every id consists of slot index and generation of that slot. Generation is
+ * increased every time slot is released, so id of removed game entity is not
+ * equal to id of game entity that has reused the same slot. Generation has
+ * only 31 - INDEX_BITS bits, so after slot is reused that many times old id
+ * would be valid again. To make that as unlikely as possible, released slots
+ * are reused in order in which they were released, and they are not reused
+ * at all while there are less than MIN_FREE_SLOTS of them and new slots can
+ * still be used. Old id can become valid again only after at least
+ * GENERATIONS * MIN_FREE_SLOTS ids are released, so code that keeps ids for
+ * long time should keep references to game entities instead. <br><br>
+ *
+ * Ids are not smaller than capacity, only their index is. Use indexOf() for
+ * getting index of id.
+ *
+ * @author Tihomir Radosavljević
+ * @version 1.2.0
+ */
+public class IdAllocator {
+
+    /**
+     * Number of bits in id that are used for slot index.
+     */
+    public static final int INDEX_BITS = 24;
+    /**
+     * Maximum number of slots that one allocator can have.
+     */
+    public static final int MAX_SLOTS = 1 << INDEX_BITS;
+    /**
+     * Number of different generations of one slot. Id always stays positive,
+     * so there is 31 - INDEX_BITS bits for generation.
+     */
+    public static final int GENERATIONS = 1 << (31 - INDEX_BITS);
+    /**
+     * Number of released slots that are kept unused while new slots can be
+     * used.
+     */
+    public static final int MIN_FREE_SLOTS = 1024;
+    private static final int INDEX_MASK = MAX_SLOTS - 1;
+    private static final int GENERATION_MASK = GENERATIONS - 1;
+    /**
+     * Index of first slot. Used for keeping ranges of different allocators
+     * apart.
+     */
+    private final int firstIndex;
+    /**
+     * Maximum number of ids that can be in use at the same time.
+     */
+    private final int capacity;
+    /**
+     * Current generation of every slot that has ever been used.
+     */
+    private int[] generations;
+    /**
+     * Circular queue of released slots.
+     */
+    private int[] freeSlots;
+    private int freeHead;
+    private int freeCount;
+    /**
+     * Number of slots that have ever been used.
+     */
+    private int usedSlots;
+    /**
+     * Number of ids currently in use.
+     */
+    private int size;
+
+    /**
+     * @param firstIndex index of first slot
+     * @param capacity maximum number of ids in use at the same time
+     */
+    public IdAllocator(int firstIndex, int capacity) {
+        if (firstIndex < 0 || capacity <= 0 || (long) firstIndex + capacity > MAX_SLOTS) {
+            throw new IllegalArgumentException("Id range [" + firstIndex + ", " + ((long) firstIndex + capacity) + ") is not supported.");
+        }
+        this.firstIndex = firstIndex;
+        this.capacity = capacity;
+        int initialSize = Math.min(capacity, 16);
+        generations = new int[initialSize];
+        freeSlots = new int[initialSize];
+    }
+
+    /**
+     * @return true if there is at least one id that can be acquired
+     */
+    public boolean hasFreeId() {
+        return size < capacity;
+    }
+
+    /**
+     * Getting new unique id. Check with hasFreeId() before calling this.
+     *
+     * @return unique id
+     * @throws IllegalStateException if all ids are in use
+     */
+    public int acquire() {
+        if (!hasFreeId()) {
+            throw new IllegalStateException("All " + capacity + " ids are in use.");
+        }
+        int slot;
+        if (freeCount > MIN_FREE_SLOTS || (freeCount > 0 && usedSlots == capacity)) {
+            slot = pollFreeSlot();
+        } else {
+            slot = usedSlots++;
+            if (slot == generations.length) {
+                generations = grow(generations, slot + 1);
+            }
+        }
+        size++;
+        return idOf(slot);
+    }
+
+    /**
+     * Getting many new unique ids at once. Slots are chosen in the same way
+     * as in acquire(), and new slots are taken as one range.
+     *
+     * @param store array into which ids are written, from index 0
+     * @param count number of ids
+     * @throws IllegalStateException if there aren't enough free ids
+     */
+    public void acquire(int[] store, int count) {
+        if (count > getFreeIdCount()) {
+            throw new IllegalStateException("Only " + getFreeIdCount() + " of " + capacity + " ids are free, " + count + " requested.");
+        }
+        int fromReleased = Math.min(count, Math.max(0, freeCount - MIN_FREE_SLOTS));
+        int fresh = Math.min(count - fromReleased, capacity - usedSlots);
+        //the rest can only come from released slots that would be kept unused
+        fromReleased = count - fresh;
+        for (int i = 0; i < fromReleased; i++) {
+            store[i] = idOf(pollFreeSlot());
+        }
+        if (fresh > 0) {
+            if (usedSlots + fresh > generations.length) {
+                generations = grow(generations, usedSlots + fresh);
+            }
+            for (int i = fromReleased; i < count; i++) {
+                store[i] = idOf(usedSlots++);
+            }
+        }
+        size += count;
+    }
+
+    private int idOf(int slot) {
+        return (generations[slot] << INDEX_BITS) | (firstIndex + slot);
+    }
+
+    private int pollFreeSlot() {
+        int slot = freeSlots[freeHead];
+        freeHead = (freeHead + 1) % freeSlots.length;
+        freeCount--;
+        return slot;
+    }
+
+    private void offerFreeSlot(int slot) {
+        if (freeCount == freeSlots.length) {
+            int[] newFreeSlots = new int[Math.max(freeSlots.length + 1, (int) Math.min((long) capacity, freeSlots.length * 2L))];
+            for (int i = 0; i < freeCount; i++) {
+                newFreeSlots[i] = freeSlots[(freeHead + i) % freeSlots.length];
+            }
+            freeSlots = newFreeSlots;
+            freeHead = 0;
+        }
+        freeSlots[(freeHead + freeCount) % freeSlots.length] = slot;
+        freeCount++;
+    }
+
+    /**
+     * Releasing id so its slot can be used again. Releasing id which is not in
+     * use is ignored.
+     *
+     * @param id id that is no longer used
+     * @return true if id was in use and now it is released
+     */
+    public boolean release(int id) {
+        if (!isValid(id)) {
+            return false;
+        }
+        int slot = slotOf(id);
+        generations[slot] = (generations[slot] + 1) & GENERATION_MASK;
+        offerFreeSlot(slot);
+        size--;
+        return true;
+    }
+
+    /**
+     * Check if id is currently in use. Ids of released game entities are not
+     * valid, until their slot is reused GENERATIONS times.
+     *
+     * @param id
+     * @return true if id is in use
+     */
+    public boolean isValid(int id) {
+        if (id < 0) {
+            return false;
+        }
+        int slot = slotOf(id);
+        if (slot < 0 || slot >= usedSlots) {
+            return false;
+        }
+        //free slots always have generation that is not yet given to any id
+        return generations[slot] == (id >>> INDEX_BITS);
+    }
+
+    /**
+     * @param id
+     * @return slot index of id, relative to first index of this allocator
+     */
+    public int slotOf(int id) {
+        return indexOf(id) - firstIndex;
+    }
+
+    /**
+     * @param id
+     * @return index of id, without its generation
+     */
+    public static int indexOf(int id) {
+        return id & INDEX_MASK;
+    }
+
+    /**
+     * @return number of ids currently in use
+     */
+    public int size() {
+        return size;
+    }
+
+    public int getCapacity() {
+        return capacity;
+    }
+
+    /**
+     * @return number of ids that can still be acquired
+     */
+    public int getFreeIdCount() {
+        return capacity - size;
+    }
+
+    /**
+     * Releasing all ids. Generations are kept so old ids stay invalid.
+     */
+    public void clear() {
+        for (int i = 0; i < usedSlots; i++) {
+            generations[i] = (generations[i] + 1) & GENERATION_MASK;
+        }
+        if (freeSlots.length < usedSlots) {
+            freeSlots = new int[generations.length];
+        }
+        for (int i = 0; i < usedSlots; i++) {
+            freeSlots[i] = i;
+        }
+        freeHead = 0;
+        freeCount = usedSlots;
+        size = 0;
+    }
+
+    private int[] grow(int[] array, int minLength) {
+        int newLength = (int) Math.min((long) capacity, array.length * 2L);
+        int[] newArray = new int[Math.max(newLength, minLength)];
+        System.arraycopy(array, 0, newArray, 0, array.length);
+        return newArray;
+    }
+}
@@ -0,0 +1,114 @@
+/**
+ * Copyright (c) 2014, jMonkeyEngine All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *
+ * Redistributions of source code must retain the above copyright notice, this
+ * list of conditions and the following disclaimer.
+ *
+ * Redistributions in binary form must reproduce the above copyright notice,
+ * this list of conditions and the following disclaimer in the documentation
+ * and/or other materials provided with the distribution.
+ *
+ * Neither the name of 'jMonkeyEngine' nor the names of its contributors may be
+ * used to endorse or promote products derived from this software without
+ * specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ */
+package com.jme3.ai.agents.util;
+
+import com.jme3.math.Quaternion;
+import com.jme3.math.Vector3f;
+
+/**
+ * Position, velocity and rotation of game entity at the end of previous
+ * update. Game entity keeps moving its spatial during update, while snapshot
+ * stays the same until next update, so behaviors that read other game
+ * entities from snapshots get the same result regardless of the order in which
+ * game entities are updated.
+ *
+ * @see GameEntity#takeSnapshot()
+ *
+ * @author Tihomir Radosavljević
+ * @version 1.0.0
+ */
+public class KinematicSnapshot {
+
+    private final Vector3f translation = new Vector3f();
+    private final Vector3f velocity = new Vector3f();
+    private final Quaternion rotation = new Quaternion();
+    /**
+     * Indicator if snapshot has been taken at least once.
+     */
+    private boolean taken = false;
+
+    /**
+     * Copying current state of game entity into this snapshot.
+     *
+     * @param gameEntity
+     */
+    public void take(GameEntity gameEntity) {
+        translation.set(gameEntity.getLocalTranslation());
+        rotation.set(gameEntity.getLocalRotation());
+        if (gameEntity.getVelocity() != null) {
+            velocity.set(gameEntity.getVelocity());
+        } else {
+            velocity.set(0, 0, 0);
+        }
+        taken = true;
+    }
+
+    /**
+     * Forgetting snapshot, game entity will be read directly until next
+     * snapshot is taken.
+     */
+    public void clear() {
+        taken = false;
+    }
+
+    /**
+     * @return true if snapshot has been taken
+     */
+    public boolean isTaken() {
+        return taken;
+    }
+
+    /**
+     * Don't change returned vector.
+     *
+     * @return position of game entity when snapshot was taken
+     */
+    public Vector3f getTranslation() {
+        return translation;
+    }
+
+    /**
+     * Don't change returned vector.
+     *
+     * @return velocity of game entity when snapshot was taken
+     */
+    public Vector3f getVelocity() {
+        return velocity;
+    }
+
+    /**
+     * Don't change returned quaternion.
+     *
+     * @return rotation of game entity when snapshot was taken
+     */
+    public Quaternion getRotation() {
+        return rotation;
+    }
+}
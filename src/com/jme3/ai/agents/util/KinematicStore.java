@@ -0,0 +1,409 @@
+/**
+ * Copyright (c) 2014, jMonkeyEngine All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *
+ * Redistributions of source code must retain the above copyright notice, this
+ * list of conditions and the following disclaimer.
+ *
+ * Redistributions in binary form must reproduce the above copyright notice,
+ * this list of conditions and the following disclaimer in the documentation
+ * and/or other materials provided with the distribution.
+ *
+ * Neither the name of 'jMonkeyEngine' nor the names of its contributors may be
+ * used to endorse or promote products derived from this software without
+ * specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ */
+package com.jme3.ai.agents.util;
+
+import com.jme3.math.Vector3f;
+import java.util.List;
+
+/**
+ * Snapshot of kinematic state of many game entities, kept in arrays, one
+ * array for every component. It is used as prefilter for finding
+ * neighbours: game entity has dense slot in store, so search over all game
+ * entities reads memory in order instead of following references to vectors
+ * of every game entity. <br><br>
+ *
+ * Store is read-only copy. Game entities stay owners of their state, and
+ * steering behaviors read and move game entities, not store. Store is filled
+ * from them with gather() at the beginning of update, and is valid only
+ * until they move. <br><br>
+ *
+ * findInRadius() has two paths. Scalar path tests game entities one by one.
+ * Vectorized path first computes squared distances of all game entities in
+ * one simple loop over whole arrays, which JIT compiler can turn into SIMD
+ * instructions, and then picks slots inside the sphere. Both paths compute
+ * every distance with the same operations in the same order, so their
+ * results are identical.
+ *
+ * @see KinematicStore#setVectorized(boolean)
+ * @see com.jme3.ai.agents.util.control.MonkeyBrainsAppState#setKinematicStoreEnabled(boolean)
+ *
+ * @author Tihomir Radosavljević
+ * @version 1.3.0
+ */
+public class KinematicStore {
+
+    private GameEntity[] gameEntities;
+    private float[] positionX;
+    private float[] positionY;
+    private float[] positionZ;
+    private float[] velocityX;
+    private float[] velocityY;
+    private float[] velocityZ;
+    private float[] accelerationX;
+    private float[] accelerationY;
+    private float[] accelerationZ;
+    private float[] mass;
+    private float[] maxMoveSpeed;
+    private int size;
+    /**
+     * Indicator if findInRadius() uses vectorized path.
+     */
+    private boolean vectorized = false;
+    /**
+     * Temporary arrays for vectorized search, one for every thread, because
+     * store is searched while agents are updated in parallel.
+     */
+    private static final ThreadLocal<float[][]> DISTANCES = new ThreadLocal<float[][]>() {
+        @Override
+        protected float[][] initialValue() {
+            return new float[1][0];
+        }
+    };
+
+    public KinematicStore() {
+        this(16);
+    }
+
+    /**
+     * @param capacity number of game entities for which storage is made
+     */
+    public KinematicStore(int capacity) {
+        if (capacity < 0) {
+            throw new IllegalArgumentException("Capacity can not be negative: " + capacity);
+        }
+        allocate(capacity);
+    }
+
+    private void allocate(int capacity) {
+        GameEntity[] newGameEntities = new GameEntity[capacity];
+        if (gameEntities != null) {
+            System.arraycopy(gameEntities, 0, newGameEntities, 0, size);
+        }
+        gameEntities = newGameEntities;
+        positionX = grow(positionX, capacity);
+        positionY = grow(positionY, capacity);
+        positionZ = grow(positionZ, capacity);
+        velocityX = grow(velocityX, capacity);
+        velocityY = grow(velocityY, capacity);
+        velocityZ = grow(velocityZ, capacity);
+        accelerationX = grow(accelerationX, capacity);
+        accelerationY = grow(accelerationY, capacity);
+        accelerationZ = grow(accelerationZ, capacity);
+        mass = grow(mass, capacity);
+        maxMoveSpeed = grow(maxMoveSpeed, capacity);
+    }
+
+    private float[] grow(float[] array, int capacity) {
+        float[] newArray = new float[capacity];
+        if (array != null) {
+            System.arraycopy(array, 0, newArray, 0, size);
+        }
+        return newArray;
+    }
+
+    /**
+     * Making room for game entities, so gathering them doesn't need to grow
+     * storage.
+     *
+     * @param capacity number of game entities
+     */
+    public void ensureCapacity(int capacity) {
+        if (capacity > gameEntities.length) {
+            allocate(Math.max(capacity, gameEntities.length * 2));
+        }
+    }
+
+    /**
+     * Copying state of game entities into store. Game entity gets slot equal
+     * to its index in list. Null velocity and acceleration are stored as zero.
+     *
+     * @param list game entities
+     * @see GameEntity#getKinematicSlot()
+     */
+    public void gather(List<? extends GameEntity> list) {
+        int count = list.size();
+        ensureCapacity(count);
+        for (int i = count; i < size; i++) {
+            release(i);
+        }
+        size = count;
+        for (int i = 0; i < count; i++) {
+            GameEntity gameEntity = list.get(i);
+            if (gameEntities[i] != gameEntity) {
+                release(i);
+                gameEntities[i] = gameEntity;
+                gameEntity.setKinematicSlot(i);
+            }
+            Vector3f position = gameEntity.getLocalTranslation();
+            positionX[i] = position.x;
+            positionY[i] = position.y;
+            positionZ[i] = position.z;
+            Vector3f velocity = gameEntity.getVelocity();
+            if (velocity != null) {
+                velocityX[i] = velocity.x;
+                velocityY[i] = velocity.y;
+                velocityZ[i] = velocity.z;
+            } else {
+                velocityX[i] = velocityY[i] = velocityZ[i] = 0;
+            }
+            Vector3f acceleration = gameEntity.getAcceleration();
+            if (acceleration != null) {
+                accelerationX[i] = acceleration.x;
+                accelerationY[i] = acceleration.y;
+                accelerationZ[i] = acceleration.z;
+            } else {
+                accelerationX[i] = accelerationY[i] = accelerationZ[i] = 0;
+            }
+            mass[i] = gameEntity.getMass();
+            maxMoveSpeed[i] = gameEntity.getMaxMoveSpeed();
+        }
+    }
+
+    private void release(int slot) {
+        GameEntity gameEntity = gameEntities[slot];
+        if (gameEntity != null) {
+            if (gameEntity.getKinematicSlot() == slot) {
+                gameEntity.setKinematicSlot(-1);
+            }
+            gameEntities[slot] = null;
+        }
+    }
+
+    /**
+     * Finding slots of game entities whose position is inside the sphere.
+     *
+     * @param center center of sphere
+     * @param radius radius of sphere
+     * @param store array in which slots are written, it must have room for all
+     * game entities in store
+     * @return number of slots written in store
+     */
+    public int findInRadius(Vector3f center, float radius, int[] store) {
+        float cx = center.x;
+        float cy = center.y;
+        float cz = center.z;
+        float radiusSquared = radius * radius;
+        int count = 0;
+        if (vectorized) {
+            float[][] scratch = DISTANCES.get();
+            if (scratch[0].length < size) {
+                scratch[0] = new float[gameEntities.length];
+            }
+            float[] distances = scratch[0];
+            for (int i = 0; i < size; i++) {
+                float dx = positionX[i] - cx;
+                float dy = positionY[i] - cy;
+                float dz = positionZ[i] - cz;
+                distances[i] = dx * dx + dy * dy + dz * dz;
+            }
+            for (int i = 0; i < size; i++) {
+                if (distances[i] <= radiusSquared) {
+                    store[count++] = i;
+                }
+            }
+            return count;
+        }
+        for (int i = 0; i < size; i++) {
+            float dx = positionX[i] - cx;
+            float dy = positionY[i] - cy;
+            float dz = positionZ[i] - cz;
+            if (dx * dx + dy * dy + dz * dz <= radiusSquared) {
+                store[count++] = i;
+            }
+        }
+        return count;
+    }
+
+    /**
+     * @param gameEntity
+     * @return slot of game entity in this store, -1 if it isn't in store
+     */
+    public int slotOf(GameEntity gameEntity) {
+        int slot = gameEntity.getKinematicSlot();
+        if (slot < 0 || slot >= size || gameEntities[slot] != gameEntity) {
+            return -1;
+        }
+        return slot;
+    }
+
+    /**
+     * @param slot
+     * @return game entity in slot
+     */
+    public GameEntity getGameEntity(int slot) {
+        checkSlot(slot);
+        return gameEntities[slot];
+    }
+
+    public Vector3f getPosition(int slot, Vector3f store) {
+        checkSlot(slot);
+        return store.set(positionX[slot], positionY[slot], positionZ[slot]);
+    }
+
+    public Vector3f getVelocity(int slot, Vector3f store) {
+        checkSlot(slot);
+        return store.set(velocityX[slot], velocityY[slot], velocityZ[slot]);
+    }
+
+    public Vector3f getAcceleration(int slot, Vector3f store) {
+        checkSlot(slot);
+        return store.set(accelerationX[slot], accelerationY[slot], accelerationZ[slot]);
+    }
+
+    public float getMass(int slot) {
+        checkSlot(slot);
+        return mass[slot];
+    }
+
+    public float getMaxMoveSpeed(int slot) {
+        checkSlot(slot);
+        return maxMoveSpeed[slot];
+    }
+
+    private void checkSlot(int slot) {
+        if (slot < 0 || slot >= size) {
+            throw new IndexOutOfBoundsException("Slot: " + slot + ", Size: " + size);
+        }
+    }
+
+    /**
+     * Arrays of components are for searches that loop over all game entities.
+     * Only first size() elements are used. Don't change returned arrays, and
+     * don't keep them after gather(), because they can be replaced when store
+     * grows.
+     *
+     * @return x components of positions
+     */
+    public float[] getPositionX() {
+        return positionX;
+    }
+
+    /**
+     * @see KinematicStore#getPositionX()
+     */
+    public float[] getPositionY() {
+        return positionY;
+    }
+
+    /**
+     * @see KinematicStore#getPositionX()
+     */
+    public float[] getPositionZ() {
+        return positionZ;
+    }
+
+    /**
+     * @see KinematicStore#getPositionX()
+     */
+    public float[] getVelocityX() {
+        return velocityX;
+    }
+
+    /**
+     * @see KinematicStore#getPositionX()
+     */
+    public float[] getVelocityY() {
+        return velocityY;
+    }
+
+    /**
+     * @see KinematicStore#getPositionX()
+     */
+    public float[] getVelocityZ() {
+        return velocityZ;
+    }
+
+    /**
+     * @see KinematicStore#getPositionX()
+     */
+    public float[] getAccelerationX() {
+        return accelerationX;
+    }
+
+    /**
+     * @see KinematicStore#getPositionX()
+     */
+    public float[] getAccelerationY() {
+        return accelerationY;
+    }
+
+    /**
+     * @see KinematicStore#getPositionX()
+     */
+    public float[] getAccelerationZ() {
+        return accelerationZ;
+    }
+
+    /**
+     * @see KinematicStore#getPositionX()
+     */
+    public float[] getMass() {
+        return mass;
+    }
+
+    /**
+     * @see KinematicStore#getPositionX()
+     */
+    public float[] getMaxMoveSpeed() {
+        return maxMoveSpeed;
+    }
+
+    /**
+     * @return number of game entities in store
+     */
+    public int size() {
+        return size;
+    }
+
+    /**
+     * Choosing path of findInRadius(). Vectorized path is faster with many
+     * game entities on JVMs that vectorize loops, scalar path reads memory
+     * only once and is better for few game entities.
+     *
+     * @param vectorized true for vectorized path, false for scalar path
+     */
+    public void setVectorized(boolean vectorized) {
+        this.vectorized = vectorized;
+    }
+
+    public boolean isVectorized() {
+        return vectorized;
+    }
+
+    /**
+     * Removing all game entities from store.
+     */
+    public void clear() {
+        for (int i = 0; i < size; i++) {
+            release(i);
+        }
+        size = 0;
+    }
+}
@@ -0,0 +1,169 @@
+/**
+ * Copyright (c) 2014, jMonkeyEngine All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *
+ * Redistributions of source code must retain the above copyright notice, this
+ * list of conditions and the following disclaimer.
+ *
+ * Redistributions in binary form must reproduce the above copyright notice,
+ * this list of conditions and the following disclaimer in the documentation
+ * and/or other materials provided with the distribution.
+ *
+ * Neither the name of 'jMonkeyEngine' nor the names of its contributors may be
+ * used to endorse or promote products derived from this software without
+ * specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ */
+package com.jme3.ai.agents.util;
+
+import com.jme3.math.Quaternion;
+import com.jme3.math.Vector3f;
+import com.jme3.scene.Spatial;
+
+/**
+ * Transform of game entity's spatial between two fixed AI ticks. AI moves
+ * spatial only on ticks, so between them spatial is shown at position and
+ * rotation interpolated between state before and after last tick. Before next
+ * tick, simulated state is returned to spatial.
+ *
+ * @see com.jme3.ai.agents.util.control.MonkeyBrainsAppState#setFixedTimeStep(float)
+ *
+ * @author Tihomir Radosavljević
+ * @version 1.0.0
+ */
+public class TransformInterpolation {
+
+    private final Vector3f previousTranslation = new Vector3f();
+    private final Quaternion previousRotation = new Quaternion();
+    private final Vector3f simulatedTranslation = new Vector3f();
+    private final Quaternion simulatedRotation = new Quaternion();
+    /**
+     * Transform that was last set to spatial, if it is changed outside of AI
+     * it won't be overwritten with simulated state.
+     */
+    private final Vector3f shownTranslation = new Vector3f();
+    private final Quaternion shownRotation = new Quaternion();
+    private boolean hasPrevious = false;
+    private boolean hasSimulated = false;
+    private boolean interpolated = false;
+
+    /**
+     * Returning simulated transform to spatial if it shows interpolated one.
+     *
+     * @param gameEntity owner of spatial
+     */
+    public void restore(GameEntity gameEntity) {
+        Spatial spatial = gameEntity.getSpatial();
+        if (!interpolated || spatial == null) {
+            return;
+        }
+        interpolated = false;
+        if (!spatial.getLocalTranslation().equals(shownTranslation)
+                || !spatial.getLocalRotation().equals(shownRotation)) {
+            //spatial was moved by someone else, that is now its real state
+            hasPrevious = false;
+            hasSimulated = false;
+            return;
+        }
+        spatial.setLocalTranslation(simulatedTranslation);
+        spatial.setLocalRotation(simulatedRotation);
+    }
+
+    /**
+     * Saving transform of spatial before AI tick.
+     *
+     * @param gameEntity owner of spatial
+     */
+    public void beforeTick(GameEntity gameEntity) {
+        Spatial spatial = gameEntity.getSpatial();
+        if (spatial == null) {
+            return;
+        }
+        previousTranslation.set(spatial.getLocalTranslation());
+        previousRotation.set(spatial.getLocalRotation());
+        hasPrevious = true;
+        hasSimulated = false;
+    }
+
+    /**
+     * Saving transform of spatial after AI tick.
+     *
+     * @param gameEntity owner of spatial
+     */
+    public void afterTick(GameEntity gameEntity) {
+        Spatial spatial = gameEntity.getSpatial();
+        if (spatial == null || !hasPrevious) {
+            return;
+        }
+        simulatedTranslation.set(spatial.getLocalTranslation());
+        simulatedRotation.set(spatial.getLocalRotation());
+        hasSimulated = true;
+    }
+
+    /**
+     * Showing spatial between state before and after last tick.
+     *
+     * @param gameEntity owner of spatial
+     * @param alpha part of fixed time step passed after last tick, between 0
+     * and 1
+     */
+    public void interpolate(GameEntity gameEntity, float alpha) {
+        Spatial spatial = gameEntity.getSpatial();
+        if (spatial == null || !hasSimulated) {
+            return;
+        }
+        shownTranslation.interpolateLocal(previousTranslation, simulatedTranslation, alpha);
+        shownRotation.set(previousRotation);
+        shownRotation.nlerp(simulatedRotation, alpha);
+        spatial.setLocalTranslation(shownTranslation);
+        spatial.setLocalRotation(shownRotation);
+        interpolated = true;
+    }
+
+    /**
+     * Forgetting saved transforms.
+     */
+    public void clear() {
+        hasPrevious = false;
+        hasSimulated = false;
+        interpolated = false;
+    }
+
+    /**
+     * @return true if spatial currently shows interpolated transform
+     */
+    public boolean isInterpolated() {
+        return interpolated;
+    }
+
+    /**
+     * Don't change returned vector.
+     *
+     * @return translation of spatial after last AI tick
+     */
+    public Vector3f getSimulatedTranslation() {
+        return simulatedTranslation;
+    }
+
+    /**
+     * Don't change returned quaternion.
+     *
+     * @return rotation of spatial after last AI tick
+     */
+    public Quaternion getSimulatedRotation() {
+        return simulatedRotation;
+    }
+}
@@ -0,0 +1,151 @@
+/**
+ * Copyright (c) 2014, jMonkeyEngine All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *
+ * Redistributions of source code must retain the above copyright notice, this
+ * list of conditions and the following disclaimer.
+ *
+ * Redistributions in binary form must reproduce the above copyright notice,
+ * this list of conditions and the following disclaimer in the documentation
+ * and/or other materials provided with the distribution.
+ *
+ * Neither the name of 'jMonkeyEngine' nor the names of its contributors may be
+ * used to endorse or promote products derived from this software without
+ * specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ */
+package com.jme3.ai.agents.util.control;
+
+/**
+ * Running game without application and renderer, as fast as possible. Every
+ * tick updates all agents and game entities with the same fixed time, so
+ * results don't depend on speed of machine. Useful for simulating many
+ * matches offline, on machines without graphics card.
+ * <br><br>
+ * Agents and game entities must be added to app state before running. Their
+ * spatials don't have to be attached to any scene.
+ *
+ * @author Tihomir Radosavljević
+ * @version 1.0.0
+ */
+public class HeadlessSimulation {
+
+    private final MonkeyBrainsAppState appState;
+    /**
+     * Time with which every tick is updated.
+     */
+    private final float tpf;
+
+    /**
+     * @param tpf time with which every tick is updated
+     */
+    public HeadlessSimulation(float tpf) {
+        this(MonkeyBrainsAppState.getInstance(), tpf);
+    }
+
+    /**
+     * @param appState game that is simulated
+     * @param tpf time with which every tick is updated
+     * @throws IllegalArgumentException if tpf isn't positive
+     */
+    public HeadlessSimulation(MonkeyBrainsAppState appState, float tpf) {
+        if (tpf <= 0) {
+            throw new IllegalArgumentException("Time per tick must be positive. You inputed " + tpf + '.');
+        }
+        this.appState = appState;
+        this.tpf = tpf;
+    }
+
+    /**
+     * Running given number of ticks. If game isn't in progress, it is started.
+     *
+     * @param ticks number of ticks
+     * @return how fast ticks were simulated
+     */
+    public Report run(int ticks) {
+        if (!appState.isInProgress()) {
+            appState.start();
+        }
+        long agentUpdatesBefore = appState.getAgentUpdateCount();
+        long start = System.nanoTime();
+        for (int i = 0; i < ticks; i++) {
+            appState.simulate(tpf);
+        }
+        long time = System.nanoTime() - start;
+        return new Report(ticks, appState.getAgentUpdateCount() - agentUpdatesBefore, time);
+    }
+
+    public MonkeyBrainsAppState getAppState() {
+        return appState;
+    }
+
+    public float getTpf() {
+        return tpf;
+    }
+
+    /**
+     * How fast simulation was run.
+     */
+    public static class Report {
+
+        private final int ticks;
+        private final long agentUpdates;
+        private final long nanoTime;
+
+        public Report(int ticks, long agentUpdates, long nanoTime) {
+            this.ticks = ticks;
+            this.agentUpdates = agentUpdates;
+            this.nanoTime = nanoTime;
+        }
+
+        public int getTicks() {
+            return ticks;
+        }
+
+        public long getAgentUpdates() {
+            return agentUpdates;
+        }
+
+        /**
+         * @return time of simulation in nanoseconds
+         */
+        public long getNanoTime() {
+            return nanoTime;
+        }
+
+        public double getTicksPerSecond() {
+            return perSecond(ticks);
+        }
+
+        public double getAgentUpdatesPerSecond() {
+            return perSecond(agentUpdates);
+        }
+
+        private double perSecond(long count) {
+            if (nanoTime == 0) {
+                return 0;
+            }
+            return count * 1e9 / nanoTime;
+        }
+
+        @Override
+        public String toString() {
+            return ticks + " ticks in " + (nanoTime / 1e6) + " ms, "
+                    + getTicksPerSecond() + " ticks/s, "
+                    + getAgentUpdatesPerSecond() + " agent updates/s";
+        }
+    }
+}
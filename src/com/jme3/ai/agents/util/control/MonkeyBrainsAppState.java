@@ -33,21 +33,78 @@ import com.jme3.ai.agents.Agent;
 import com.jme3.ai.agents.AgentExceptions;
 import com.jme3.ai.agents.util.GameEntity;
 import com.jme3.ai.agents.util.GameEntityExceptions;
+import com.jme3.ai.agents.util.GameEntityRegistry;
+import com.jme3.ai.agents.util.IdAllocator;
+import com.jme3.ai.agents.util.KinematicStore;
+import com.jme3.ai.agents.util.spatial.SpatialHashGrid;
+import com.jme3.ai.agents.util.spatial.SpatialIndex;
 import monkeystuff.weapon.AbstractWeapon;
 import com.jme3.app.Application;
 import com.jme3.app.state.AbstractAppState;
 import com.jme3.math.Vector3f;
 import com.jme3.scene.Node;
-import java.util.LinkedList;
+import java.util.ArrayList;
 import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+import java.util.concurrent.atomic.AtomicLong;
 
 /**
  * Class with information about agents and consequences of their behaviors in
  * game. It is not necessary to use it but it enables easier game status
  * updates. Contains agents and game entities and provides generic ai control.
+ * <br><br>
+ *
+ * There can be many independent games, each with its own agents and game
+ * entities, for example for running simulations on separate threads. Every
+ * agent and game entity knows in which game it is, see
+ * {@link GameEntity#getAppState()}. Default game is returned by
+ * getInstance().
+ * <br><br>
+ *
+ * Agents can be updated in parallel, see setParallelism(int). While agents are
+ * updated in parallel, behaviors of agent:
+ * <ul>
+ * <li>can read and change its own agent, agent's spatial and its own
+ * behaviors,</li>
+ * <li>can read other agents and game entities, but it is not defined if they
+ * have already been updated in the same update, unless snapshots are enabled
+ * and they are read through snapshot getters like
+ * {@link GameEntity#getSnapshotTranslation()},</li>
+ * <li>must not change other agents, game entities or scene graph outside of
+ * its own agent's spatial,</li>
+ * <li>can add and remove agents and game entities.</li>
+ * </ul>
+ * Game entities are always updated one after another, after all agents are
+ * updated.
+ * <br><br>
+ * Agents and game entities that are added or removed during update are kept in
+ * structural change buffer and they are added and removed all at once after
+ * agents are updated and again after game entities are updated. Until then
+ * they are not in lists of agents and game entities, and added ones don't
+ * have their id.
+ * <br><br>
+ * If fixed time step is set, agents and game entities are updated with that
+ * time step as many times as needed to catch up with rendering, but not more
+ * than maximum steps per frame. Between updates, spatials are shown
+ * interpolated between last two updates.
+ * <br><br>
+ * If level of detail policy is set, agents far from focus points are updated
+ * less often.
+ * <br><br>
+ * If spatial grid is set, it contains all agents and game entities and it is
+ * refreshed before every update, so behaviors can find their neighbours
+ * without checking all of them.
+ * <br><br>
+ * If update budget is set, agents are updated one after another, starting
+ * where previous update stopped, until budget is spent. Agent that wasn't
+ * updated for longer than maximum skipped time is updated even over budget.
+ * <br><br>
+ * Ray queries that behaviors submit to ray cast service are cast all together
+ * at the end of every update, and their results are read in next update.
  *
  * @author Tihomir Radosavljević
- * @version 2.1.1
+ * @version 2.17.4
  */
 public class MonkeyBrainsAppState extends AbstractAppState {
 
@@ -72,84 +129,213 @@ public class MonkeyBrainsAppState extends AbstractAppState {
      */
     protected HitPointsControl hitPointsControl;
     /**
-     * List of all agents that are active in game.
+     * All agents that are active in game.
+     */
+    protected GameEntityRegistry<Agent> agents;
+    /**
+     * All GameEntities in game except for agents.
      */
-    protected List<Agent> agents;
+    protected GameEntityRegistry<GameEntity> gameEntities;
     /**
-     * List of all GameEntities in game except for agents.
+     * Pool for updating agents in parallel. If null, agents are updated one
+     * after another.
      */
-    protected List<GameEntity> gameEntities;
+    private ForkJoinPool parallelPool;
     /**
-     * Used internaly for difference between game entities.
+     * Maximum number of agents that are updated in one parallel task.
      */
-    private int idCounter;
+    private int agentsPerTask = 64;
     /**
-     * Used internaly for difference between agents.
+     * Indicator if agents are being updated in parallel.
      */
-    private int idCounterAgent;
+    private volatile boolean inParallelPhase = false;
     /**
-     * Maximum number of agents supported by framework.
+     * Indicator if kinematic state of all agents and game entities is captured
+     * before agents are updated.
+     */
+    private boolean snapshotsEnabled = false;
+    /**
+     * Kinematic state of all agents gathered before agents are updated, null
+     * if it isn't used.
+     */
+    private KinematicStore kinematicStore;
+    /**
+     * Tick in which kinematic store was gathered, -1 if agents were added or
+     * removed since then.
+     */
+    private long kinematicStoreTick = -1;
+    /**
+     * Time between two updates of agents and game entities. If zero, they are
+     * updated once in every frame with frame's time.
+     */
+    private float fixedTimeStep = 0;
+    /**
+     * Maximum number of fixed updates in one frame, time above that is
+     * dropped so long frames don't cause even longer ones.
+     */
+    private int maxStepsPerFrame = 5;
+    /**
+     * Time that passed in frames but hasn't been simulated yet.
+     */
+    private float accumulator = 0;
+    /**
+     * Indicator if spatials are interpolated between fixed updates.
+     */
+    private boolean interpolationEnabled = true;
+    /**
+     * Level of detail for updating agents. If null, all agents are updated in
+     * every tick.
+     */
+    private UpdateLodPolicy lodPolicy;
+    /**
+     * Number of updates of agents since game started.
+     */
+    private long tickCount = 0;
+    /**
+     * Number of sync points since game started.
+     */
+    private long syncCount = 0;
+    /**
+     * Time in milliseconds that updating agents may take in one tick. If zero,
+     * all agents are updated in every tick.
+     */
+    private float updateBudget = 0;
+    /**
+     * Maximum time in seconds that agent can wait for update while update
+     * budget is set.
+     */
+    private float maxSkippedTime = 0.25f;
+    /**
+     * Index of agent from which next budgeted update starts.
+     */
+    private int budgetCursor = 0;
+    /**
+     * Indicator if agents and game entities are being updated, so adding and
+     * removing them must wait for sync point.
+     */
+    private boolean updating = false;
+    /**
+     * Agents and game entities added or removed during update.
+     */
+    private final StructuralChangeBuffer structuralChanges = new StructuralChangeBuffer();
+    private final List<Agent> agentsToAdd = new ArrayList<Agent>();
+    private final List<Agent> agentsToRemove = new ArrayList<Agent>();
+    private final List<GameEntity> gameEntitiesToAdd = new ArrayList<GameEntity>();
+    private final List<GameEntity> gameEntitiesToRemove = new ArrayList<GameEntity>();
+    /**
+     * Number of times any agent has been updated.
+     */
+    private final AtomicLong agentUpdateCount = new AtomicLong();
+    /**
+     * Spatial grid of all agents and game entities, null if it isn't used.
+     */
+    private SpatialHashGrid spatialGrid;
+    /**
+     * All spatial indexes that must be kept up to date with agents and game
+     * entities.
+     */
+    private final List<SpatialIndex> spatialIndexes = new ArrayList<SpatialIndex>();
+    /**
+     * Neighbourhoods of agents shared by flocking behaviors.
+     */
+    private final NeighborhoodService neighborhoodService = new NeighborhoodService(this);
+    private final RayCastService rayCastService = new RayCastService(this);
+    /**
+     * How agents and game entities are registered.
+     */
+    private RegistryMode registryMode;
+    /**
+     * Maximum number of agents supported by framework in bounded registry
+     * mode.
+     *
+     * @see RegistryMode#BOUNDED
      */
     public static final int MAX_NUMBER_OF_AGENTS = 1000;
 
-    protected MonkeyBrainsAppState() {
-        agents = new LinkedList<Agent>();
-        gameEntities = new LinkedList<GameEntity>();
-        idCounter = MAX_NUMBER_OF_AGENTS + 1;
+    /**
+     * Modes in which agents and game entities can be registered.
+     */
+    public static enum RegistryMode {
+
+        /**
+         * There can be less than MAX_NUMBER_OF_AGENTS agents. Agents and game
+         * entities share one id space, so id of agent is never equal to id of
+         * game entity. Index of agent id (IdAllocator.indexOf()) is smaller
+         * than MAX_NUMBER_OF_AGENTS, but id itself also has generation of its
+         * slot, so it is bigger once slot is reused.
+         */
+        BOUNDED,
+        /**
+         * There is no fixed limit of agents, except that the one agent
+         * registry can't have more than IdAllocator.MAX_SLOTS agents. Agents
+         * and game entities have separate id spaces, so agent and game
+         * entity can have same id.
+         */
+        UNBOUNDED;
     }
 
     /**
-     * Method for getting new available id for game entities.
-     *
-     * @return unique id
+     * Creating new game, independent from default one and any other.
      */
-    private int setIdCouterToGameEntity() {
-        if (gameEntities.size() >= Integer.MAX_VALUE - MAX_NUMBER_OF_AGENTS - 1) {
-            throw new GameEntityExceptions.MaxGameEntitiesException();
-        }
-        while (!isAvailable(gameEntities, idCounter)) {
-            if (idCounter < Integer.MAX_VALUE) {
-                idCounter++;
-            } else {
-                idCounter = MAX_NUMBER_OF_AGENTS;
-            }
-        }
-        return idCounter;
+    public MonkeyBrainsAppState() {
+        setRegistryMode(RegistryMode.BOUNDED);
     }
 
     /**
-     * Method for getting new available id for agents.
+     * Changing how agents and game entities are registered. It can only be
+     * changed while there are no agents and game entities in game.
      *
-     * @return unique id
+     * @param registryMode
+     * @throws IllegalStateException if there are agents or game entities in
+     * game
      */
-    private int setIdCounterToAgent() {
-        if (agents.size() >= MAX_NUMBER_OF_AGENTS - 1) {
-            throw new AgentExceptions.MaxAgentsException();
+    public void setRegistryMode(RegistryMode registryMode) {
+        if (agents != null && (!agents.isEmpty() || !gameEntities.isEmpty())) {
+            throw new IllegalStateException("Registry mode can't be changed while there are agents or game entities in game.");
         }
-        while (!isAvailable(agents, idCounterAgent)) {
-            if (idCounterAgent < MAX_NUMBER_OF_AGENTS - 1) {
-                idCounterAgent++;
-            } else {
-                idCounterAgent = 0;
-            }
+        switch (registryMode) {
+            case BOUNDED:
+                agents = new GameEntityRegistry<Agent>(0, MAX_NUMBER_OF_AGENTS - 1);
+                gameEntities = new GameEntityRegistry<GameEntity>(MAX_NUMBER_OF_AGENTS + 1, IdAllocator.MAX_SLOTS - MAX_NUMBER_OF_AGENTS - 1);
+                break;
+            case UNBOUNDED:
+                agents = new GameEntityRegistry<Agent>(0, IdAllocator.MAX_SLOTS);
+                gameEntities = new GameEntityRegistry<GameEntity>(0, IdAllocator.MAX_SLOTS);
+                break;
         }
-        return idCounterAgent;
+        this.registryMode = registryMode;
+    }
+
+    public RegistryMode getRegistryMode() {
+        return registryMode;
     }
 
     /**
-     * Helper function for checking if some specific id is available.
+     * Registering agent with new unique id and starting it if game is in
+     * progress. During update agent waits for sync point.
      *
-     * @param list
-     * @param id
-     * @return
+     * @param agent
      */
-    private boolean isAvailable(List list, int id) {
-        for (int i = 0; i < list.size(); i++) {
-            if (((GameEntity) list.get(i)).getId() == id) {
-                return false;
+    private void registerAgent(Agent agent) {
+        agent.setAppState(this);
+        if (updating) {
+            synchronized (structuralChanges) {
+                if (agents.getFreeIdCount() <= structuralChanges.getAgentsToAddCount()) {
+                    throw new AgentExceptions.MaxAgentsException();
+                }
+                structuralChanges.addAgent(agent);
             }
+            return;
+        }
+        if (!agents.hasFreeId()) {
+            throw new AgentExceptions.MaxAgentsException();
+        }
+        agents.add(agent);
+        addToSpatialIndexes(agent, SpatialIndex.AGENT_LAYER);
+        agent.setSkippedTime(0);
+        if (inProgress) {
+            agent.start();
         }
-        return true;
     }
 
     /**
@@ -159,11 +345,7 @@ public class MonkeyBrainsAppState extends AbstractAppState {
      * @param agent agent which is added to game
      */
     public void addAgent(Agent agent) {
-        agents.add(agent);
-        agent.setId(setIdCounterToAgent());
-        if (inProgress) {
-            agent.start();
-        }
+        registerAgent(agent);
         //rootNode.attachChild(agent.getSpatial());
     }
 
@@ -176,11 +358,7 @@ public class MonkeyBrainsAppState extends AbstractAppState {
      */
     public void addAgent(Agent agent, Vector3f position) {
         agent.setLocalTranslation(position);
-        agents.add(agent);
-        agent.setId(setIdCounterToAgent());
-        if (inProgress) {
-            agent.start();
-        }
+        registerAgent(agent);
 //        rootNode.attachChild(agent.getSpatial());
     }
 
@@ -195,11 +373,7 @@ public class MonkeyBrainsAppState extends AbstractAppState {
      */
     public void addAgent(Agent agent, float x, float y, float z) {
         agent.setLocalTranslation(x, y, z);
-        agents.add(agent);
-        agent.setId(setIdCounterToAgent());
-        if (inProgress) {
-            agent.start();
-        }
+        registerAgent(agent);
 //        rootNode.attachChild(agent.getSpatial());
     }
 
@@ -210,13 +384,16 @@ public class MonkeyBrainsAppState extends AbstractAppState {
      * @param agent agent who should be removed
      */
     public void removeAgent(Agent agent) {
-        for (int i = 0; i < agents.size(); i++) {
-            if (agents.get(i).equals(agent)) {
-                agents.get(i).stop();
-                agents.get(i).getSpatial().removeFromParent();
-                agents.remove(i);
-                break;
-            }
+        if (updating) {
+            structuralChanges.removeAgent(agent);
+            return;
+        }
+        Agent removed = agents.remove(agent);
+        if (removed != null) {
+            removeFromSpatialIndexes(removed);
+            neighborhoodService.forget(removed);
+            removed.stop();
+            removed.getSpatial().removeFromParent();
         }
     }
 
@@ -226,11 +403,9 @@ public class MonkeyBrainsAppState extends AbstractAppState {
      * @param agent
      */
     public void disableAgent(Agent agent) {
-        for (int i = 0; i < agents.size(); i++) {
-            if (agents.get(i).equals(agent)) {
-                agents.get(i).stop();
-                break;
-            }
+        int index = agents.indexOf(agent);
+        if (index >= 0) {
+            agents.get(index).stop();
         }
     }
 
@@ -242,20 +417,669 @@ public class MonkeyBrainsAppState extends AbstractAppState {
         if (!inProgress) {
             return;
         }
+        if (fixedTimeStep <= 0) {
+            simulate(tpf);
+            return;
+        }
+        if (interpolationEnabled) {
+            restoreSimulatedTransforms();
+        }
+        accumulator += tpf;
+        int steps = 0;
+        while (accumulator >= fixedTimeStep && steps < maxStepsPerFrame) {
+            if (interpolationEnabled) {
+                for (int i = 0; i < agents.size(); i++) {
+                    agents.get(i).getInterpolation().beforeTick(agents.get(i));
+                }
+                for (int i = 0; i < gameEntities.size(); i++) {
+                    gameEntities.get(i).getInterpolation().beforeTick(gameEntities.get(i));
+                }
+            }
+            simulate(fixedTimeStep);
+            accumulator -= fixedTimeStep;
+            steps++;
+        }
+        if (accumulator >= fixedTimeStep) {
+            //can't catch up, dropping time
+            accumulator %= fixedTimeStep;
+        }
+        if (interpolationEnabled) {
+            float alpha = accumulator / fixedTimeStep;
+            for (int i = 0; i < agents.size(); i++) {
+                interpolate(agents.get(i), alpha, steps > 0);
+            }
+            for (int i = 0; i < gameEntities.size(); i++) {
+                interpolate(gameEntities.get(i), alpha, steps > 0);
+            }
+        }
+    }
+
+    /**
+     * One update of all agents and game entities.
+     *
+     * @param tpf time for which agents and game entities are updated
+     */
+    protected void simulate(float tpf) {
+        updating = true;
+        try {
+            for (int i = 0; i < spatialIndexes.size(); i++) {
+                spatialIndexes.get(i).refresh();
+            }
+            if (snapshotsEnabled) {
+                takeSnapshots();
+            }
+            if (kinematicStore != null) {
+                kinematicStore.gather(agents.asList());
+                kinematicStoreTick = tickCount;
+            }
+            if (lodPolicy != null) {
+                lodPolicy.prepare();
+            }
+            updateAgents(tpf);
+            applyStructuralChanges();
+            for (int i = 0; i < gameEntities.size(); i++) {
+                gameEntities.get(i).update(tpf);
+            }
+            applyStructuralChanges();
+            rayCastService.resolve();
+        } finally {
+            updating = false;
+        }
+        tickCount++;
+    }
+
+    /**
+     * Sync point in update. Adding and removing all agents and game entities
+     * that were added or removed since last sync point. Removals are done
+     * first, then all new agents and game entities are added at once.
+     */
+    protected void applyStructuralChanges() {
+        boolean wasUpdating = updating;
+        updating = false;
+        try {
+            while (!structuralChanges.isEmpty()) {
+                structuralChanges.drainTo(agentsToAdd, agentsToRemove, gameEntitiesToAdd, gameEntitiesToRemove);
+                if (!agentsToAdd.isEmpty() || !agentsToRemove.isEmpty()) {
+                    //slots in kinematic store don't match agents anymore
+                    kinematicStoreTick = -1;
+                }
+                for (int i = 0; i < agentsToRemove.size(); i++) {
+                    removeAgent(agentsToRemove.get(i));
+                }
+                for (int i = 0; i < gameEntitiesToRemove.size(); i++) {
+                    removeGameEntity(gameEntitiesToRemove.get(i));
+                }
+                agents.addAll(agentsToAdd);
+                gameEntities.addAll(gameEntitiesToAdd);
+                for (int i = 0; i < gameEntitiesToAdd.size(); i++) {
+                    addToSpatialIndexes(gameEntitiesToAdd.get(i), SpatialIndex.GAME_ENTITY_LAYER);
+                }
+                for (int i = 0; i < agentsToAdd.size(); i++) {
+                    addToSpatialIndexes(agentsToAdd.get(i), SpatialIndex.AGENT_LAYER);
+                    agentsToAdd.get(i).setSkippedTime(0);
+                    if (inProgress) {
+                        agentsToAdd.get(i).start();
+                    }
+                }
+                agentsToAdd.clear();
+                agentsToRemove.clear();
+                gameEntitiesToAdd.clear();
+                gameEntitiesToRemove.clear();
+            }
+        } finally {
+            updating = wasUpdating;
+            syncCount++;
+        }
+    }
+
+    private void addToSpatialIndexes(GameEntity gameEntity, int layer) {
+        for (int i = 0; i < spatialIndexes.size(); i++) {
+            spatialIndexes.get(i).add(gameEntity, layer);
+        }
+    }
+
+    private void removeFromSpatialIndexes(GameEntity gameEntity) {
+        for (int i = 0; i < spatialIndexes.size(); i++) {
+            spatialIndexes.get(i).remove(gameEntity);
+        }
+    }
+
+    /**
+     * Starting to keep spatial index up to date with all agents and game
+     * entities. Agents are in SpatialIndex.AGENT_LAYER and game entities in
+     * SpatialIndex.GAME_ENTITY_LAYER. Spatial index is refreshed before every
+     * tick. It shouldn't be added or removed while game is updating.
+     *
+     * @param spatialIndex
+     */
+    public void addSpatialIndex(SpatialIndex spatialIndex) {
+        spatialIndex.clear();
         for (int i = 0; i < agents.size(); i++) {
-            agents.get(i).update(tpf);
+            spatialIndex.add(agents.get(i), SpatialIndex.AGENT_LAYER);
         }
         for (int i = 0; i < gameEntities.size(); i++) {
-            gameEntities.get(i).update(tpf);
+            spatialIndex.add(gameEntities.get(i), SpatialIndex.GAME_ENTITY_LAYER);
+        }
+        spatialIndexes.add(spatialIndex);
+    }
+
+    public void removeSpatialIndex(SpatialIndex spatialIndex) {
+        spatialIndexes.remove(spatialIndex);
+    }
+
+    /**
+     * Setting spatial grid that will contain all agents and game entities.
+     *
+     * @param spatialGrid grid, null if it shouldn't be used
+     */
+    public void setSpatialGrid(SpatialHashGrid spatialGrid) {
+        if (this.spatialGrid != null) {
+            removeSpatialIndex(this.spatialGrid);
+        }
+        this.spatialGrid = spatialGrid;
+        if (spatialGrid != null) {
+            addSpatialIndex(spatialGrid);
+        }
+    }
+
+    /**
+     * @return spatial grid of all agents and game entities, null if it isn't
+     * used
+     */
+    public SpatialHashGrid getSpatialGrid() {
+        return spatialGrid;
+    }
+
+    private void interpolate(GameEntity gameEntity, float alpha, boolean ticked) {
+        if (ticked) {
+            gameEntity.getInterpolation().afterTick(gameEntity);
+        }
+        gameEntity.getInterpolation().interpolate(gameEntity, alpha);
+    }
+
+    /**
+     * Returning spatials from interpolated to simulated transforms.
+     */
+    private void restoreSimulatedTransforms() {
+        for (int i = 0; i < agents.size(); i++) {
+            agents.get(i).getInterpolation().restore(agents.get(i));
+        }
+        for (int i = 0; i < gameEntities.size(); i++) {
+            gameEntities.get(i).getInterpolation().restore(gameEntities.get(i));
+        }
+    }
+
+    /**
+     * Updating one agent, unless its level of detail tier skips this tick.
+     * Agents in same tier are spread over ticks by their id.
+     *
+     * @param agent
+     * @param tpf time per frame
+     * @return true if agent was updated
+     */
+    protected boolean updateAgent(Agent agent, float tpf) {
+        if (lodPolicy != null) {
+            int interval = lodPolicy.getInterval(lodPolicy.getTier(agent));
+            if (interval > 1 && (tickCount + agent.getId()) % interval != 0) {
+                agent.setSkippedTime(agent.getSkippedTime() + tpf);
+                return false;
+            }
+        }
+        float skippedTime = agent.getSkippedTime();
+        if (skippedTime > 0) {
+            tpf += skippedTime;
+            agent.setSkippedTime(0);
+        }
+        agent.update(tpf);
+        return true;
+    }
+
+    /**
+     * Capturing kinematic state of all agents and game entities. During agent
+     * update, snapshots hold state from the previous tick while live spatials
+     * hold state for the next one, so every agent sees the same neighbours
+     * no matter of update order.
+     */
+    protected void takeSnapshots() {
+        for (int i = 0; i < agents.size(); i++) {
+            agents.get(i).takeSnapshot();
+        }
+        for (int i = 0; i < gameEntities.size(); i++) {
+            gameEntities.get(i).takeSnapshot();
+        }
+    }
+
+    /**
+     * Updating all agents, in parallel if it is enabled and there are enough
+     * agents.
+     *
+     * @param tpf time per frame
+     */
+    protected void updateAgents(float tpf) {
+        if (updateBudget > 0) {
+            updateAgentsWithinBudget(tpf);
+            return;
+        }
+        if (parallelPool == null || agents.size() <= agentsPerTask) {
+            int updated = 0;
+            for (int i = 0; i < agents.size(); i++) {
+                if (updateAgent(agents.get(i), tpf)) {
+                    updated++;
+                }
+            }
+            agentUpdateCount.addAndGet(updated);
+            return;
+        }
+        inParallelPhase = true;
+        try {
+            parallelPool.invoke(new AgentUpdateTask(0, agents.size(), tpf));
+        } finally {
+            inParallelPhase = false;
+        }
+    }
+
+    /**
+     * Updating agents in round robin order until update budget is spent.
+     * Agents that are left are updated in later ticks with time that they
+     * skipped, unless they waited for too long. Agents that waited for too
+     * long are still updated through updateAgent(), so their level of detail
+     * tier can skip them.
+     *
+     * @param tpf time per frame
+     */
+    private void updateAgentsWithinBudget(float tpf) {
+        int count = agents.size();
+        if (count == 0) {
+            return;
+        }
+        if (budgetCursor >= count) {
+            budgetCursor = 0;
+        }
+        long deadline = System.nanoTime() + (long) (updateBudget * 1000000);
+        int index = budgetCursor;
+        int visited = 0;
+        int updated = 0;
+        while (visited < count && System.nanoTime() < deadline) {
+            if (updateAgent(agents.get(index), tpf)) {
+                updated++;
+            }
+            index = (index + 1) % count;
+            visited++;
         }
+        budgetCursor = index;
+        for (; visited < count; visited++) {
+            Agent agent = agents.get(index);
+            if (agent.getSkippedTime() + tpf >= maxSkippedTime) {
+                if (updateAgent(agent, tpf)) {
+                    updated++;
+                }
+            } else {
+                agent.setSkippedTime(agent.getSkippedTime() + tpf);
+            }
+            index = (index + 1) % count;
+        }
+        agentUpdateCount.addAndGet(updated);
+    }
+
+    /**
+     * Task for updating range of agents. It splits itself until range is small
+     * enough.
+     */
+    private class AgentUpdateTask extends RecursiveAction {
+
+        private static final long serialVersionUID = 1L;
+        private final int from;
+        private final int to;
+        private final float tpf;
+
+        private AgentUpdateTask(int from, int to, float tpf) {
+            this.from = from;
+            this.to = to;
+            this.tpf = tpf;
+        }
+
+        @Override
+        protected void compute() {
+            if (to - from <= agentsPerTask) {
+                int updated = 0;
+                for (int i = from; i < to; i++) {
+                    if (updateAgent(agents.get(i), tpf)) {
+                        updated++;
+                    }
+                }
+                agentUpdateCount.addAndGet(updated);
+            } else {
+                int middle = (from + to) >>> 1;
+                invokeAll(new AgentUpdateTask(from, middle, tpf), new AgentUpdateTask(middle, to, tpf));
+            }
+        }
+    }
+
+    /**
+     * Setting number of threads that will update agents. With 1 agents are
+     * updated one after another on the thread that updates this app state.
+     * Before using more threads, see what behaviors are allowed to do while
+     * agents are updated in parallel.
+     *
+     * @see MonkeyBrainsAppState
+     * @param parallelism number of threads, 1 for no parallel update
+     * @throws IllegalArgumentException if parallelism is lower than 1
+     */
+    public void setParallelism(int parallelism) {
+        if (parallelism < 1) {
+            throw new IllegalArgumentException("Parallelism must be at least 1. You inputed " + parallelism + '.');
+        }
+        if (parallelPool != null) {
+            if (parallelPool.getParallelism() == parallelism) {
+                return;
+            }
+            parallelPool.shutdown();
+            parallelPool = null;
+        }
+        if (parallelism > 1) {
+            parallelPool = new ForkJoinPool(parallelism);
+        }
+    }
+
+    /**
+     * @return number of threads that update agents
+     */
+    public int getParallelism() {
+        if (parallelPool == null) {
+            return 1;
+        }
+        return parallelPool.getParallelism();
+    }
+
+    /**
+     * @param agentsPerTask maximum number of agents updated in one parallel
+     * task
+     */
+    public void setAgentsPerTask(int agentsPerTask) {
+        if (agentsPerTask < 1) {
+            throw new IllegalArgumentException("There must be at least one agent per task. You inputed " + agentsPerTask + '.');
+        }
+        this.agentsPerTask = agentsPerTask;
+    }
+
+    public int getAgentsPerTask() {
+        return agentsPerTask;
+    }
+
+    /**
+     * @return true if agents are being updated in parallel at the moment
+     */
+    public boolean isInParallelPhase() {
+        return inParallelPhase;
+    }
+
+    /**
+     * @return number of updates of agents since game was created, agents
+     * skipped by level of detail or update budget are not counted
+     */
+    public long getAgentUpdateCount() {
+        return agentUpdateCount.get();
+    }
+
+    /**
+     * @return true if agents and game entities are being updated
+     */
+    public boolean isUpdating() {
+        return updating;
+    }
+
+    /**
+     * @return neighbourhoods of agents shared by flocking behaviors
+     */
+    public NeighborhoodService getNeighborhoodService() {
+        return neighborhoodService;
     }
 
+    /**
+     * @return service that casts rays of behaviors once per tick
+     */
+    public RayCastService getRayCastService() {
+        return rayCastService;
+    }
+
+    /**
+     * @return pool for parallel work, null if agents are updated one after
+     * another
+     */
+    ForkJoinPool getParallelPool() {
+        return parallelPool;
+    }
+
+    /**
+     * @return number of ticks in which agents were updated
+     */
+    public long getTickCount() {
+        return tickCount;
+    }
+
+    /**
+     * Removal of agent or game entity that was asked during update is done
+     * once this number increases.
+     *
+     * @return number of sync points since game started
+     * @see MonkeyBrainsAppState#applyStructuralChanges()
+     */
+    public long getSyncCount() {
+        return syncCount;
+    }
+
+    /**
+     * Enabling snapshots of agents and game entities that are taken at the
+     * beginning of every update. Disabling them clears existing snapshots so
+     * snapshot getters return live values again.
+     *
+     * @param snapshotsEnabled true if snapshots should be taken
+     * @see GameEntity#takeSnapshot()
+     */
+    public void setSnapshotsEnabled(boolean snapshotsEnabled) {
+        this.snapshotsEnabled = snapshotsEnabled;
+        if (!snapshotsEnabled) {
+            for (int i = 0; i < agents.size(); i++) {
+                agents.get(i).getSnapshot().clear();
+            }
+            for (int i = 0; i < gameEntities.size(); i++) {
+                gameEntities.get(i).getSnapshot().clear();
+            }
+        }
+    }
+
+    public boolean isSnapshotsEnabled() {
+        return snapshotsEnabled;
+    }
+
+    /**
+     * Enabling kinematic store of agents. State of all agents is gathered in
+     * it at the beginning of every update, right after snapshots, and slot of
+     * agent in store is its index in getAgents(). With snapshots enabled,
+     * neighbourhood service reads neighbours' positions from store, and its
+     * distance search can be vectorized with
+     * getKinematicStore().setVectorized(true).
+     *
+     * @param kinematicStoreEnabled true if kinematic store should be gathered
+     * @see KinematicStore
+     */
+    public void setKinematicStoreEnabled(boolean kinematicStoreEnabled) {
+        if (kinematicStoreEnabled && kinematicStore == null) {
+            kinematicStore = new KinematicStore(agents.size());
+        } else if (!kinematicStoreEnabled && kinematicStore != null) {
+            kinematicStore.clear();
+            kinematicStore = null;
+        }
+        kinematicStoreTick = -1;
+    }
+
+    public boolean isKinematicStoreEnabled() {
+        return kinematicStore != null;
+    }
+
+    /**
+     * @return kinematic store of agents, null if it isn't enabled
+     */
+    public KinematicStore getKinematicStore() {
+        return kinematicStore;
+    }
+
+    /**
+     * Check if kinematic store can be used instead of agents, in the same
+     * order as getAgents(). It is true only during update in which store was
+     * gathered, until agents are added or removed.
+     *
+     * @return true if kinematic store matches agents
+     */
+    public boolean isKinematicStoreCurrent() {
+        return kinematicStore != null && updating && kinematicStoreTick == tickCount;
+    }
+
+    /**
+     * Setting fixed time between updates of agents and game entities, for
+     * example 0.05f for 20 updates per second regardless of frame rate.
+     *
+     * @param fixedTimeStep time step in seconds, zero for updating once per
+     * frame
+     * @throws IllegalArgumentException if time step is negative
+     */
+    public void setFixedTimeStep(float fixedTimeStep) {
+        if (fixedTimeStep < 0) {
+            throw new IllegalArgumentException("Fixed time step can't be negative. You inputed " + fixedTimeStep + '.');
+        }
+        restoreSimulatedTransforms();
+        this.fixedTimeStep = fixedTimeStep;
+        accumulator = 0;
+    }
+
+    public float getFixedTimeStep() {
+        return fixedTimeStep;
+    }
+
+    /**
+     * @param maxStepsPerFrame maximum number of fixed updates in one frame
+     * @throws IllegalArgumentException if it is less than one
+     */
+    public void setMaxStepsPerFrame(int maxStepsPerFrame) {
+        if (maxStepsPerFrame < 1) {
+            throw new IllegalArgumentException("There must be at least one step per frame. You inputed " + maxStepsPerFrame + '.');
+        }
+        this.maxStepsPerFrame = maxStepsPerFrame;
+    }
+
+    public int getMaxStepsPerFrame() {
+        return maxStepsPerFrame;
+    }
+
+    /**
+     * @param interpolationEnabled true if spatials should be interpolated
+     * between fixed updates
+     */
+    public void setInterpolationEnabled(boolean interpolationEnabled) {
+        if (!interpolationEnabled) {
+            restoreSimulatedTransforms();
+        }
+        this.interpolationEnabled = interpolationEnabled;
+    }
+
+    public boolean isInterpolationEnabled() {
+        return interpolationEnabled;
+    }
+
+    /**
+     * Setting level of detail for updating agents. Time skipped under previous
+     * policy is added to next update of each agent.
+     *
+     * @param lodPolicy policy, null for updating all agents in every tick
+     */
+    public void setLodPolicy(UpdateLodPolicy lodPolicy) {
+        this.lodPolicy = lodPolicy;
+    }
+
+    public UpdateLodPolicy getLodPolicy() {
+        return lodPolicy;
+    }
+
+    /**
+     * Setting how much time updating agents may take in one tick. While
+     * budget is set, agents are updated one after another on the thread that
+     * updates this app state.
+     *
+     * @param updateBudget time in milliseconds, zero for updating all agents
+     * in every tick
+     * @throws IllegalArgumentException if budget is negative
+     */
+    public void setUpdateBudget(float updateBudget) {
+        if (updateBudget < 0) {
+            throw new IllegalArgumentException("Update budget can't be negative. You inputed " + updateBudget + '.');
+        }
+        this.updateBudget = updateBudget;
+    }
+
+    public float getUpdateBudget() {
+        return updateBudget;
+    }
+
+    /**
+     * Setting minimum update rate that is guaranteed to agents while update
+     * budget is set.
+     *
+     * @param maxSkippedTime maximum time in seconds between two updates of
+     * agent
+     * @throws IllegalArgumentException if time isn't positive
+     */
+    public void setMaxSkippedTime(float maxSkippedTime) {
+        if (maxSkippedTime <= 0) {
+            throw new IllegalArgumentException("Maximum skipped time must be positive. You inputed " + maxSkippedTime + '.');
+        }
+        this.maxSkippedTime = maxSkippedTime;
+    }
+
+    public float getMaxSkippedTime() {
+        return maxSkippedTime;
+    }
+
+
+    /**
+     * @return read-only list of all agents in game
+     */
     public List<Agent> getAgents() {
-        return agents;
+        return agents.asList();
     }
 
+    /**
+     * The same list as getAgents(), for using all agents as neighbours in
+     * flocking behaviors.
+     *
+     * @return read-only list of all agents in game
+     * @see NeighborhoodService
+     */
+    @SuppressWarnings("unchecked")
+    public List<GameEntity> getAgentsAsGameEntities() {
+        return (List<GameEntity>) (List<?>) agents.asList();
+    }
+
+    /**
+     * @return read-only list of all game entities in game except for agents
+     */
     public List<GameEntity> getGameEntities() {
-        return gameEntities;
+        return gameEntities.asList();
+    }
+
+    /**
+     * @param id id of agent
+     * @return agent with that id, null if there isn't one in game
+     */
+    public Agent getAgent(int id) {
+        return agents.getById(id);
+    }
+
+    /**
+     * @param id id of game entity
+     * @return game entity with that id, null if there isn't one in game
+     */
+    public GameEntity getGameEntity(int id) {
+        return gameEntities.getById(id);
     }
 
     public boolean isFriendlyFire() {
@@ -294,16 +1118,80 @@ public class MonkeyBrainsAppState extends AbstractAppState {
         }
     }
 
+    /**
+     * Adding game entity to game. During update game entity waits for sync
+     * point.
+     *
+     * @param gameEntity
+     */
     public void addGameEntity(GameEntity gameEntity) {
+        gameEntity.setAppState(this);
+        if (updating) {
+            synchronized (structuralChanges) {
+                if (gameEntities.getFreeIdCount() <= structuralChanges.getGameEntitiesToAddCount()) {
+                    throw new GameEntityExceptions.MaxGameEntitiesException();
+                }
+                structuralChanges.addGameEntity(gameEntity);
+            }
+            return;
+        }
+        if (!gameEntities.hasFreeId()) {
+            throw new GameEntityExceptions.MaxGameEntitiesException();
+        }
         gameEntities.add(gameEntity);
-        gameEntity.setId(setIdCouterToGameEntity());
+        addToSpatialIndexes(gameEntity, SpatialIndex.GAME_ENTITY_LAYER);
     }
 
+    /**
+     * Removing game entity from game and its spatial from scene. During update
+     * game entity waits for sync point.
+     *
+     * @param gameEntity
+     */
     public void removeGameEntity(GameEntity gameEntity) {
+        if (updating) {
+            structuralChanges.removeGameEntity(gameEntity);
+            return;
+        }
         gameEntity.getSpatial().removeFromParent();
-        gameEntities.remove(gameEntity);
+        if (gameEntities.remove(gameEntity) != null) {
+            removeFromSpatialIndexes(gameEntity);
+        }
+    }
+
+    /**
+     * Check if id belongs to agent or game entity that is currently in game.
+     * Ids of removed agents and game entities are not valid, unless their
+     * slot has been reused many times since (see IdAllocator). In
+     * unbounded registry mode use isValidAgentId() or isValidGameEntityId()
+     * as agents and game entities don't share id space.
+     *
+     * @param id id of agent or game entity
+     * @return true if id is in use
+     */
+    public boolean isValidId(int id) {
+        return agents.isValidId(id) || gameEntities.isValidId(id);
+    }
+
+    /**
+     * @param id id of agent
+     * @return true if id belongs to agent that is currently in game
+     */
+    public boolean isValidAgentId(int id) {
+        return agents.isValidId(id);
+    }
+
+    /**
+     * @param id id of game entity
+     * @return true if id belongs to game entity that is currently in game
+     */
+    public boolean isValidGameEntityId(int id) {
+        return gameEntities.isValidId(id);
     }
 
+    /**
+     * @return default game
+     */
     public static MonkeyBrainsAppState getInstance() {
         return GameHolder.INSTANCE;
     }
@@ -327,18 +1215,27 @@ public class MonkeyBrainsAppState extends AbstractAppState {
 
     public void start() {
         inProgress = true;
-        for (Agent agent : agents) {
-            agent.start();
+        for (int i = 0; i < agents.size(); i++) {
+            agents.get(i).start();
         }
     }
 
     public void stop() {
         inProgress = false;
-        for (Agent agent : agents) {
-            agent.stop();
+        for (int i = 0; i < agents.size(); i++) {
+            agents.get(i).stop();
         }
     }
 
+    /**
+     * Releasing threads used for updating agents in parallel.
+     */
+    @Override
+    public void cleanup() {
+        super.cleanup();
+        setParallelism(1);
+    }
+
     public Application getApp() {
         return app;
     }
@@ -0,0 +1,277 @@
+/**
+ * Copyright (c) 2014, jMonkeyEngine All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *
+ * Redistributions of source code must retain the above copyright notice, this
+ * list of conditions and the following disclaimer.
+ *
+ * Redistributions in binary form must reproduce the above copyright notice,
+ * this list of conditions and the following disclaimer in the documentation
+ * and/or other materials provided with the distribution.
+ *
+ * Neither the name of 'jMonkeyEngine' nor the names of its contributors may be
+ * used to endorse or promote products derived from this software without
+ * specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ */
+package com.jme3.ai.agents.util.control;
+
+import com.jme3.ai.agents.Agent;
+import com.jme3.ai.agents.behaviors.npc.steering.SteeringExceptions;
+import com.jme3.ai.agents.util.GameEntity;
+import com.jme3.ai.agents.util.KinematicStore;
+import com.jme3.math.Vector3f;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Neighbourhoods of agents, computed at most once per tick. Flocking behaviors
+ * of the same agent usually ask for the same neighbourhood, so the first one
+ * computes it and others reuse it. Neighbourhood is found again if it is asked
+ * with different candidates, distances or angle, or in next tick.
+ * <br><br>
+ * Every agent has its own cache entries, so agents updated in parallel don't
+ * share anything but the map of agents. <br><br>
+ *
+ * If candidates are all agents in game (see
+ * MonkeyBrainsAppState#getAgentsAsGameEntities()) and both snapshots and
+ * kinematic store are enabled, distances are checked with
+ * KinematicStore#findInRadius(), and only agents that are close enough are
+ * read. Its vectorized path is used if it is turned on in store.
+ *
+ * @see Agent#inBoidNeighborhood(com.jme3.ai.agents.util.GameEntity, float,
+ * float, float)
+ *
+ * @author Tihomir Radosavljević
+ * @version 1.2.0
+ */
+public class NeighborhoodService {
+
+    private final MonkeyBrainsAppState appState;
+    private final ConcurrentHashMap<Agent, AgentNeighborhoods> cache = new ConcurrentHashMap<Agent, AgentNeighborhoods>();
+    /**
+     * Hits and misses of agents that were removed.
+     */
+    private long removedHits;
+    private long removedMisses;
+    /**
+     * Maximum number of different neighbourhoods kept for one agent.
+     */
+    private static final int MAX_ENTRIES_PER_AGENT = 8;
+    /**
+     * Slots found in kinematic store, one array for every thread, because
+     * agents are updated in parallel.
+     */
+    private static final ThreadLocal<int[][]> SLOTS = new ThreadLocal<int[][]>() {
+        @Override
+        protected int[][] initialValue() {
+            return new int[1][0];
+        }
+    };
+
+    public NeighborhoodService(MonkeyBrainsAppState appState) {
+        this.appState = appState;
+    }
+
+    /**
+     * Getting all candidates that are in boid neighbourhood of agent.
+     *
+     * @param agent agent whose neighbourhood is searched
+     * @param candidates game entities that can be neighbours
+     * @param minDistance min. distance to be in the same neighbourhood
+     * @param maxDistance max. distance to be in the same neighbourhood
+     * @param maxAngle max angle in radians
+     * @return neighbours, list must not be changed
+     */
+    public List<GameEntity> getNeighbours(Agent agent, List<GameEntity> candidates, float minDistance, float maxDistance, float maxAngle) {
+        AgentNeighborhoods neighborhoods = cache.get(agent);
+        if (neighborhoods == null) {
+            neighborhoods = new AgentNeighborhoods();
+            AgentNeighborhoods existing = cache.putIfAbsent(agent, neighborhoods);
+            if (existing != null) {
+                neighborhoods = existing;
+            }
+        }
+        //outside of update there is no tick in which neighbourhood is valid
+        long tick = appState.isUpdating() ? appState.getTickCount() : -1;
+        Neighborhood neighborhood = neighborhoods.find(candidates, minDistance, maxDistance, maxAngle);
+        if (neighborhood != null && tick >= 0 && neighborhood.tick == tick) {
+            neighborhoods.hits++;
+            return neighborhood.neighbours;
+        }
+        neighborhoods.misses++;
+        if (neighborhood == null) {
+            if (neighborhoods.entries.size() == MAX_ENTRIES_PER_AGENT) {
+                neighborhoods.entries.clear();
+            }
+            neighborhood = new Neighborhood(candidates, minDistance, maxDistance, maxAngle);
+            neighborhoods.entries.add(neighborhood);
+        }
+        neighborhood.tick = tick;
+        neighborhood.neighbours.clear();
+        if (appState.isSnapshotsEnabled() && appState.isKinematicStoreCurrent()
+                && (Object) candidates == appState.getAgents()) {
+            findNeighbours(agent, appState.getKinematicStore(), minDistance, maxDistance, maxAngle, neighborhood.neighbours);
+            return neighborhood.neighbours;
+        }
+        for (int i = 0; i < candidates.size(); i++) {
+            GameEntity candidate = candidates.get(i);
+            if (agent.inBoidNeighborhood(candidate, minDistance, maxDistance, maxAngle)) {
+                neighborhood.neighbours.add(candidate);
+            }
+        }
+        return neighborhood.neighbours;
+    }
+
+    /**
+     * Finding neighbours among all agents in kinematic store. Positions in
+     * store are the same as in snapshots, so result is the same as with
+     * Agent#inBoidNeighborhood().
+     */
+    private void findNeighbours(Agent agent, KinematicStore store, float minDistance, float maxDistance, float maxAngle, List<GameEntity> neighbours) {
+        int size = store.size();
+        if (size == 0) {
+            return;
+        }
+        if (minDistance < 0) {
+            throw new SteeringExceptions.NegativeValueException("The min distance can not be negative.", minDistance);
+        } else if (maxDistance < 0) {
+            throw new SteeringExceptions.NegativeValueException("The max distance can not be negative.", maxDistance);
+        }
+        Vector3f position = agent.getLocalTranslation();
+        float x = position.x;
+        float y = position.y;
+        float z = position.z;
+        float minDistanceSquared = minDistance * minDistance;
+        int[][] scratch = SLOTS.get();
+        if (scratch[0].length < size) {
+            scratch[0] = new int[size];
+        }
+        int[] slots = scratch[0];
+        //slots of agents inside of larger sphere, angle is checked below
+        int count = store.findInRadius(position, Math.max(minDistance, maxDistance), slots);
+        float[] positionX = store.getPositionX();
+        float[] positionY = store.getPositionY();
+        float[] positionZ = store.getPositionZ();
+        for (int k = 0; k < count; k++) {
+            int i = slots[k];
+            float dx = positionX[i] - x;
+            float dy = positionY[i] - y;
+            float dz = positionZ[i] - z;
+            float distanceSquared = dx * dx + dy * dy + dz * dz;
+            GameEntity candidate = store.getGameEntity(i);
+            if (candidate == agent) {
+                continue;
+            }
+            if (distanceSquared < minDistanceSquared || agent.inBoidNeighborhood(candidate, minDistance, maxDistance, maxAngle)) {
+                neighbours.add(candidate);
+            }
+        }
+    }
+
+    /**
+     * Forgetting all neighbourhoods of agent, used when agent is removed from
+     * game.
+     *
+     * @param agent
+     */
+    public void forget(Agent agent) {
+        AgentNeighborhoods neighborhoods = cache.remove(agent);
+        if (neighborhoods != null) {
+            removedHits += neighborhoods.hits;
+            removedMisses += neighborhoods.misses;
+        }
+    }
+
+    /**
+     * Should not be called while agents are updated.
+     *
+     * @return number of times neighbourhood was reused
+     */
+    public long getHitCount() {
+        long hits = removedHits;
+        for (AgentNeighborhoods neighborhoods : cache.values()) {
+            hits += neighborhoods.hits;
+        }
+        return hits;
+    }
+
+    /**
+     * Should not be called while agents are updated.
+     *
+     * @return number of times neighbourhood was computed
+     */
+    public long getMissCount() {
+        long misses = removedMisses;
+        for (AgentNeighborhoods neighborhoods : cache.values()) {
+            misses += neighborhoods.misses;
+        }
+        return misses;
+    }
+
+    /**
+     * Forgetting all neighbourhoods and counters.
+     */
+    public void clear() {
+        cache.clear();
+        removedHits = 0;
+        removedMisses = 0;
+    }
+
+    /**
+     * Neighbourhoods of one agent.
+     */
+    private static class AgentNeighborhoods {
+
+        private final List<Neighborhood> entries = new ArrayList<Neighborhood>(2);
+        private long hits;
+        private long misses;
+
+        private Neighborhood find(List<GameEntity> candidates, float minDistance, float maxDistance, float maxAngle) {
+            for (int i = 0; i < entries.size(); i++) {
+                Neighborhood neighborhood = entries.get(i);
+                if (neighborhood.candidates == candidates
+                        && neighborhood.minDistance == minDistance
+                        && neighborhood.maxDistance == maxDistance
+                        && neighborhood.maxAngle == maxAngle) {
+                    return neighborhood;
+                }
+            }
+            return null;
+        }
+    }
+
+    /**
+     * Neighbours found among candidates with given distances and angle.
+     */
+    private static class Neighborhood {
+
+        private final List<GameEntity> candidates;
+        private final float minDistance;
+        private final float maxDistance;
+        private final float maxAngle;
+        private final List<GameEntity> neighbours = new ArrayList<GameEntity>();
+        private long tick = -1;
+
+        private Neighborhood(List<GameEntity> candidates, float minDistance, float maxDistance, float maxAngle) {
+            this.candidates = candidates;
+            this.minDistance = minDistance;
+            this.maxDistance = maxDistance;
+            this.maxAngle = maxAngle;
+        }
+    }
+}
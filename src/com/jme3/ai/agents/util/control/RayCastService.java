@@ -0,0 +1,278 @@
+/**
+ * Copyright (c) 2014, jMonkeyEngine All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *
+ * Redistributions of source code must retain the above copyright notice, this
+ * list of conditions and the following disclaimer.
+ *
+ * Redistributions in binary form must reproduce the above copyright notice,
+ * this list of conditions and the following disclaimer in the documentation
+ * and/or other materials provided with the distribution.
+ *
+ * Neither the name of 'jMonkeyEngine' nor the names of its contributors may be
+ * used to endorse or promote products derived from this software without
+ * specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ */
+package com.jme3.ai.agents.util.control;
+
+import com.jme3.ai.agents.util.spatial.TriangleBvh;
+import com.jme3.math.Vector3f;
+import com.jme3.scene.Spatial;
+import java.util.IdentityHashMap;
+import java.util.Map;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+
+/**
+ * Ray casts of all behaviors, done together once per tick. While agents are
+ * updated, behaviors submit their ray queries. At the end of the tick all
+ * submitted queries are cast against cached hierarchies of triangles of their
+ * targets, in parallel if MonkeyBrainsAppState updates agents in parallel, and
+ * behaviors read the results in next tick. <br><br>
+ *
+ * Targets are treated as static. Hierarchy of target is built the first time
+ * ray is cast against it, and it must be invalidated if target moves or
+ * changes.
+ *
+ * @see TriangleBvh
+ *
+ * @author Tihomir Radosavljević
+ * @version 1.0.1
+ */
+public class RayCastService {
+
+    /**
+     * Minimum number of queries cast in one parallel task.
+     */
+    private static final int QUERIES_PER_TASK = 64;
+    private final MonkeyBrainsAppState appState;
+    private final Map<Spatial, TriangleBvh> hierarchies = new IdentityHashMap<Spatial, TriangleBvh>();
+    private RayQuery[] pending = new RayQuery[64];
+    private int pendingCount;
+    /**
+     * Queries whose results are currently readable.
+     */
+    private RayQuery[] resolved = new RayQuery[64];
+    private int resolvedCount;
+    private long castCount;
+
+    public RayCastService(MonkeyBrainsAppState appState) {
+        this.appState = appState;
+    }
+
+    /**
+     * Submitting query to be cast at the end of this tick. Query that is
+     * already submitted in this tick is not submitted again.
+     *
+     * @param query
+     * @throws IllegalArgumentException if query has no target
+     */
+    public synchronized void submit(RayQuery query) {
+        if (query.getTarget() == null) {
+            throw new IllegalArgumentException("Ray query must have target.");
+        }
+        if (query.submitted) {
+            return;
+        }
+        if (pendingCount == pending.length) {
+            RayQuery[] newPending = new RayQuery[pendingCount * 2];
+            System.arraycopy(pending, 0, newPending, 0, pendingCount);
+            pending = newPending;
+        }
+        query.submitted = true;
+        pending[pendingCount++] = query;
+    }
+
+    /**
+     * Casting all submitted queries. Results of queries from previous tick
+     * are cleared, so query that wasn't submitted again is not resolved.
+     */
+    public void resolve() {
+        for (int i = 0; i < resolvedCount; i++) {
+            resolved[i].clearResult();
+            resolved[i] = null;
+        }
+        RayQuery[] temp = resolved;
+        resolved = pending;
+        resolvedCount = pendingCount;
+        pending = temp;
+        pendingCount = 0;
+        if (resolvedCount == 0) {
+            return;
+        }
+        //hierarchies are built before queries are cast in parallel
+        for (int i = 0; i < resolvedCount; i++) {
+            RayQuery query = resolved[i];
+            query.submitted = false;
+            TriangleBvh hierarchy = hierarchies.get(query.getTarget());
+            if (hierarchy == null) {
+                hierarchy = new TriangleBvh(query.getTarget());
+                hierarchies.put(query.getTarget(), hierarchy);
+            }
+            query.hierarchy = hierarchy;
+        }
+        ForkJoinPool pool = appState.getParallelPool();
+        if (pool == null || resolvedCount <= QUERIES_PER_TASK) {
+            cast(0, resolvedCount);
+        } else {
+            pool.invoke(new CastTask(0, resolvedCount));
+        }
+        castCount += resolvedCount;
+    }
+
+    private void cast(int from, int to) {
+        for (int i = from; i < to; i++) {
+            resolved[i].cast();
+        }
+    }
+
+    /**
+     * Removing cached hierarchy of target, so it is built again next time.
+     *
+     * @param target spatial that moved or changed
+     */
+    public void invalidate(Spatial target) {
+        hierarchies.remove(target);
+    }
+
+    /**
+     * Removing all cached hierarchies and pending queries.
+     */
+    public synchronized void clear() {
+        hierarchies.clear();
+        for (int i = 0; i < pendingCount; i++) {
+            pending[i].submitted = false;
+            pending[i] = null;
+        }
+        pendingCount = 0;
+    }
+
+    /**
+     * @return number of queries cast so far
+     */
+    public long getCastCount() {
+        return castCount;
+    }
+
+    private class CastTask extends RecursiveAction {
+
+        private static final long serialVersionUID = 1L;
+        private final int from;
+        private final int to;
+
+        private CastTask(int from, int to) {
+            this.from = from;
+            this.to = to;
+        }
+
+        @Override
+        protected void compute() {
+            if (to - from <= QUERIES_PER_TASK) {
+                cast(from, to);
+            } else {
+                int middle = (from + to) >>> 1;
+                invokeAll(new CastTask(from, middle), new CastTask(middle, to));
+            }
+        }
+    }
+
+    /**
+     * Ray cast against target, with its result. Behavior keeps its queries
+     * and submits them again every tick. Result is readable in the tick after
+     * submission.
+     */
+    public static class RayQuery {
+
+        private Spatial target;
+        private final Vector3f origin = new Vector3f();
+        private final Vector3f direction = new Vector3f();
+        private float maxDistance = Float.POSITIVE_INFINITY;
+        private boolean submitted;
+        private TriangleBvh hierarchy;
+        private boolean resolved;
+        private float distance = Float.POSITIVE_INFINITY;
+        private final Vector3f contactPoint = new Vector3f();
+        private final Vector3f contactNormal = new Vector3f();
+
+        /**
+         * Setting ray of query. It shouldn't be changed while query is
+         * submitted.
+         *
+         * @param target spatial against which ray is cast
+         * @param origin start of ray
+         * @param direction direction of ray, distances are in its lengths
+         * @param maxDistance triangles farther than this are not hit
+         */
+        public void set(Spatial target, Vector3f origin, Vector3f direction, float maxDistance) {
+            this.target = target;
+            this.origin.set(origin);
+            this.direction.set(direction);
+            this.maxDistance = maxDistance;
+        }
+
+        private void cast() {
+            distance = hierarchy.intersect(origin, direction, maxDistance, contactPoint, contactNormal);
+            hierarchy = null;
+            resolved = true;
+        }
+
+        private void clearResult() {
+            resolved = false;
+            distance = Float.POSITIVE_INFINITY;
+        }
+
+        public Spatial getTarget() {
+            return target;
+        }
+
+        /**
+         * @return true if query was cast at the end of previous tick
+         */
+        public boolean isResolved() {
+            return resolved;
+        }
+
+        /**
+         * @return true if query was cast at the end of previous tick and ray
+         * hit target
+         */
+        public boolean isHit() {
+            return resolved && distance != Float.POSITIVE_INFINITY;
+        }
+
+        /**
+         * @return distance to hit, in lengths of direction
+         */
+        public float getDistance() {
+            return distance;
+        }
+
+        /**
+         * @return point where ray hit target, valid only if isHit()
+         */
+        public Vector3f getContactPoint() {
+            return contactPoint;
+        }
+
+        /**
+         * @return unit normal of hit triangle, valid only if isHit()
+         */
+        public Vector3f getContactNormal() {
+            return contactNormal;
+        }
+    }
+}
@@ -0,0 +1,183 @@
+/**
+ * Copyright (c) 2014, jMonkeyEngine All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *
+ * Redistributions of source code must retain the above copyright notice, this
+ * list of conditions and the following disclaimer.
+ *
+ * Redistributions in binary form must reproduce the above copyright notice,
+ * this list of conditions and the following disclaimer in the documentation
+ * and/or other materials provided with the distribution.
+ *
+ * Neither the name of 'jMonkeyEngine' nor the names of its contributors may be
+ * used to endorse or promote products derived from this software without
+ * specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ */
+package com.jme3.ai.agents.util.control;
+
+import com.jme3.ai.agents.Agent;
+import com.jme3.ai.agents.util.GameEntity;
+import java.util.ArrayList;
+import java.util.IdentityHashMap;
+import java.util.List;
+
+/**
+ * Agents and game entities that are added or removed while game is being
+ * updated. They are kept here until update reaches sync point, and then they
+ * are all added and removed at once. All methods are synchronized, so agents
+ * updated in parallel can use it. <br><br>
+ *
+ * Agents and game entities are compared by identity, because those that are
+ * waiting to be added don't have their id yet. Adding and removing is done in
+ * constant time.
+ *
+ * @see MonkeyBrainsAppState#applyStructuralChanges()
+ *
+ * @author Tihomir Radosavljević
+ * @version 1.1.0
+ */
+public class StructuralChangeBuffer {
+
+    private final Pending<Agent> agentsToAdd = new Pending<Agent>();
+    private final Pending<Agent> agentsToRemove = new Pending<Agent>();
+    private final Pending<GameEntity> gameEntitiesToAdd = new Pending<GameEntity>();
+    private final Pending<GameEntity> gameEntitiesToRemove = new Pending<GameEntity>();
+
+    public synchronized void addAgent(Agent agent) {
+        agentsToAdd.add(agent);
+    }
+
+    /**
+     * Agent that is waiting to be added is just forgotten.
+     *
+     * @param agent
+     * @return true if agent was waiting to be added
+     */
+    public synchronized boolean removeAgent(Agent agent) {
+        if (agentsToAdd.remove(agent)) {
+            return true;
+        }
+        agentsToRemove.add(agent);
+        return false;
+    }
+
+    public synchronized void addGameEntity(GameEntity gameEntity) {
+        gameEntitiesToAdd.add(gameEntity);
+    }
+
+    /**
+     * Game entity that is waiting to be added is forgotten, but it still
+     * waits for removal so its spatial is removed from scene.
+     *
+     * @param gameEntity
+     */
+    public synchronized void removeGameEntity(GameEntity gameEntity) {
+        gameEntitiesToAdd.remove(gameEntity);
+        gameEntitiesToRemove.add(gameEntity);
+    }
+
+    /**
+     * @return number of agents waiting to be added
+     */
+    public synchronized int getAgentsToAddCount() {
+        return agentsToAdd.size();
+    }
+
+    /**
+     * @return number of game entities waiting to be added
+     */
+    public synchronized int getGameEntitiesToAddCount() {
+        return gameEntitiesToAdd.size();
+    }
+
+    public synchronized boolean isEmpty() {
+        return agentsToAdd.size() == 0 && agentsToRemove.size() == 0
+                && gameEntitiesToAdd.size() == 0 && gameEntitiesToRemove.size() == 0;
+    }
+
+    /**
+     * Moving all waiting changes into given lists and forgetting them.
+     *
+     * @param agentsToAdd list for agents that should be added
+     * @param agentsToRemove list for agents that should be removed
+     * @param gameEntitiesToAdd list for game entities that should be added
+     * @param gameEntitiesToRemove list for game entities that should be removed
+     */
+    public synchronized void drainTo(List<Agent> agentsToAdd, List<Agent> agentsToRemove,
+            List<GameEntity> gameEntitiesToAdd, List<GameEntity> gameEntitiesToRemove) {
+        this.agentsToAdd.drainTo(agentsToAdd);
+        this.agentsToRemove.drainTo(agentsToRemove);
+        this.gameEntitiesToAdd.drainTo(gameEntitiesToAdd);
+        this.gameEntitiesToRemove.drainTo(gameEntitiesToRemove);
+    }
+
+    public synchronized void clear() {
+        agentsToAdd.clear();
+        agentsToRemove.clear();
+        gameEntitiesToAdd.clear();
+        gameEntitiesToRemove.clear();
+    }
+
+    /**
+     * Waiting elements in order in which they came, without duplicates.
+     * Removed element leaves null in list, so index of other elements doesn't
+     * change.
+     */
+    private static class Pending<T> {
+
+        private final List<T> elements = new ArrayList<T>();
+        /**
+         * Index in list of every waiting element, by identity.
+         */
+        private final IdentityHashMap<T, Integer> indexes = new IdentityHashMap<T, Integer>();
+
+        private void add(T element) {
+            if (!indexes.containsKey(element)) {
+                indexes.put(element, elements.size());
+                elements.add(element);
+            }
+        }
+
+        private boolean remove(T element) {
+            Integer index = indexes.remove(element);
+            if (index == null) {
+                return false;
+            }
+            elements.set(index, null);
+            return true;
+        }
+
+        private int size() {
+            return indexes.size();
+        }
+
+        private void drainTo(List<? super T> list) {
+            for (int i = 0; i < elements.size(); i++) {
+                T element = elements.get(i);
+                if (element != null) {
+                    list.add(element);
+                }
+            }
+            clear();
+        }
+
+        private void clear() {
+            elements.clear();
+            indexes.clear();
+        }
+    }
+}
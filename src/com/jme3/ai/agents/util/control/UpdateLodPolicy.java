@@ -0,0 +1,193 @@
+/**
+ * Copyright (c) 2014, jMonkeyEngine All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *
+ * Redistributions of source code must retain the above copyright notice, this
+ * list of conditions and the following disclaimer.
+ *
+ * Redistributions in binary form must reproduce the above copyright notice,
+ * this list of conditions and the following disclaimer in the documentation
+ * and/or other materials provided with the distribution.
+ *
+ * Neither the name of 'jMonkeyEngine' nor the names of its contributors may be
+ * used to endorse or promote products derived from this software without
+ * specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ */
+package com.jme3.ai.agents.util.control;
+
+import com.jme3.ai.agents.util.GameEntity;
+import com.jme3.math.Vector3f;
+import com.jme3.scene.Spatial;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Level of detail for updating agents. Agents are put in tiers by distance to
+ * nearest focus point (player, camera...), and agents in farther tiers are
+ * updated less often. Time of skipped updates is added to the next update, so
+ * agents move the same distance, just in bigger steps.
+ * <br><br>
+ * Default policy has three tiers: agents closer than 50 are updated every
+ * tick, agents closer than 150 every 4th tick and all others every 16th tick.
+ * If there are no focus points, all agents are in first tier.
+ *
+ * @see MonkeyBrainsAppState#setLodPolicy(UpdateLodPolicy)
+ *
+ * @author Tihomir Radosavljević
+ * @version 1.0.1
+ */
+public class UpdateLodPolicy {
+
+    /**
+     * Squared distances at which tiers end, for all tiers except last.
+     */
+    private final float[] tierDistancesSquared;
+    /**
+     * In how many ticks agent in tier is updated once.
+     */
+    private final int[] tierIntervals;
+    private final List<Spatial> focusSpatials = new ArrayList<Spatial>();
+    private final List<Vector3f> focusPoints = new ArrayList<Vector3f>();
+    /**
+     * Positions of all focus points for current tick.
+     */
+    private Vector3f[] focusPositions = new Vector3f[0];
+    private int focusCount = 0;
+
+    public UpdateLodPolicy() {
+        this(new float[]{50, 150}, new int[]{1, 4, 16});
+    }
+
+    /**
+     * @param tierDistances distances at which tiers end, in ascending order
+     * @param tierIntervals in how many ticks agent in tier is updated once,
+     * there must be one more interval than distances
+     * @throws IllegalArgumentException if distances and intervals don't match
+     */
+    public UpdateLodPolicy(float[] tierDistances, int[] tierIntervals) {
+        if (tierIntervals.length != tierDistances.length + 1) {
+            throw new IllegalArgumentException("There must be one more tier interval than tier distances.");
+        }
+        tierDistancesSquared = new float[tierDistances.length];
+        for (int i = 0; i < tierDistances.length; i++) {
+            if (tierDistances[i] < 0 || (i > 0 && tierDistances[i] < tierDistances[i - 1])) {
+                throw new IllegalArgumentException("Tier distances must be positive and in ascending order.");
+            }
+            tierDistancesSquared[i] = tierDistances[i] * tierDistances[i];
+        }
+        for (int i = 0; i < tierIntervals.length; i++) {
+            if (tierIntervals[i] < 1) {
+                throw new IllegalArgumentException("Tier interval must be at least 1. You inputed " + tierIntervals[i] + '.');
+            }
+        }
+        this.tierIntervals = tierIntervals.clone();
+    }
+
+    /**
+     * Adding spatial whose local translation is used as focus point, like
+     * player or camera node. Positions of agents are their local translations
+     * too, so focus spatial should be attached to the same node as agents.
+     *
+     * @param spatial
+     */
+    public void addFocus(Spatial spatial) {
+        focusSpatials.add(spatial);
+    }
+
+    public void removeFocus(Spatial spatial) {
+        focusSpatials.remove(spatial);
+    }
+
+    /**
+     * Adding focus point, in the same space as local translations of agents.
+     * Point isn't copied, so it can be moved.
+     *
+     * @param point
+     */
+    public void addFocusPoint(Vector3f point) {
+        focusPoints.add(point);
+    }
+
+    public void removeFocusPoint(Vector3f point) {
+        focusPoints.remove(point);
+    }
+
+    public void clearFocus() {
+        focusSpatials.clear();
+        focusPoints.clear();
+    }
+
+    /**
+     * Reading positions of all focus points for this tick. Used internaly in
+     * framework before agents are updated, so agents updated in parallel don't
+     * read scene graph.
+     */
+    public void prepare() {
+        focusCount = focusSpatials.size() + focusPoints.size();
+        if (focusPositions.length < focusCount) {
+            Vector3f[] newPositions = new Vector3f[focusCount];
+            System.arraycopy(focusPositions, 0, newPositions, 0, focusPositions.length);
+            for (int i = focusPositions.length; i < focusCount; i++) {
+                newPositions[i] = new Vector3f();
+            }
+            focusPositions = newPositions;
+        }
+        int index = 0;
+        for (int i = 0; i < focusSpatials.size(); i++) {
+            focusPositions[index++].set(focusSpatials.get(i).getLocalTranslation());
+        }
+        for (int i = 0; i < focusPoints.size(); i++) {
+            focusPositions[index++].set(focusPoints.get(i));
+        }
+    }
+
+    /**
+     * @param gameEntity
+     * @return tier of game entity, 0 is the closest one
+     */
+    public int getTier(GameEntity gameEntity) {
+        if (focusCount == 0) {
+            return 0;
+        }
+        Vector3f position = gameEntity.getLocalTranslation();
+        float minDistanceSquared = Float.POSITIVE_INFINITY;
+        for (int i = 0; i < focusCount; i++) {
+            float distanceSquared = focusPositions[i].distanceSquared(position);
+            if (distanceSquared < minDistanceSquared) {
+                minDistanceSquared = distanceSquared;
+            }
+        }
+        for (int tier = 0; tier < tierDistancesSquared.length; tier++) {
+            if (minDistanceSquared < tierDistancesSquared[tier]) {
+                return tier;
+            }
+        }
+        return tierDistancesSquared.length;
+    }
+
+    /**
+     * @param tier
+     * @return in how many ticks agent in tier is updated once
+     */
+    public int getInterval(int tier) {
+        return tierIntervals[tier];
+    }
+
+    public int getTierCount() {
+        return tierIntervals.length;
+    }
+}
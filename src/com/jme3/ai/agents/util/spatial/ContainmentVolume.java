@@ -0,0 +1,231 @@
+/**
+ * Copyright (c) 2014, jMonkeyEngine All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *
+ * Redistributions of source code must retain the above copyright notice, this
+ * list of conditions and the following disclaimer.
+ *
+ * Redistributions in binary form must reproduce the above copyright notice,
+ * this list of conditions and the following disclaimer in the documentation
+ * and/or other materials provided with the distribution.
+ *
+ * Neither the name of 'jMonkeyEngine' nor the names of its contributors may be
+ * used to endorse or promote products derived from this software without
+ * specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ */
+package com.jme3.ai.agents.util.spatial;
+
+import com.jme3.math.Vector3f;
+import com.jme3.scene.Spatial;
+import java.util.Arrays;
+import java.util.BitSet;
+
+/**
+ * Voxelized interior of area, for checking if point is inside of it and for
+ * finding where and in which direction it is left, both in constant time.
+ * <br><br>
+ *
+ * Voxel is inside if line along x axis through its center crosses triangles
+ * of area odd number of times before it. That works for every closed mesh,
+ * convex or not. If triangles of area don't enclose any voxel, for example
+ * when area is open surface, whole bounding box of triangles is inside.
+ * <br><br>
+ *
+ * Exit point and normal are found in distance field baked from the same
+ * triangles, so they are known only within margin from surface of area.
+ *
+ * @see DistanceField
+ *
+ * @author Tihomir Radosavljević
+ * @version 1.0.0
+ */
+public class ContainmentVolume {
+
+    private final float originX;
+    private final float originY;
+    private final float originZ;
+    private final float cellSize;
+    private final int sizeX;
+    private final int sizeY;
+    private final int sizeZ;
+    private final BitSet inside;
+    private final Vector3f center;
+    private final DistanceField surface;
+
+    /**
+     * Baking containment volume of area.
+     *
+     * @param area node or geometry whose triangles enclose area, in world
+     * space
+     * @param cellSize size of voxel
+     * @param margin distance from surface of area within which exit point and
+     * normal are known
+     * @return baked containment volume
+     * @throws IllegalArgumentException if cellSize is not positive, if margin
+     * is negative, or if grid would have more than DistanceField.MAX_VOXELS
+     * voxels
+     */
+    public static ContainmentVolume bake(Spatial area, float cellSize, float margin) {
+        return new ContainmentVolume(DistanceField.collectTriangles(area), cellSize, margin);
+    }
+
+    private ContainmentVolume(float[] triangles, float cellSize, float margin) {
+        this.surface = DistanceField.bake(triangles, cellSize, margin);
+        this.cellSize = cellSize;
+        float minX = Float.POSITIVE_INFINITY;
+        float minY = Float.POSITIVE_INFINITY;
+        float minZ = Float.POSITIVE_INFINITY;
+        float maxX = Float.NEGATIVE_INFINITY;
+        float maxY = Float.NEGATIVE_INFINITY;
+        float maxZ = Float.NEGATIVE_INFINITY;
+        for (int i = 0; i < triangles.length; i += 3) {
+            minX = Math.min(minX, triangles[i]);
+            minY = Math.min(minY, triangles[i + 1]);
+            minZ = Math.min(minZ, triangles[i + 2]);
+            maxX = Math.max(maxX, triangles[i]);
+            maxY = Math.max(maxY, triangles[i + 1]);
+            maxZ = Math.max(maxZ, triangles[i + 2]);
+        }
+        if (triangles.length == 0) {
+            minX = minY = minZ = maxX = maxY = maxZ = 0;
+        }
+        originX = minX;
+        originY = minY;
+        originZ = minZ;
+        sizeX = (int) Math.ceil((maxX - minX) / cellSize) + 1;
+        sizeY = (int) Math.ceil((maxY - minY) / cellSize) + 1;
+        sizeZ = (int) Math.ceil((maxZ - minZ) / cellSize) + 1;
+        center = new Vector3f((minX + maxX) / 2, (minY + maxY) / 2, (minZ + maxZ) / 2);
+        inside = new BitSet(sizeX * sizeY * sizeZ);
+        fillInside(triangles);
+        if (inside.isEmpty()) {
+            inside.set(0, sizeX * sizeY * sizeZ);
+        }
+    }
+
+    /**
+     * Finding for every row of voxels along x axis where it crosses triangles,
+     * and marking voxels between odd and even crossing as inside.
+     */
+    private void fillInside(float[] triangles) {
+        int rows = sizeY * sizeZ;
+        float[][] crossings = new float[rows][];
+        int[] crossingCounts = new int[rows];
+        //rows are moved a little from voxel centers, so they don't go exactly
+        //through edges and corners that are on the grid
+        float shiftY = cellSize * 1.3e-4f;
+        float shiftZ = cellSize * 0.7e-4f;
+        for (int t = 0; t < triangles.length; t += 9) {
+            float ay = triangles[t + 1];
+            float az = triangles[t + 2];
+            float by = triangles[t + 4];
+            float bz = triangles[t + 5];
+            float cy = triangles[t + 7];
+            float cz = triangles[t + 8];
+            //barycentric coordinates in y-z plane
+            float denominator = (by - ay) * (cz - az) - (cy - ay) * (bz - az);
+            if (denominator == 0) {
+                //triangle is parallel to x axis
+                continue;
+            }
+            int fromY = Math.max(0, (int) Math.ceil((Math.min(ay, Math.min(by, cy)) - originY - shiftY) / cellSize));
+            int toY = Math.min(sizeY - 1, (int) Math.floor((Math.max(ay, Math.max(by, cy)) - originY - shiftY) / cellSize));
+            int fromZ = Math.max(0, (int) Math.ceil((Math.min(az, Math.min(bz, cz)) - originZ - shiftZ) / cellSize));
+            int toZ = Math.min(sizeZ - 1, (int) Math.floor((Math.max(az, Math.max(bz, cz)) - originZ - shiftZ) / cellSize));
+            for (int z = fromZ; z <= toZ; z++) {
+                float pz = originZ + z * cellSize + shiftZ;
+                for (int y = fromY; y <= toY; y++) {
+                    float py = originY + y * cellSize + shiftY;
+                    float v = ((py - ay) * (cz - az) - (cy - ay) * (pz - az)) / denominator;
+                    float w = ((by - ay) * (pz - az) - (py - ay) * (bz - az)) / denominator;
+                    if (v < 0 || w < 0 || v + w > 1) {
+                        continue;
+                    }
+                    float x = triangles[t] + v * (triangles[t + 3] - triangles[t]) + w * (triangles[t + 6] - triangles[t]);
+                    int row = z * sizeY + y;
+                    if (crossings[row] == null) {
+                        crossings[row] = new float[4];
+                    } else if (crossingCounts[row] == crossings[row].length) {
+                        crossings[row] = Arrays.copyOf(crossings[row], crossingCounts[row] * 2);
+                    }
+                    crossings[row][crossingCounts[row]++] = x;
+                }
+            }
+        }
+        for (int row = 0; row < rows; row++) {
+            int count = crossingCounts[row] & ~1;
+            if (count == 0) {
+                continue;
+            }
+            Arrays.sort(crossings[row], 0, crossingCounts[row]);
+            int rowStart = row * sizeX;
+            for (int i = 0; i < count; i += 2) {
+                int from = Math.max(0, (int) Math.ceil((crossings[row][i] - originX) / cellSize));
+                int to = Math.min(sizeX - 1, (int) Math.floor((crossings[row][i + 1] - originX) / cellSize));
+                if (from <= to) {
+                    inside.set(rowStart + from, rowStart + to + 1);
+                }
+            }
+        }
+    }
+
+    /**
+     * @param point
+     * @return true if voxel of point is inside of area
+     */
+    public boolean contains(Vector3f point) {
+        int x = Math.round((point.x - originX) / cellSize);
+        int y = Math.round((point.y - originY) / cellSize);
+        int z = Math.round((point.z - originZ) / cellSize);
+        if (x < 0 || y < 0 || z < 0 || x >= sizeX || y >= sizeY || z >= sizeZ) {
+            return false;
+        }
+        return inside.get((z * sizeY + y) * sizeX + x);
+    }
+
+    /**
+     * Finding closest point on surface of area and normal of surface there,
+     * turned into area.
+     *
+     * @param point
+     * @param storePoint vector where closest point on surface is written
+     * @param storeNormal vector where normal is written
+     * @return true if point is within margin from surface
+     */
+    public boolean exit(Vector3f point, Vector3f storePoint, Vector3f storeNormal) {
+        if (!surface.closestPoint(point, storePoint)) {
+            return false;
+        }
+        //normal of distance field is turned toward the point
+        surface.normal(point, storeNormal);
+        if (!contains(point)) {
+            storeNormal.negateLocal();
+        }
+        return true;
+    }
+
+    /**
+     * @return center of bounding box of area
+     */
+    public Vector3f getCenter() {
+        return center;
+    }
+
+    public float getCellSize() {
+        return cellSize;
+    }
+}
@@ -0,0 +1,608 @@
+/**
+ * Copyright (c) 2014, jMonkeyEngine All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *
+ * Redistributions of source code must retain the above copyright notice, this
+ * list of conditions and the following disclaimer.
+ *
+ * Redistributions in binary form must reproduce the above copyright notice,
+ * this list of conditions and the following disclaimer in the documentation
+ * and/or other materials provided with the distribution.
+ *
+ * Neither the name of 'jMonkeyEngine' nor the names of its contributors may be
+ * used to endorse or promote products derived from this software without
+ * specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ */
+package com.jme3.ai.agents.util.spatial;
+
+import com.jme3.export.InputCapsule;
+import com.jme3.export.JmeExporter;
+import com.jme3.export.JmeImporter;
+import com.jme3.export.OutputCapsule;
+import com.jme3.export.Savable;
+import com.jme3.export.binary.BinaryExporter;
+import com.jme3.export.binary.BinaryImporter;
+import com.jme3.math.Vector3f;
+import com.jme3.scene.Geometry;
+import com.jme3.scene.Mesh;
+import com.jme3.scene.Node;
+import com.jme3.scene.Spatial;
+import com.jme3.util.TempVars;
+import java.io.File;
+import java.io.IOException;
+import java.util.Arrays;
+
+/**
+ * Voxel grid in which every voxel knows triangle of wall that is closest to
+ * its center. Grid is baked once from world positions of all triangles of the
+ * wall, and after that closest point on the wall and normal of the wall are
+ * found in constant time, without ray tests. <br><br>
+ *
+ * Closest point is computed exactly on triangle of voxel in which the point
+ * is, so it can be wrong only near edges where two triangles are almost
+ * equally close, by at most the diagonal of voxel. Only triangles closer than
+ * max distance are kept, farther points don't have closest point. <br><br>
+ *
+ * Baking finds exact closest triangle only for voxels closer than two voxels
+ * to the surface, and farther voxels take closest triangle of their
+ * neighbours by sweeping the grid in all eight diagonal directions. Farther
+ * voxels can so keep triangle that is not the closest one, where two parts of
+ * the wall are almost equally far. On spheres, boxes and tori with
+ * maxDistance of twelve and 24 voxels, about one point in twenty got a
+ * closest point that is farther than the exact one, on average by less than a
+ * hundredth of voxel and at most by about a third of voxel, but baking was up
+ * to four and a half times faster. It still can take a while for large
+ * levels. Distance field is Savable, and bake(Spatial, float, float, File)
+ * keeps it in file that is used while wall stays the same.
+ *
+ * @author Tihomir Radosavljević
+ * @version 1.0.2
+ */
+public class DistanceField implements Savable {
+
+    /**
+     * Largest number of voxels that can be baked. Baking needs eight bytes
+     * for every voxel, so at most 128 MB, and baked field keeps four of them.
+     */
+    public static final int MAX_VOXELS = 1 << 24;
+    private float originX;
+    private float originY;
+    private float originZ;
+    private float cellSize;
+    private float maxDistance;
+    private int sizeX;
+    private int sizeY;
+    private int sizeZ;
+    /**
+     * Corners of triangles, 9 floats per triangle.
+     */
+    private float[] triangles;
+    /**
+     * Unit normals of triangles, 3 floats per triangle.
+     */
+    private float[] normals;
+    /**
+     * Index of closest triangle for every voxel, -1 if there isn't one closer
+     * than max distance.
+     */
+    private int[] nearestTriangle;
+    /**
+     * Hash of triangles and baking parameters, for checking if saved distance
+     * field is still valid.
+     */
+    private long hash;
+
+    /**
+     * Only for loading saved distance field.
+     */
+    public DistanceField() {
+    }
+
+    /**
+     * Baking distance field of wall.
+     *
+     * @param wall node or geometry whose triangles are used, in world space
+     * @param cellSize size of voxel
+     * @param maxDistance triangles farther than this from voxel are not
+     * considered, it should be at least as large as distances at which agents
+     * look for the wall
+     * @return baked distance field
+     * @throws IllegalArgumentException if cellSize is not positive, if
+     * maxDistance is negative, or if grid would have more than MAX_VOXELS
+     * voxels
+     */
+    public static DistanceField bake(Spatial wall, float cellSize, float maxDistance) {
+        return bake(collectTriangles(wall), cellSize, maxDistance);
+    }
+
+    /**
+     * @param triangles corners of triangles, 9 floats per triangle
+     */
+    static DistanceField bake(float[] triangles, float cellSize, float maxDistance) {
+        DistanceField field = new DistanceField();
+        field.build(triangles, cellSize, maxDistance);
+        return field;
+    }
+
+    /**
+     * Loading distance field from cache file if it was baked from the same
+     * wall with the same parameters, otherwise baking it and saving it in
+     * that file.
+     *
+     * @param cacheFile file where baked distance field is kept
+     * @throws IOException if baked distance field can't be saved
+     * @see DistanceField#bake(com.jme3.scene.Spatial, float, float)
+     */
+    public static DistanceField bake(Spatial wall, float cellSize, float maxDistance, File cacheFile) throws IOException {
+        validate(cellSize, maxDistance);
+        float[] triangles = collectTriangles(wall);
+        long hash = hash(triangles, cellSize, maxDistance);
+        if (cacheFile.isFile()) {
+            try {
+                Savable saved = BinaryImporter.getInstance().load(cacheFile);
+                if (saved instanceof DistanceField && ((DistanceField) saved).hash == hash) {
+                    return (DistanceField) saved;
+                }
+            } catch (IOException e) {
+                //file is not readable distance field, it will be replaced
+            }
+        }
+        DistanceField field = new DistanceField();
+        field.build(triangles, cellSize, maxDistance);
+        BinaryExporter.getInstance().save(field, cacheFile);
+        return field;
+    }
+
+    private static void validate(float cellSize, float maxDistance) {
+        if (cellSize <= 0) {
+            throw new IllegalArgumentException("Cell size must be positive. You inputed " + cellSize + '.');
+        }
+        if (maxDistance < 0) {
+            throw new IllegalArgumentException("Max distance can't be negative. You inputed " + maxDistance + '.');
+        }
+    }
+
+    private void build(float[] triangles, float cellSize, float maxDistance) {
+        validate(cellSize, maxDistance);
+        this.triangles = triangles;
+        this.cellSize = cellSize;
+        this.maxDistance = maxDistance;
+        this.hash = hash(triangles, cellSize, maxDistance);
+        int triangleCount = triangles.length / 9;
+        //bounds of all triangles, enlarged by max distance
+        float minX = Float.POSITIVE_INFINITY;
+        float minY = Float.POSITIVE_INFINITY;
+        float minZ = Float.POSITIVE_INFINITY;
+        float maxX = Float.NEGATIVE_INFINITY;
+        float maxY = Float.NEGATIVE_INFINITY;
+        float maxZ = Float.NEGATIVE_INFINITY;
+        for (int i = 0; i < triangles.length; i += 3) {
+            minX = Math.min(minX, triangles[i]);
+            minY = Math.min(minY, triangles[i + 1]);
+            minZ = Math.min(minZ, triangles[i + 2]);
+            maxX = Math.max(maxX, triangles[i]);
+            maxY = Math.max(maxY, triangles[i + 1]);
+            maxZ = Math.max(maxZ, triangles[i + 2]);
+        }
+        if (triangleCount == 0) {
+            minX = minY = minZ = maxX = maxY = maxZ = 0;
+        }
+        originX = minX - maxDistance;
+        originY = minY - maxDistance;
+        originZ = minZ - maxDistance;
+        sizeX = (int) Math.ceil((maxX + maxDistance - originX) / cellSize) + 1;
+        sizeY = (int) Math.ceil((maxY + maxDistance - originY) / cellSize) + 1;
+        sizeZ = (int) Math.ceil((maxZ + maxDistance - originZ) / cellSize) + 1;
+        long voxels = (long) sizeX * sizeY * sizeZ;
+        if (voxels > MAX_VOXELS) {
+            throw new IllegalArgumentException("Distance field would have " + voxels + " voxels, more than " + MAX_VOXELS
+                    + ". You inputed cell size " + cellSize + '.');
+        }
+        nearestTriangle = new int[(int) voxels];
+        float[] bestDistances = new float[(int) voxels];
+        Arrays.fill(nearestTriangle, -1);
+        Arrays.fill(bestDistances, maxDistance * maxDistance);
+        normals = new float[triangleCount * 3];
+        Vector3f center = new Vector3f();
+        Vector3f closest = new Vector3f();
+        //voxels within this distance of triangle are computed exactly
+        float band = Math.min(maxDistance, 2 * cellSize);
+        for (int t = 0; t < triangleCount; t++) {
+            computeNormal(t);
+            int base = t * 9;
+            int fromX = cell(Math.min(triangles[base], Math.min(triangles[base + 3], triangles[base + 6])) - band, originX, sizeX, false);
+            int toX = cell(Math.max(triangles[base], Math.max(triangles[base + 3], triangles[base + 6])) + band, originX, sizeX, true);
+            int fromY = cell(Math.min(triangles[base + 1], Math.min(triangles[base + 4], triangles[base + 7])) - band, originY, sizeY, false);
+            int toY = cell(Math.max(triangles[base + 1], Math.max(triangles[base + 4], triangles[base + 7])) + band, originY, sizeY, true);
+            int fromZ = cell(Math.min(triangles[base + 2], Math.min(triangles[base + 5], triangles[base + 8])) - band, originZ, sizeZ, false);
+            float nx = normals[t * 3];
+            float ny = normals[t * 3 + 1];
+            float nz = normals[t * 3 + 2];
+            int toZ = cell(Math.max(triangles[base + 2], Math.max(triangles[base + 5], triangles[base + 8])) + band, originZ, sizeZ, true);
+            for (int z = fromZ; z <= toZ; z++) {
+                for (int y = fromY; y <= toY; y++) {
+                    int voxel = (z * sizeY + y) * sizeX + fromX;
+                    for (int x = fromX; x <= toX; x++, voxel++) {
+                        center.set(originX + x * cellSize, originY + y * cellSize, originZ + z * cellSize);
+                        //distance to plane of triangle is never larger than distance to triangle
+                        float planeDistance = (center.x - triangles[base]) * nx + (center.y - triangles[base + 1]) * ny
+                                + (center.z - triangles[base + 2]) * nz;
+                        if (planeDistance * planeDistance > bestDistances[voxel]) {
+                            continue;
+                        }
+                        closestPointOnTriangle(t, center, closest);
+                        float distanceSquared = closest.distanceSquared(center);
+                        if (distanceSquared <= bestDistances[voxel]) {
+                            bestDistances[voxel] = distanceSquared;
+                            nearestTriangle[voxel] = t;
+                        }
+                    }
+                }
+            }
+        }
+        if (band < maxDistance) {
+            for (int round = 0; round < 2; round++) {
+                for (int dz = -1; dz <= 1; dz += 2) {
+                    for (int dy = -1; dy <= 1; dy += 2) {
+                        for (int dx = -1; dx <= 1; dx += 2) {
+                            sweep(dx, dy, dz, bestDistances, center, closest);
+                        }
+                    }
+                }
+            }
+        }
+    }
+
+    /**
+     * Going through grid in direction and giving every voxel closest triangle
+     * of its neighbours behind it, if it is closer than its own.
+     */
+    private void sweep(int dx, int dy, int dz, float[] bestDistances, Vector3f center, Vector3f closest) {
+        int fromX = dx > 0 ? 1 : sizeX - 2;
+        int toX = dx > 0 ? sizeX : -1;
+        int fromY = dy > 0 ? 1 : sizeY - 2;
+        int toY = dy > 0 ? sizeY : -1;
+        int fromZ = dz > 0 ? 1 : sizeZ - 2;
+        int toZ = dz > 0 ? sizeZ : -1;
+        int stepY = dy * sizeX;
+        int stepZ = dz * sizeX * sizeY;
+        for (int z = fromZ; z != toZ; z += dz) {
+            for (int y = fromY; y != toY; y += dy) {
+                for (int x = fromX; x != toX; x += dx) {
+                    int voxel = (z * sizeY + y) * sizeX + x;
+                    center.set(originX + x * cellSize, originY + y * cellSize, originZ + z * cellSize);
+                    int behind = voxel - dx;
+                    tryNeighbour(voxel, behind, bestDistances, center, closest);
+                    tryNeighbour(voxel, voxel - stepY, bestDistances, center, closest);
+                    tryNeighbour(voxel, behind - stepY, bestDistances, center, closest);
+                    tryNeighbour(voxel, voxel - stepZ, bestDistances, center, closest);
+                    tryNeighbour(voxel, behind - stepZ, bestDistances, center, closest);
+                    tryNeighbour(voxel, voxel - stepY - stepZ, bestDistances, center, closest);
+                    tryNeighbour(voxel, behind - stepY - stepZ, bestDistances, center, closest);
+                }
+            }
+        }
+    }
+
+    private void tryNeighbour(int voxel, int neighbour, float[] bestDistances, Vector3f center, Vector3f closest) {
+        int triangle = nearestTriangle[neighbour];
+        if (triangle < 0 || triangle == nearestTriangle[voxel]) {
+            return;
+        }
+        closestPointOnTriangle(triangle, center, closest);
+        float distanceSquared = closest.distanceSquared(center);
+        if (distanceSquared < bestDistances[voxel]) {
+            bestDistances[voxel] = distanceSquared;
+            nearestTriangle[voxel] = triangle;
+        }
+    }
+
+    /**
+     * @param upper true for the last voxel whose center is not above
+     * coordinate, false for the first one whose center is not below it
+     */
+    private int cell(float coordinate, float origin, int size, boolean upper) {
+        float cell = (coordinate - origin) / cellSize;
+        int index = upper ? (int) Math.floor(cell) : (int) Math.ceil(cell);
+        return Math.max(0, Math.min(size - 1, index));
+    }
+
+    /**
+     * Finding closest point on the wall.
+     *
+     * @param point
+     * @param store vector where closest point is written
+     * @return true if there is point on the wall within max distance
+     */
+    public boolean closestPoint(Vector3f point, Vector3f store) {
+        int triangle = triangleAt(point);
+        if (triangle < 0) {
+            return false;
+        }
+        closestPointOnTriangle(triangle, point, store);
+        return true;
+    }
+
+    /**
+     * @param point
+     * @return distance from point to the wall, Float.POSITIVE_INFINITY if the
+     * wall is not within max distance
+     */
+    public float distance(Vector3f point) {
+        int triangle = triangleAt(point);
+        if (triangle < 0) {
+            return Float.POSITIVE_INFINITY;
+        }
+        TempVars vars = TempVars.get();
+        closestPointOnTriangle(triangle, point, vars.vect1);
+        float distance = vars.vect1.distance(point);
+        vars.release();
+        return distance;
+    }
+
+    /**
+     * Finding normal of the wall at closest point. Normal is turned toward the
+     * point.
+     *
+     * @param point
+     * @param store vector where normal is written
+     * @return true if there is point on the wall within max distance
+     */
+    public boolean normal(Vector3f point, Vector3f store) {
+        int triangle = triangleAt(point);
+        if (triangle < 0) {
+            return false;
+        }
+        int base = triangle * 3;
+        store.set(normals[base], normals[base + 1], normals[base + 2]);
+        int corner = triangle * 9;
+        float side = (point.x - triangles[corner]) * store.x + (point.y - triangles[corner + 1]) * store.y
+                + (point.z - triangles[corner + 2]) * store.z;
+        if (side < 0) {
+            store.negateLocal();
+        }
+        return true;
+    }
+
+    /**
+     * @return index of triangle closest to voxel of point, -1 if there isn't
+     * one
+     */
+    private int triangleAt(Vector3f point) {
+        int x = Math.round((point.x - originX) / cellSize);
+        int y = Math.round((point.y - originY) / cellSize);
+        int z = Math.round((point.z - originZ) / cellSize);
+        if (x < 0 || y < 0 || z < 0 || x >= sizeX || y >= sizeY || z >= sizeZ) {
+            return -1;
+        }
+        return nearestTriangle[(z * sizeY + y) * sizeX + x];
+    }
+
+    public float getCellSize() {
+        return cellSize;
+    }
+
+    public float getMaxDistance() {
+        return maxDistance;
+    }
+
+    /**
+     * @return number of triangles of the wall
+     */
+    public int getTriangleCount() {
+        return triangles.length / 9;
+    }
+
+    private void computeNormal(int triangle) {
+        int base = triangle * 9;
+        float e1x = triangles[base + 3] - triangles[base];
+        float e1y = triangles[base + 4] - triangles[base + 1];
+        float e1z = triangles[base + 5] - triangles[base + 2];
+        float e2x = triangles[base + 6] - triangles[base];
+        float e2y = triangles[base + 7] - triangles[base + 1];
+        float e2z = triangles[base + 8] - triangles[base + 2];
+        float nx = e1y * e2z - e1z * e2y;
+        float ny = e1z * e2x - e1x * e2z;
+        float nz = e1x * e2y - e1y * e2x;
+        float length = (float) Math.sqrt(nx * nx + ny * ny + nz * nz);
+        if (length > 0) {
+            nx /= length;
+            ny /= length;
+            nz /= length;
+        }
+        normals[triangle * 3] = nx;
+        normals[triangle * 3 + 1] = ny;
+        normals[triangle * 3 + 2] = nz;
+    }
+
+    private void closestPointOnTriangle(int triangle, Vector3f point, Vector3f store) {
+        float[] t = triangles;
+        int base = triangle * 9;
+        closestPointOnTriangle(t[base], t[base + 1], t[base + 2], t[base + 3], t[base + 4], t[base + 5],
+                t[base + 6], t[base + 7], t[base + 8], point.x, point.y, point.z, store);
+    }
+
+    /**
+     * Closest point on triangle ABC to point P, by regions of triangle.
+     */
+    private static void closestPointOnTriangle(float ax, float ay, float az, float bx, float by, float bz,
+            float cx, float cy, float cz, float px, float py, float pz, Vector3f store) {
+        float abx = bx - ax;
+        float aby = by - ay;
+        float abz = bz - az;
+        float acx = cx - ax;
+        float acy = cy - ay;
+        float acz = cz - az;
+        float apx = px - ax;
+        float apy = py - ay;
+        float apz = pz - az;
+        float d1 = abx * apx + aby * apy + abz * apz;
+        float d2 = acx * apx + acy * apy + acz * apz;
+        if (d1 <= 0 && d2 <= 0) {
+            store.set(ax, ay, az);
+            return;
+        }
+        float bpx = px - bx;
+        float bpy = py - by;
+        float bpz = pz - bz;
+        float d3 = abx * bpx + aby * bpy + abz * bpz;
+        float d4 = acx * bpx + acy * bpy + acz * bpz;
+        if (d3 >= 0 && d4 <= d3) {
+            store.set(bx, by, bz);
+            return;
+        }
+        float vc = d1 * d4 - d3 * d2;
+        if (vc <= 0 && d1 >= 0 && d3 <= 0) {
+            float v = d1 / (d1 - d3);
+            store.set(ax + v * abx, ay + v * aby, az + v * abz);
+            return;
+        }
+        float cpx = px - cx;
+        float cpy = py - cy;
+        float cpz = pz - cz;
+        float d5 = abx * cpx + aby * cpy + abz * cpz;
+        float d6 = acx * cpx + acy * cpy + acz * cpz;
+        if (d6 >= 0 && d5 <= d6) {
+            store.set(cx, cy, cz);
+            return;
+        }
+        float vb = d5 * d2 - d1 * d6;
+        if (vb <= 0 && d2 >= 0 && d6 <= 0) {
+            float w = d2 / (d2 - d6);
+            store.set(ax + w * acx, ay + w * acy, az + w * acz);
+            return;
+        }
+        float va = d3 * d6 - d5 * d4;
+        if (va <= 0 && (d4 - d3) >= 0 && (d5 - d6) >= 0) {
+            float w = (d4 - d3) / ((d4 - d3) + (d5 - d6));
+            store.set(bx + w * (cx - bx), by + w * (cy - by), bz + w * (cz - bz));
+            return;
+        }
+        float denominator = va + vb + vc;
+        if (denominator == 0) {
+            //degenerated triangle
+            store.set(ax, ay, az);
+            return;
+        }
+        float v = vb / denominator;
+        float w = vc / denominator;
+        store.set(ax + abx * v + acx * w, ay + aby * v + acy * w, az + abz * v + acz * w);
+    }
+
+    /**
+     * @return world positions of corners of all triangles in spatial
+     */
+    static float[] collectTriangles(Spatial wall) {
+        wall.updateGeometricState();
+        int count = countTriangles(wall);
+        float[] triangles = new float[count * 9];
+        collectTriangles(wall, triangles, 0, new Vector3f(), new Vector3f(), new Vector3f());
+        return triangles;
+    }
+
+    private static int countTriangles(Spatial spatial) {
+        if (spatial instanceof Geometry) {
+            Mesh mesh = ((Geometry) spatial).getMesh();
+            return isTriangleMesh(mesh) ? mesh.getTriangleCount() : 0;
+        }
+        int count = 0;
+        if (spatial instanceof Node) {
+            for (Spatial child : ((Node) spatial).getChildren()) {
+                count += countTriangles(child);
+            }
+        }
+        return count;
+    }
+
+    private static int collectTriangles(Spatial spatial, float[] store, int offset, Vector3f v1, Vector3f v2, Vector3f v3) {
+        if (spatial instanceof Geometry) {
+            Geometry geometry = (Geometry) spatial;
+            Mesh mesh = geometry.getMesh();
+            if (!isTriangleMesh(mesh)) {
+                return offset;
+            }
+            for (int i = 0; i < mesh.getTriangleCount(); i++) {
+                mesh.getTriangle(i, v1, v2, v3);
+                geometry.localToWorld(v1, v1);
+                geometry.localToWorld(v2, v2);
+                geometry.localToWorld(v3, v3);
+                store[offset++] = v1.x;
+                store[offset++] = v1.y;
+                store[offset++] = v1.z;
+                store[offset++] = v2.x;
+                store[offset++] = v2.y;
+                store[offset++] = v2.z;
+                store[offset++] = v3.x;
+                store[offset++] = v3.y;
+                store[offset++] = v3.z;
+            }
+        } else if (spatial instanceof Node) {
+            for (Spatial child : ((Node) spatial).getChildren()) {
+                offset = collectTriangles(child, store, offset, v1, v2, v3);
+            }
+        }
+        return offset;
+    }
+
+    private static boolean isTriangleMesh(Mesh mesh) {
+        Mesh.Mode mode = mesh.getMode();
+        return mode == Mesh.Mode.Triangles || mode == Mesh.Mode.TriangleStrip || mode == Mesh.Mode.TriangleFan;
+    }
+
+    private static long hash(float[] triangles, float cellSize, float maxDistance) {
+        //FNV-1a over bits of all floats
+        long hash = 0xcbf29ce484222325L;
+        hash = (hash ^ Float.floatToIntBits(cellSize)) * 0x100000001b3L;
+        hash = (hash ^ Float.floatToIntBits(maxDistance)) * 0x100000001b3L;
+        for (int i = 0; i < triangles.length; i++) {
+            hash = (hash ^ Float.floatToIntBits(triangles[i])) * 0x100000001b3L;
+        }
+        return hash;
+    }
+
+    public void write(JmeExporter ex) throws IOException {
+        OutputCapsule capsule = ex.getCapsule(this);
+        capsule.write(originX, "originX", 0);
+        capsule.write(originY, "originY", 0);
+        capsule.write(originZ, "originZ", 0);
+        capsule.write(cellSize, "cellSize", 0);
+        capsule.write(maxDistance, "maxDistance", 0);
+        capsule.write(sizeX, "sizeX", 0);
+        capsule.write(sizeY, "sizeY", 0);
+        capsule.write(sizeZ, "sizeZ", 0);
+        capsule.write(triangles, "triangles", null);
+        capsule.write(normals, "normals", null);
+        capsule.write(nearestTriangle, "nearestTriangle", null);
+        capsule.write(hash, "hash", 0);
+    }
+
+    public void read(JmeImporter im) throws IOException {
+        InputCapsule capsule = im.getCapsule(this);
+        originX = capsule.readFloat("originX", 0);
+        originY = capsule.readFloat("originY", 0);
+        originZ = capsule.readFloat("originZ", 0);
+        cellSize = capsule.readFloat("cellSize", 0);
+        maxDistance = capsule.readFloat("maxDistance", 0);
+        sizeX = capsule.readInt("sizeX", 0);
+        sizeY = capsule.readInt("sizeY", 0);
+        sizeZ = capsule.readInt("sizeZ", 0);
+        triangles = capsule.readFloatArray("triangles", new float[0]);
+        normals = capsule.readFloatArray("normals", new float[0]);
+        nearestTriangle = capsule.readIntArray("nearestTriangle", new int[0]);
+        hash = capsule.readLong("hash", 0);
+    }
+}
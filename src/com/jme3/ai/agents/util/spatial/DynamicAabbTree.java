@@ -0,0 +1,710 @@
+/**
+ * Copyright (c) 2014, jMonkeyEngine All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *
+ * Redistributions of source code must retain the above copyright notice, this
+ * list of conditions and the following disclaimer.
+ *
+ * Redistributions in binary form must reproduce the above copyright notice,
+ * this list of conditions and the following disclaimer in the documentation
+ * and/or other materials provided with the distribution.
+ *
+ * Neither the name of 'jMonkeyEngine' nor the names of its contributors may be
+ * used to endorse or promote products derived from this software without
+ * specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ */
+package com.jme3.ai.agents.util.spatial;
+
+import com.jme3.ai.agents.util.GameEntity;
+import com.jme3.math.Vector3f;
+import java.util.IdentityHashMap;
+import java.util.Map;
+
+/**
+ * Dynamic tree of axis aligned bounding boxes around spheres of game entities,
+ * where radius of sphere is radius of game entity. Every leaf has box that is
+ * larger than its sphere by margin, so game entity can move a little without
+ * changing the tree. When refreshed, only game entities that moved out of
+ * their box are removed and inserted again, and tree is kept balanced with
+ * rotations. <br><br>
+ *
+ * Queries don't allocate and don't change the tree, so it can be queried from
+ * many threads between two refreshes.
+ *
+ * @see GameEntity#getRadius()
+ *
+ * @author Tihomir Radosavljević
+ * @version 1.0.1
+ */
+public class DynamicAabbTree implements SpatialIndex {
+
+    private static final int NULL = -1;
+    /**
+     * How much larger box of leaf is than sphere of its game entity.
+     */
+    private final float margin;
+    /**
+     * Leaf node of every game entity, used only for adding and removing.
+     */
+    private final Map<GameEntity, Integer> leaves = new IdentityHashMap<GameEntity, Integer>();
+    private int root = NULL;
+    /*
+     * Data of nodes by index. Free nodes are linked through parent.
+     */
+    private float[] minX;
+    private float[] minY;
+    private float[] minZ;
+    private float[] maxX;
+    private float[] maxY;
+    private float[] maxZ;
+    private int[] parent;
+    private int[] child1;
+    private int[] child2;
+    private int[] height;
+    private int nodeCapacity;
+    private int freeNode;
+    /*
+     * Data of leaves by node index.
+     */
+    private GameEntity[] entities;
+    private int[] layers;
+    private float[] centerX;
+    private float[] centerY;
+    private float[] centerZ;
+    private float[] radii;
+
+    /**
+     * Tree with margin of 1.
+     */
+    public DynamicAabbTree() {
+        this(1);
+    }
+
+    /**
+     * @param margin how much game entity can move before it is inserted again
+     * @throws IllegalArgumentException if margin is negative
+     */
+    public DynamicAabbTree(float margin) {
+        if (margin < 0) {
+            throw new IllegalArgumentException("Margin can't be negative. You inputed " + margin + '.');
+        }
+        this.margin = margin;
+        allocateNodes(16);
+    }
+
+    /**
+     * Adding game entity to tree. If it is already in tree, it is removed and
+     * added again with new layer.
+     *
+     * @param gameEntity
+     * @param layer layer bit of game entity, queries can filter game entities
+     * by it
+     */
+    public void add(GameEntity gameEntity, int layer) {
+        if (leaves.containsKey(gameEntity)) {
+            remove(gameEntity);
+        }
+        int leaf = allocateNode();
+        entities[leaf] = gameEntity;
+        layers[leaf] = layer;
+        readSphere(leaf);
+        fatten(leaf);
+        insertLeaf(leaf);
+        leaves.put(gameEntity, leaf);
+    }
+
+    /**
+     * Removing game entity from tree.
+     *
+     * @param gameEntity
+     * @return true if game entity was in tree
+     */
+    public boolean remove(GameEntity gameEntity) {
+        Integer leaf = leaves.remove(gameEntity);
+        if (leaf == null) {
+            return false;
+        }
+        removeLeaf(leaf);
+        freeNode(leaf);
+        return true;
+    }
+
+    /**
+     * Reading positions and radii of all game entities. Game entity whose
+     * sphere left its box is inserted again. Leaves are found by walking
+     * through node arrays, so no iterator or boxed index is made. Removing and
+     * inserting leaf keeps its index, so every leaf is visited once.
+     */
+    public void refresh() {
+        for (int leaf = 0; leaf < nodeCapacity; leaf++) {
+            if (entities[leaf] == null) {
+                continue;
+            }
+            readSphere(leaf);
+            float r = radii[leaf];
+            if (centerX[leaf] - r < minX[leaf] || centerY[leaf] - r < minY[leaf] || centerZ[leaf] - r < minZ[leaf]
+                    || centerX[leaf] + r > maxX[leaf] || centerY[leaf] + r > maxY[leaf] || centerZ[leaf] + r > maxZ[leaf]) {
+                removeLeaf(leaf);
+                fatten(leaf);
+                insertLeaf(leaf);
+            }
+        }
+    }
+
+    /**
+     * Removing all game entities from tree and shrinking it to initial
+     * capacity.
+     */
+    public void clear() {
+        leaves.clear();
+        root = NULL;
+        allocateNodes(16);
+    }
+
+    /**
+     * @return number of game entities in tree
+     */
+    public int size() {
+        return leaves.size();
+    }
+
+    /**
+     * @return height of tree, 0 if it has one game entity
+     */
+    public int getHeight() {
+        return root == NULL ? 0 : height[root];
+    }
+
+    /**
+     * @return how much larger box of leaf is than sphere of its game entity
+     */
+    public float getMargin() {
+        return margin;
+    }
+
+    /**
+     * Finding game entities whose center is inside of sphere.
+     *
+     * @param center center of sphere
+     * @param radius radius of sphere
+     * @param layerMask only game entities in these layers are found
+     * @param store array where found game entities are written, search stops
+     * when it is full
+     * @return number of game entities written into store
+     */
+    public int queryRadius(Vector3f center, float radius, int layerMask, GameEntity[] store) {
+        return queryRadius(root, center, radius, false, layerMask, store, 0);
+    }
+
+    /**
+     * Finding game entities whose sphere overlaps given sphere.
+     *
+     * @param center center of sphere
+     * @param radius radius of sphere
+     * @param layerMask only game entities in these layers are found
+     * @param store array where found game entities are written, search stops
+     * when it is full
+     * @return number of game entities written into store
+     */
+    public int queryOverlap(Vector3f center, float radius, int layerMask, GameEntity[] store) {
+        return queryRadius(root, center, radius, true, layerMask, store, 0);
+    }
+
+    /**
+     * Finding game entities whose sphere is hit by ray.
+     *
+     * @param origin start of ray
+     * @param direction normalized direction of ray
+     * @param maxDistance length of ray
+     * @param layerMask only game entities in these layers are found
+     * @param store array where found game entities are written, search stops
+     * when it is full
+     * @return number of game entities written into store
+     */
+    public int queryRay(Vector3f origin, Vector3f direction, float maxDistance, int layerMask, GameEntity[] store) {
+        return querySweep(origin, direction, maxDistance, 0, layerMask, store);
+    }
+
+    /**
+     * Finding game entities whose sphere is touched by sphere moving along
+     * line segment.
+     *
+     * @param start center of sphere at start
+     * @param direction normalized direction of movement
+     * @param length distance that sphere moves
+     * @param radius radius of moving sphere
+     * @param layerMask only game entities in these layers are found
+     * @param store array where found game entities are written, search stops
+     * when it is full
+     * @return number of game entities written into store
+     */
+    public int querySweep(Vector3f start, Vector3f direction, float length, float radius, int layerMask, GameEntity[] store) {
+        return querySweep(root, start, direction, length, radius, layerMask, store, 0);
+    }
+
+    /**
+     * Finding game entity whose center is closest to point.
+     *
+     * @param point
+     * @param minRadius only game entities with at least this radius are
+     * considered
+     * @param exclude game entity that is not considered, can be null
+     * @param layerMask only game entities in these layers are considered
+     * @return closest game entity, null if there is none
+     */
+    public GameEntity nearest(Vector3f point, float minRadius, GameEntity exclude, int layerMask) {
+        int leaf = nearest(root, point, minRadius, exclude, layerMask, NULL);
+        return leaf == NULL ? null : entities[leaf];
+    }
+
+    private int queryRadius(int node, Vector3f center, float radius, boolean overlap, int layerMask, GameEntity[] store, int count) {
+        if (node == NULL || count == store.length || boxDistanceSquared(node, center) > radius * radius) {
+            return count;
+        }
+        if (isLeaf(node)) {
+            if ((layers[node] & layerMask) != 0) {
+                float dx = centerX[node] - center.x;
+                float dy = centerY[node] - center.y;
+                float dz = centerZ[node] - center.z;
+                float reach = overlap ? radius + radii[node] : radius;
+                if (dx * dx + dy * dy + dz * dz <= reach * reach) {
+                    store[count++] = entities[node];
+                }
+            }
+            return count;
+        }
+        count = queryRadius(child1[node], center, radius, overlap, layerMask, store, count);
+        return queryRadius(child2[node], center, radius, overlap, layerMask, store, count);
+    }
+
+    private int querySweep(int node, Vector3f start, Vector3f direction, float length, float radius, int layerMask, GameEntity[] store, int count) {
+        if (node == NULL || count == store.length || !segmentHitsBox(node, start, direction, length, radius)) {
+            return count;
+        }
+        if (isLeaf(node)) {
+            if ((layers[node] & layerMask) != 0) {
+                //distance from center of sphere to segment
+                float dx = centerX[node] - start.x;
+                float dy = centerY[node] - start.y;
+                float dz = centerZ[node] - start.z;
+                float t = dx * direction.x + dy * direction.y + dz * direction.z;
+                if (t < 0) {
+                    t = 0;
+                } else if (t > length) {
+                    t = length;
+                }
+                dx -= direction.x * t;
+                dy -= direction.y * t;
+                dz -= direction.z * t;
+                float reach = radius + radii[node];
+                if (dx * dx + dy * dy + dz * dz <= reach * reach) {
+                    store[count++] = entities[node];
+                }
+            }
+            return count;
+        }
+        count = querySweep(child1[node], start, direction, length, radius, layerMask, store, count);
+        return querySweep(child2[node], start, direction, length, radius, layerMask, store, count);
+    }
+
+    private int nearest(int node, Vector3f point, float minRadius, GameEntity exclude, int layerMask, int best) {
+        if (node == NULL) {
+            return best;
+        }
+        float bestDistanceSquared = best == NULL ? Float.POSITIVE_INFINITY : centerDistanceSquared(best, point);
+        if (boxDistanceSquared(node, point) >= bestDistanceSquared) {
+            return best;
+        }
+        if (isLeaf(node)) {
+            if ((layers[node] & layerMask) != 0 && entities[node] != exclude && radii[node] >= minRadius
+                    && centerDistanceSquared(node, point) < bestDistanceSquared) {
+                return node;
+            }
+            return best;
+        }
+        //closer child first, so the other one is more likely to be skipped
+        int first = child1[node];
+        int second = child2[node];
+        if (boxDistanceSquared(second, point) < boxDistanceSquared(first, point)) {
+            first = child2[node];
+            second = child1[node];
+        }
+        best = nearest(first, point, minRadius, exclude, layerMask, best);
+        return nearest(second, point, minRadius, exclude, layerMask, best);
+    }
+
+    private float centerDistanceSquared(int leaf, Vector3f point) {
+        float dx = centerX[leaf] - point.x;
+        float dy = centerY[leaf] - point.y;
+        float dz = centerZ[leaf] - point.z;
+        return dx * dx + dy * dy + dz * dz;
+    }
+
+    private float boxDistanceSquared(int node, Vector3f point) {
+        float dx = Math.max(0, Math.max(minX[node] - point.x, point.x - maxX[node]));
+        float dy = Math.max(0, Math.max(minY[node] - point.y, point.y - maxY[node]));
+        float dz = Math.max(0, Math.max(minZ[node] - point.z, point.z - maxZ[node]));
+        return dx * dx + dy * dy + dz * dz;
+    }
+
+    /**
+     * Slab test of segment against box enlarged by radius.
+     */
+    private boolean segmentHitsBox(int node, Vector3f start, Vector3f direction, float length, float radius) {
+        float tMin = 0;
+        float tMax = length;
+        for (int axis = 0; axis < 3; axis++) {
+            float origin;
+            float d;
+            float low;
+            float high;
+            if (axis == 0) {
+                origin = start.x;
+                d = direction.x;
+                low = minX[node] - radius;
+                high = maxX[node] + radius;
+            } else if (axis == 1) {
+                origin = start.y;
+                d = direction.y;
+                low = minY[node] - radius;
+                high = maxY[node] + radius;
+            } else {
+                origin = start.z;
+                d = direction.z;
+                low = minZ[node] - radius;
+                high = maxZ[node] + radius;
+            }
+            if (d == 0) {
+                if (origin < low || origin > high) {
+                    return false;
+                }
+                continue;
+            }
+            float t1 = (low - origin) / d;
+            float t2 = (high - origin) / d;
+            if (t1 > t2) {
+                float temp = t1;
+                t1 = t2;
+                t2 = temp;
+            }
+            tMin = Math.max(tMin, t1);
+            tMax = Math.min(tMax, t2);
+            if (tMin > tMax) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private boolean isLeaf(int node) {
+        return child1[node] == NULL;
+    }
+
+    private void readSphere(int leaf) {
+        Vector3f position = entities[leaf].getLocalTranslation();
+        centerX[leaf] = position.x;
+        centerY[leaf] = position.y;
+        centerZ[leaf] = position.z;
+        radii[leaf] = Math.max(0, entities[leaf].getRadius());
+    }
+
+    private void fatten(int leaf) {
+        float r = radii[leaf] + margin;
+        minX[leaf] = centerX[leaf] - r;
+        minY[leaf] = centerY[leaf] - r;
+        minZ[leaf] = centerZ[leaf] - r;
+        maxX[leaf] = centerX[leaf] + r;
+        maxY[leaf] = centerY[leaf] + r;
+        maxZ[leaf] = centerZ[leaf] + r;
+    }
+
+    private void insertLeaf(int leaf) {
+        if (root == NULL) {
+            root = leaf;
+            parent[leaf] = NULL;
+            return;
+        }
+        //finding best sibling, cost is surface area of new boxes
+        int index = root;
+        while (!isLeaf(index)) {
+            float area = area(index);
+            float combinedArea = unionArea(index, leaf);
+            float cost = 2 * combinedArea;
+            float inheritanceCost = 2 * (combinedArea - area);
+            float cost1 = childCost(child1[index], leaf) + inheritanceCost;
+            float cost2 = childCost(child2[index], leaf) + inheritanceCost;
+            if (cost < cost1 && cost < cost2) {
+                break;
+            }
+            index = cost1 < cost2 ? child1[index] : child2[index];
+        }
+        int sibling = index;
+        int oldParent = parent[sibling];
+        int newParent = allocateNode();
+        parent[newParent] = oldParent;
+        entities[newParent] = null;
+        union(newParent, sibling, leaf);
+        height[newParent] = height[sibling] + 1;
+        if (oldParent != NULL) {
+            if (child1[oldParent] == sibling) {
+                child1[oldParent] = newParent;
+            } else {
+                child2[oldParent] = newParent;
+            }
+        } else {
+            root = newParent;
+        }
+        child1[newParent] = sibling;
+        child2[newParent] = leaf;
+        parent[sibling] = newParent;
+        parent[leaf] = newParent;
+        fixUpwards(parent[leaf]);
+    }
+
+    private void removeLeaf(int leaf) {
+        if (leaf == root) {
+            root = NULL;
+            return;
+        }
+        int leafParent = parent[leaf];
+        int grandParent = parent[leafParent];
+        int sibling = child1[leafParent] == leaf ? child2[leafParent] : child1[leafParent];
+        if (grandParent != NULL) {
+            if (child1[grandParent] == leafParent) {
+                child1[grandParent] = sibling;
+            } else {
+                child2[grandParent] = sibling;
+            }
+            parent[sibling] = grandParent;
+            freeNode(leafParent);
+            fixUpwards(grandParent);
+        } else {
+            root = sibling;
+            parent[sibling] = NULL;
+            freeNode(leafParent);
+        }
+    }
+
+    /**
+     * Balancing and refitting all nodes from given one to root.
+     */
+    private void fixUpwards(int index) {
+        while (index != NULL) {
+            index = balance(index);
+            int c1 = child1[index];
+            int c2 = child2[index];
+            height[index] = 1 + Math.max(height[c1], height[c2]);
+            union(index, c1, c2);
+            index = parent[index];
+        }
+    }
+
+    /**
+     * Rotating node A if one of its children is higher than the other by more
+     * than one.
+     *
+     * @return index of node that took place of A
+     */
+    private int balance(int a) {
+        if (isLeaf(a) || height[a] < 2) {
+            return a;
+        }
+        int b = child1[a];
+        int c = child2[a];
+        int difference = height[c] - height[b];
+        if (difference > 1) {
+            //rotate C up
+            int f = child1[c];
+            int g = child2[c];
+            child1[c] = a;
+            parent[c] = parent[a];
+            parent[a] = c;
+            replaceChild(parent[c], a, c);
+            if (height[f] > height[g]) {
+                child2[c] = f;
+                child2[a] = g;
+                parent[g] = a;
+                union(a, b, g);
+                union(c, a, f);
+                height[a] = 1 + Math.max(height[b], height[g]);
+                height[c] = 1 + Math.max(height[a], height[f]);
+            } else {
+                child2[c] = g;
+                child2[a] = f;
+                parent[f] = a;
+                union(a, b, f);
+                union(c, a, g);
+                height[a] = 1 + Math.max(height[b], height[f]);
+                height[c] = 1 + Math.max(height[a], height[g]);
+            }
+            return c;
+        }
+        if (difference < -1) {
+            //rotate B up
+            int d = child1[b];
+            int e = child2[b];
+            child1[b] = a;
+            parent[b] = parent[a];
+            parent[a] = b;
+            replaceChild(parent[b], a, b);
+            if (height[d] > height[e]) {
+                child2[b] = d;
+                child1[a] = e;
+                parent[e] = a;
+                union(a, c, e);
+                union(b, a, d);
+                height[a] = 1 + Math.max(height[c], height[e]);
+                height[b] = 1 + Math.max(height[a], height[d]);
+            } else {
+                child2[b] = e;
+                child1[a] = d;
+                parent[d] = a;
+                union(a, c, d);
+                union(b, a, e);
+                height[a] = 1 + Math.max(height[c], height[d]);
+                height[b] = 1 + Math.max(height[a], height[e]);
+            }
+            return b;
+        }
+        return a;
+    }
+
+    private void replaceChild(int node, int oldChild, int newChild) {
+        if (node == NULL) {
+            root = newChild;
+        } else if (child1[node] == oldChild) {
+            child1[node] = newChild;
+        } else {
+            child2[node] = newChild;
+        }
+    }
+
+    private float childCost(int child, int leaf) {
+        if (isLeaf(child)) {
+            return unionArea(child, leaf);
+        }
+        return unionArea(child, leaf) - area(child);
+    }
+
+    private float area(int node) {
+        float x = maxX[node] - minX[node];
+        float y = maxY[node] - minY[node];
+        float z = maxZ[node] - minZ[node];
+        return 2 * (x * y + y * z + z * x);
+    }
+
+    private float unionArea(int node1, int node2) {
+        float x = Math.max(maxX[node1], maxX[node2]) - Math.min(minX[node1], minX[node2]);
+        float y = Math.max(maxY[node1], maxY[node2]) - Math.min(minY[node1], minY[node2]);
+        float z = Math.max(maxZ[node1], maxZ[node2]) - Math.min(minZ[node1], minZ[node2]);
+        return 2 * (x * y + y * z + z * x);
+    }
+
+    private void union(int store, int node1, int node2) {
+        minX[store] = Math.min(minX[node1], minX[node2]);
+        minY[store] = Math.min(minY[node1], minY[node2]);
+        minZ[store] = Math.min(minZ[node1], minZ[node2]);
+        maxX[store] = Math.max(maxX[node1], maxX[node2]);
+        maxY[store] = Math.max(maxY[node1], maxY[node2]);
+        maxZ[store] = Math.max(maxZ[node1], maxZ[node2]);
+    }
+
+    private int allocateNode() {
+        if (freeNode == NULL) {
+            int oldCapacity = nodeCapacity;
+            growNodes(oldCapacity * 2);
+        }
+        int node = freeNode;
+        freeNode = parent[node];
+        parent[node] = NULL;
+        child1[node] = NULL;
+        child2[node] = NULL;
+        height[node] = 0;
+        return node;
+    }
+
+    private void freeNode(int node) {
+        entities[node] = null;
+        height[node] = -1;
+        parent[node] = freeNode;
+        freeNode = node;
+    }
+
+    private void allocateNodes(int capacity) {
+        nodeCapacity = 0;
+        minX = new float[0];
+        minY = new float[0];
+        minZ = new float[0];
+        maxX = new float[0];
+        maxY = new float[0];
+        maxZ = new float[0];
+        parent = new int[0];
+        child1 = new int[0];
+        child2 = new int[0];
+        height = new int[0];
+        entities = new GameEntity[0];
+        layers = new int[0];
+        centerX = new float[0];
+        centerY = new float[0];
+        centerZ = new float[0];
+        radii = new float[0];
+        freeNode = NULL;
+        growNodes(capacity);
+    }
+
+    /**
+     * Making arrays larger and putting new nodes on list of free nodes.
+     */
+    private void growNodes(int capacity) {
+        minX = grow(minX, capacity);
+        minY = grow(minY, capacity);
+        minZ = grow(minZ, capacity);
+        maxX = grow(maxX, capacity);
+        maxY = grow(maxY, capacity);
+        maxZ = grow(maxZ, capacity);
+        parent = grow(parent, capacity);
+        child1 = grow(child1, capacity);
+        child2 = grow(child2, capacity);
+        height = grow(height, capacity);
+        GameEntity[] newEntities = new GameEntity[capacity];
+        System.arraycopy(entities, 0, newEntities, 0, nodeCapacity);
+        entities = newEntities;
+        layers = grow(layers, capacity);
+        centerX = grow(centerX, capacity);
+        centerY = grow(centerY, capacity);
+        centerZ = grow(centerZ, capacity);
+        radii = grow(radii, capacity);
+        for (int node = capacity - 1; node >= nodeCapacity; node--) {
+            height[node] = -1;
+            parent[node] = freeNode;
+            freeNode = node;
+        }
+        nodeCapacity = capacity;
+    }
+
+    private float[] grow(float[] array, int capacity) {
+        float[] newArray = new float[capacity];
+        System.arraycopy(array, 0, newArray, 0, nodeCapacity);
+        return newArray;
+    }
+
+    private int[] grow(int[] array, int capacity) {
+        int[] newArray = new int[capacity];
+        System.arraycopy(array, 0, newArray, 0, nodeCapacity);
+        return newArray;
+    }
+}
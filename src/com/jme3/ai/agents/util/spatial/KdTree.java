@@ -0,0 +1,481 @@
+/**
+ * Copyright (c) 2014, jMonkeyEngine All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *
+ * Redistributions of source code must retain the above copyright notice, this
+ * list of conditions and the following disclaimer.
+ *
+ * Redistributions in binary form must reproduce the above copyright notice,
+ * this list of conditions and the following disclaimer in the documentation
+ * and/or other materials provided with the distribution.
+ *
+ * Neither the name of 'jMonkeyEngine' nor the names of its contributors may be
+ * used to endorse or promote products derived from this software without
+ * specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ */
+package com.jme3.ai.agents.util.spatial;
+
+import com.jme3.ai.agents.util.GameEntity;
+import com.jme3.math.Vector3f;
+import java.util.IdentityHashMap;
+import java.util.Map;
+
+/**
+ * K-d tree of game entity positions, for finding k nearest game entities.
+ * Tree is built again from all positions every time it is refreshed, so it
+ * should be added to MonkeyBrainsAppState, which refreshes it once per tick.
+ * <br><br>
+ *
+ * Game entities added between two refreshes are checked one by one until next
+ * refresh, and removed ones are only skipped, so tree stays valid without
+ * being built again.
+ *
+ * @see
+ * com.jme3.ai.agents.util.control.MonkeyBrainsAppState#addSpatialIndex(com.jme3.ai.agents.util.spatial.SpatialIndex)
+ *
+ * @author Tihomir Radosavljević
+ * @version 1.0.0
+ */
+public class KdTree implements SpatialIndex {
+
+    private final Map<GameEntity, Integer> indexOf = new IdentityHashMap<GameEntity, Integer>();
+    /*
+     * Data of entries. Removed entries have null game entity until tree is
+     * built again.
+     */
+    private GameEntity[] entities = new GameEntity[16];
+    private int[] layers = new int[16];
+    private float[] xs = new float[16];
+    private float[] ys = new float[16];
+    private float[] zs = new float[16];
+    /**
+     * Number of entries, removed ones included.
+     */
+    private int count;
+    /**
+     * Number of entries in tree. Entries after them were added after tree was
+     * built.
+     */
+    private int treeCount;
+    /**
+     * Entries in tree order. Subtree of range [low, high) has its root in the
+     * middle of range.
+     */
+    private int[] order = new int[16];
+    /**
+     * Axis along which root of range splits it, 0 for x, 1 for y and 2 for z.
+     */
+    private byte[] axes = new byte[16];
+
+    public void add(GameEntity gameEntity, int layer) {
+        Integer index = indexOf.get(gameEntity);
+        if (index != null) {
+            layers[index] = layer;
+            return;
+        }
+        if (count == entities.length) {
+            grow(count * 2);
+        }
+        entities[count] = gameEntity;
+        layers[count] = layer;
+        readPosition(count);
+        indexOf.put(gameEntity, count);
+        count++;
+    }
+
+    public boolean remove(GameEntity gameEntity) {
+        Integer index = indexOf.remove(gameEntity);
+        if (index == null) {
+            return false;
+        }
+        entities[index] = null;
+        layers[index] = 0;
+        return true;
+    }
+
+    /**
+     * Reading current positions of all game entities and building tree again.
+     */
+    public void refresh() {
+        //removing entries of removed game entities
+        int live = 0;
+        for (int i = 0; i < count; i++) {
+            if (entities[i] != null) {
+                if (live != i) {
+                    entities[live] = entities[i];
+                    layers[live] = layers[i];
+                    indexOf.put(entities[live], live);
+                }
+                live++;
+            }
+        }
+        for (int i = live; i < count; i++) {
+            entities[i] = null;
+        }
+        count = live;
+        for (int i = 0; i < count; i++) {
+            readPosition(i);
+            order[i] = i;
+        }
+        build(0, count);
+        treeCount = count;
+    }
+
+    public void clear() {
+        for (int i = 0; i < count; i++) {
+            entities[i] = null;
+        }
+        indexOf.clear();
+        count = 0;
+        treeCount = 0;
+    }
+
+    public int size() {
+        return indexOf.size();
+    }
+
+    public int queryRadius(Vector3f center, float radius, int layerMask, GameEntity[] store) {
+        if (radius < 0) {
+            return 0;
+        }
+        float radiusSquared = radius * radius;
+        int found = queryRadius(0, treeCount, center, radiusSquared, layerMask, store, 0);
+        for (int i = treeCount; i < count && found < store.length; i++) {
+            if ((layers[i] & layerMask) != 0 && distanceSquared(i, center) <= radiusSquared) {
+                store[found++] = entities[i];
+            }
+        }
+        return found;
+    }
+
+    /**
+     * Finding k game entities closest to point, sorted from the closest one.
+     *
+     * @param point
+     * @param k maximum number of game entities that are found, at most length
+     * of ids and distancesSquared
+     * @param layerMask only game entities in these layers are found
+     * @param exclude game entity that is skipped, usually the one that asks,
+     * can be null
+     * @param ids array where ids of found game entities are written
+     * @param distancesSquared array where squared distances of found game
+     * entities are written
+     * @return number of found game entities
+     * @see GameEntity#getId()
+     */
+    public int queryNearest(Vector3f point, int k, int layerMask, GameEntity exclude, int[] ids, float[] distancesSquared) {
+        int found = findNearest(point, k, layerMask, exclude, ids, distancesSquared);
+        for (int i = 0; i < found; i++) {
+            ids[i] = entities[ids[i]].getId();
+        }
+        return found;
+    }
+
+    /**
+     * Finding k game entities closest to point, sorted from the closest one.
+     *
+     * @param store array where found game entities are written
+     * @see KdTree#queryNearest(com.jme3.math.Vector3f, int, int,
+     * com.jme3.ai.agents.util.GameEntity, int[], float[])
+     */
+    public int queryNearest(Vector3f point, int k, int layerMask, GameEntity exclude, int[] ids, float[] distancesSquared, GameEntity[] store) {
+        int found = findNearest(point, k, layerMask, exclude, ids, distancesSquared);
+        for (int i = 0; i < found; i++) {
+            store[i] = entities[ids[i]];
+            ids[i] = store[i].getId();
+        }
+        return found;
+    }
+
+    /**
+     * Search for k nearest entries. Until the end, ids and distancesSquared are
+     * max-heap of indices of entries, so the farthest of them is always on
+     * top.
+     *
+     * @return number of found entries, their indices are in ids sorted by
+     * distance
+     */
+    private int findNearest(Vector3f point, int k, int layerMask, GameEntity exclude, int[] ids, float[] distancesSquared) {
+        if (k < 0 || k > ids.length || k > distancesSquared.length) {
+            throw new IllegalArgumentException("K must be between 0 and length of result arrays. You inputed " + k + '.');
+        }
+        int found = findNearest(0, treeCount, point, k, layerMask, exclude, ids, distancesSquared, 0);
+        for (int i = treeCount; i < count; i++) {
+            found = offer(i, point, k, layerMask, exclude, ids, distancesSquared, found);
+        }
+        //heap sort, the farthest goes to the end
+        for (int last = found - 1; last > 0; last--) {
+            swap(ids, distancesSquared, 0, last);
+            siftDown(ids, distancesSquared, 0, last);
+        }
+        return found;
+    }
+
+    private int findNearest(int low, int high, Vector3f point, int k, int layerMask, GameEntity exclude, int[] ids, float[] distancesSquared, int found) {
+        if (low >= high || k == 0) {
+            return found;
+        }
+        int middle = (low + high) >>> 1;
+        int entry = order[middle];
+        found = offer(entry, point, k, layerMask, exclude, ids, distancesSquared, found);
+        float difference = coordinate(point, axes[middle]) - coordinate(entry, axes[middle]);
+        if (difference < 0) {
+            found = findNearest(low, middle, point, k, layerMask, exclude, ids, distancesSquared, found);
+            if (found < k || difference * difference < distancesSquared[0]) {
+                found = findNearest(middle + 1, high, point, k, layerMask, exclude, ids, distancesSquared, found);
+            }
+        } else {
+            found = findNearest(middle + 1, high, point, k, layerMask, exclude, ids, distancesSquared, found);
+            if (found < k || difference * difference < distancesSquared[0]) {
+                found = findNearest(low, middle, point, k, layerMask, exclude, ids, distancesSquared, found);
+            }
+        }
+        return found;
+    }
+
+    /**
+     * Putting entry in heap if it is closer than the farthest one in it.
+     *
+     * @return new size of heap
+     */
+    private int offer(int entry, Vector3f point, int k, int layerMask, GameEntity exclude, int[] ids, float[] distancesSquared, int found) {
+        if ((layers[entry] & layerMask) == 0 || entities[entry] == exclude) {
+            return found;
+        }
+        float distanceSquared = distanceSquared(entry, point);
+        if (found < k) {
+            //sift up
+            int child = found;
+            while (child > 0) {
+                int parent = (child - 1) >>> 1;
+                if (distancesSquared[parent] >= distanceSquared) {
+                    break;
+                }
+                ids[child] = ids[parent];
+                distancesSquared[child] = distancesSquared[parent];
+                child = parent;
+            }
+            ids[child] = entry;
+            distancesSquared[child] = distanceSquared;
+            return found + 1;
+        }
+        if (distanceSquared < distancesSquared[0]) {
+            ids[0] = entry;
+            distancesSquared[0] = distanceSquared;
+            siftDown(ids, distancesSquared, 0, found);
+        }
+        return found;
+    }
+
+    private static void siftDown(int[] ids, float[] distancesSquared, int parent, int size) {
+        while (true) {
+            int largest = parent;
+            int left = 2 * parent + 1;
+            int right = left + 1;
+            if (left < size && distancesSquared[left] > distancesSquared[largest]) {
+                largest = left;
+            }
+            if (right < size && distancesSquared[right] > distancesSquared[largest]) {
+                largest = right;
+            }
+            if (largest == parent) {
+                return;
+            }
+            swap(ids, distancesSquared, parent, largest);
+            parent = largest;
+        }
+    }
+
+    private static void swap(int[] ids, float[] distancesSquared, int i, int j) {
+        int id = ids[i];
+        ids[i] = ids[j];
+        ids[j] = id;
+        float distanceSquared = distancesSquared[i];
+        distancesSquared[i] = distancesSquared[j];
+        distancesSquared[j] = distanceSquared;
+    }
+
+    private int queryRadius(int low, int high, Vector3f center, float radiusSquared, int layerMask, GameEntity[] store, int found) {
+        if (low >= high || found == store.length) {
+            return found;
+        }
+        int middle = (low + high) >>> 1;
+        int entry = order[middle];
+        if ((layers[entry] & layerMask) != 0 && distanceSquared(entry, center) <= radiusSquared) {
+            store[found++] = entities[entry];
+        }
+        float difference = coordinate(center, axes[middle]) - coordinate(entry, axes[middle]);
+        if (difference <= 0 || difference * difference <= radiusSquared) {
+            found = queryRadius(low, middle, center, radiusSquared, layerMask, store, found);
+        }
+        if (difference >= 0 || difference * difference <= radiusSquared) {
+            found = queryRadius(middle + 1, high, center, radiusSquared, layerMask, store, found);
+        }
+        return found;
+    }
+
+    /**
+     * Building subtree of range [low, high) of order. Range is split along
+     * axis on which its entries are spread the most.
+     */
+    private void build(int low, int high) {
+        if (high - low < 2) {
+            if (low < high) {
+                axes[low] = 0;
+            }
+            return;
+        }
+        float minX = Float.POSITIVE_INFINITY;
+        float minY = Float.POSITIVE_INFINITY;
+        float minZ = Float.POSITIVE_INFINITY;
+        float maxX = Float.NEGATIVE_INFINITY;
+        float maxY = Float.NEGATIVE_INFINITY;
+        float maxZ = Float.NEGATIVE_INFINITY;
+        for (int i = low; i < high; i++) {
+            int entry = order[i];
+            minX = Math.min(minX, xs[entry]);
+            maxX = Math.max(maxX, xs[entry]);
+            minY = Math.min(minY, ys[entry]);
+            maxY = Math.max(maxY, ys[entry]);
+            minZ = Math.min(minZ, zs[entry]);
+            maxZ = Math.max(maxZ, zs[entry]);
+        }
+        float spreadX = maxX - minX;
+        float spreadY = maxY - minY;
+        float spreadZ = maxZ - minZ;
+        byte axis;
+        if (spreadX >= spreadY && spreadX >= spreadZ) {
+            axis = 0;
+        } else if (spreadY >= spreadZ) {
+            axis = 1;
+        } else {
+            axis = 2;
+        }
+        int middle = (low + high) >>> 1;
+        select(low, high - 1, middle, axis == 0 ? xs : axis == 1 ? ys : zs);
+        axes[middle] = axis;
+        build(low, middle);
+        build(middle + 1, high);
+    }
+
+    /**
+     * Quickselect, after it entry on index k of order is the one that would be
+     * there if range [left, right] was sorted by coordinates.
+     */
+    private void select(int left, int right, int k, float[] coordinates) {
+        while (right > left) {
+            //median of three as pivot
+            int middle = (left + right) >>> 1;
+            if (coordinates[order[middle]] < coordinates[order[left]]) {
+                swapOrder(middle, left);
+            }
+            if (coordinates[order[right]] < coordinates[order[left]]) {
+                swapOrder(right, left);
+            }
+            if (coordinates[order[right]] < coordinates[order[middle]]) {
+                swapOrder(right, middle);
+            }
+            float pivot = coordinates[order[middle]];
+            int i = left;
+            int j = right;
+            while (i <= j) {
+                while (coordinates[order[i]] < pivot) {
+                    i++;
+                }
+                while (coordinates[order[j]] > pivot) {
+                    j--;
+                }
+                if (i <= j) {
+                    swapOrder(i, j);
+                    i++;
+                    j--;
+                }
+            }
+            if (k <= j) {
+                right = j;
+            } else if (k >= i) {
+                left = i;
+            } else {
+                return;
+            }
+        }
+    }
+
+    private void swapOrder(int i, int j) {
+        int entry = order[i];
+        order[i] = order[j];
+        order[j] = entry;
+    }
+
+    private float coordinate(int entry, int axis) {
+        if (axis == 0) {
+            return xs[entry];
+        } else if (axis == 1) {
+            return ys[entry];
+        }
+        return zs[entry];
+    }
+
+    private static float coordinate(Vector3f point, int axis) {
+        if (axis == 0) {
+            return point.x;
+        } else if (axis == 1) {
+            return point.y;
+        }
+        return point.z;
+    }
+
+    private float distanceSquared(int entry, Vector3f point) {
+        float dx = xs[entry] - point.x;
+        float dy = ys[entry] - point.y;
+        float dz = zs[entry] - point.z;
+        return dx * dx + dy * dy + dz * dz;
+    }
+
+    private void readPosition(int entry) {
+        Vector3f position = entities[entry].getLocalTranslation();
+        xs[entry] = position.x;
+        ys[entry] = position.y;
+        zs[entry] = position.z;
+    }
+
+    private void grow(int capacity) {
+        GameEntity[] newEntities = new GameEntity[capacity];
+        System.arraycopy(entities, 0, newEntities, 0, count);
+        entities = newEntities;
+        layers = grow(layers, capacity);
+        xs = grow(xs, capacity);
+        ys = grow(ys, capacity);
+        zs = grow(zs, capacity);
+        order = grow(order, capacity);
+        byte[] newAxes = new byte[capacity];
+        System.arraycopy(axes, 0, newAxes, 0, count);
+        axes = newAxes;
+    }
+
+    private int[] grow(int[] array, int capacity) {
+        int[] newArray = new int[capacity];
+        System.arraycopy(array, 0, newArray, 0, count);
+        return newArray;
+    }
+
+    private float[] grow(float[] array, int capacity) {
+        float[] newArray = new float[capacity];
+        System.arraycopy(array, 0, newArray, 0, count);
+        return newArray;
+    }
+}
@@ -0,0 +1,475 @@
+/**
+ * Copyright (c) 2014, jMonkeyEngine All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *
+ * Redistributions of source code must retain the above copyright notice, this
+ * list of conditions and the following disclaimer.
+ *
+ * Redistributions in binary form must reproduce the above copyright notice,
+ * this list of conditions and the following disclaimer in the documentation
+ * and/or other materials provided with the distribution.
+ *
+ * Neither the name of 'jMonkeyEngine' nor the names of its contributors may be
+ * used to endorse or promote products derived from this software without
+ * specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ */
+package com.jme3.ai.agents.util.spatial;
+
+import com.jme3.ai.agents.util.GameEntity;
+import com.jme3.math.Vector3f;
+import java.util.Arrays;
+import java.util.IdentityHashMap;
+import java.util.Map;
+
+/**
+ * Uniform grid of cubic cells, where only cells that contain game entities
+ * exist. Cells are kept in open addressing hash map by their coordinates and
+ * game entities in same cell are linked into list, so moving game entity to
+ * another cell is done in constant time. <br><br>
+ *
+ * Queries don't allocate, they write found game entities into array given by
+ * caller. Cell size should be about the radius of most common queries.
+ *
+ * @author Tihomir Radosavljević
+ * @version 1.0.0
+ */
+public class SpatialHashGrid implements SpatialIndex {
+
+    /**
+     * Key of empty slot in map of cells. Real keys never have highest bit set.
+     */
+    private static final long EMPTY = Long.MIN_VALUE;
+    /**
+     * Number of bits for every coordinate of cell in key.
+     */
+    private static final int COORDINATE_BITS = 21;
+    private static final long COORDINATE_MASK = (1L << COORDINATE_BITS) - 1;
+    private final float cellSize;
+    private final float inverseCellSize;
+    /**
+     * Handle of every game entity in grid.
+     */
+    private final Map<GameEntity, Integer> handles = new IdentityHashMap<GameEntity, Integer>();
+    /*
+     * Data of game entities by handle, packed from 0 to size - 1.
+     */
+    private GameEntity[] entities;
+    private int[] layers;
+    private long[] cellOf;
+    private int[] next;
+    private int[] previous;
+    private float[] xs;
+    private float[] ys;
+    private float[] zs;
+    private int size;
+    /*
+     * Map of cells, from key of cell to first game entity in it. Cells that
+     * became empty are kept until map is rehashed.
+     */
+    private long[] cellKeys;
+    private int[] cellHeads;
+    private int cellCount;
+
+    public SpatialHashGrid() {
+        this(10);
+    }
+
+    /**
+     * @param cellSize length of edge of one cell
+     * @throws IllegalArgumentException if cell size isn't positive
+     */
+    public SpatialHashGrid(float cellSize) {
+        if (cellSize <= 0) {
+            throw new IllegalArgumentException("Cell size must be positive. You inputed " + cellSize + '.');
+        }
+        this.cellSize = cellSize;
+        inverseCellSize = 1f / cellSize;
+        entities = new GameEntity[16];
+        layers = new int[16];
+        cellOf = new long[16];
+        next = new int[16];
+        previous = new int[16];
+        xs = new float[16];
+        ys = new float[16];
+        zs = new float[16];
+        cellKeys = new long[32];
+        cellHeads = new int[32];
+        Arrays.fill(cellKeys, EMPTY);
+    }
+
+    public void add(GameEntity gameEntity, int layer) {
+        if (handles.containsKey(gameEntity)) {
+            remove(gameEntity);
+        }
+        if (size == entities.length) {
+            grow();
+        }
+        int handle = size++;
+        handles.put(gameEntity, handle);
+        entities[handle] = gameEntity;
+        layers[handle] = layer;
+        Vector3f position = gameEntity.getLocalTranslation();
+        xs[handle] = position.x;
+        ys[handle] = position.y;
+        zs[handle] = position.z;
+        link(handle, keyOf(position.x, position.y, position.z));
+    }
+
+    public boolean remove(GameEntity gameEntity) {
+        Integer removed = handles.remove(gameEntity);
+        if (removed == null) {
+            return false;
+        }
+        int handle = removed;
+        unlink(handle);
+        size--;
+        if (handle != size) {
+            //last game entity takes place of removed one
+            unlink(size);
+            entities[handle] = entities[size];
+            layers[handle] = layers[size];
+            xs[handle] = xs[size];
+            ys[handle] = ys[size];
+            zs[handle] = zs[size];
+            link(handle, cellOf[size]);
+            handles.put(entities[handle], handle);
+        }
+        entities[size] = null;
+        return true;
+    }
+
+    /**
+     * Reading current positions of all game entities. Game entities that
+     * stayed in same cell are only given new position.
+     */
+    public void refresh() {
+        for (int handle = 0; handle < size; handle++) {
+            Vector3f position = entities[handle].getLocalTranslation();
+            xs[handle] = position.x;
+            ys[handle] = position.y;
+            zs[handle] = position.z;
+            long key = keyOf(position.x, position.y, position.z);
+            if (key != cellOf[handle]) {
+                unlink(handle);
+                link(handle, key);
+            }
+        }
+    }
+
+    public void clear() {
+        for (int i = 0; i < size; i++) {
+            entities[i] = null;
+        }
+        size = 0;
+        handles.clear();
+        Arrays.fill(cellKeys, EMPTY);
+        cellCount = 0;
+    }
+
+    public int size() {
+        return size;
+    }
+
+    /**
+     * @param gameEntity
+     * @return true if game entity is in grid
+     */
+    public boolean contains(GameEntity gameEntity) {
+        return handles.containsKey(gameEntity);
+    }
+
+    public float getCellSize() {
+        return cellSize;
+    }
+
+    public int queryRadius(Vector3f center, float radius, int layerMask, GameEntity[] store) {
+        return queryCone(center, null, radius, -1, layerMask, store);
+    }
+
+    /**
+     * Finding game entities inside of cone, like field of view.
+     *
+     * @param apex apex of cone
+     * @param direction normalized direction of cone, null for all directions
+     * @param range maximum distance from apex
+     * @param cosHalfAngle cosine of angle between direction and side of cone
+     * @param layerMask only game entities in these layers are found
+     * @param store array where found game entities are written, search stops
+     * when it is full
+     * @return number of game entities written into store
+     */
+    public int queryCone(Vector3f apex, Vector3f direction, float range, float cosHalfAngle, int layerMask, GameEntity[] store) {
+        float rangeSquared = range * range;
+        int count = 0;
+        int minX = cellIndex(apex.x - range);
+        int minY = cellIndex(apex.y - range);
+        int minZ = cellIndex(apex.z - range);
+        int maxX = cellIndex(apex.x + range);
+        int maxY = cellIndex(apex.y + range);
+        int maxZ = cellIndex(apex.z + range);
+        if (isCheaperToScan(minX, minY, minZ, maxX, maxY, maxZ)) {
+            for (int handle = 0; handle < size && count < store.length; handle++) {
+                if (inCone(handle, apex, direction, rangeSquared, cosHalfAngle, layerMask)) {
+                    store[count++] = entities[handle];
+                }
+            }
+            return count;
+        }
+        for (int x = minX; x <= maxX; x++) {
+            for (int y = minY; y <= maxY; y++) {
+                for (int z = minZ; z <= maxZ; z++) {
+                    int slot = findCell(key(x, y, z));
+                    if (slot < 0) {
+                        continue;
+                    }
+                    for (int handle = cellHeads[slot]; handle != -1; handle = next[handle]) {
+                        if (inCone(handle, apex, direction, rangeSquared, cosHalfAngle, layerMask)) {
+                            store[count++] = entities[handle];
+                            if (count == store.length) {
+                                return count;
+                            }
+                        }
+                    }
+                }
+            }
+        }
+        return count;
+    }
+
+    /**
+     * Finding game entities inside of axis aligned box.
+     *
+     * @param min corner of box with smallest coordinates
+     * @param max corner of box with largest coordinates
+     * @param layerMask only game entities in these layers are found
+     * @param store array where found game entities are written, search stops
+     * when it is full
+     * @return number of game entities written into store
+     */
+    public int queryBox(Vector3f min, Vector3f max, int layerMask, GameEntity[] store) {
+        int count = 0;
+        int minX = cellIndex(min.x);
+        int minY = cellIndex(min.y);
+        int minZ = cellIndex(min.z);
+        int maxX = cellIndex(max.x);
+        int maxY = cellIndex(max.y);
+        int maxZ = cellIndex(max.z);
+        if (isCheaperToScan(minX, minY, minZ, maxX, maxY, maxZ)) {
+            for (int handle = 0; handle < size && count < store.length; handle++) {
+                if (inBox(handle, min, max, layerMask)) {
+                    store[count++] = entities[handle];
+                }
+            }
+            return count;
+        }
+        for (int x = minX; x <= maxX; x++) {
+            for (int y = minY; y <= maxY; y++) {
+                for (int z = minZ; z <= maxZ; z++) {
+                    int slot = findCell(key(x, y, z));
+                    if (slot < 0) {
+                        continue;
+                    }
+                    for (int handle = cellHeads[slot]; handle != -1; handle = next[handle]) {
+                        if (inBox(handle, min, max, layerMask)) {
+                            store[count++] = entities[handle];
+                            if (count == store.length) {
+                                return count;
+                            }
+                        }
+                    }
+                }
+            }
+        }
+        return count;
+    }
+
+    private boolean inCone(int handle, Vector3f apex, Vector3f direction, float rangeSquared, float cosHalfAngle, int layerMask) {
+        if ((layers[handle] & layerMask) == 0) {
+            return false;
+        }
+        float dx = xs[handle] - apex.x;
+        float dy = ys[handle] - apex.y;
+        float dz = zs[handle] - apex.z;
+        float distanceSquared = dx * dx + dy * dy + dz * dz;
+        if (distanceSquared > rangeSquared) {
+            return false;
+        }
+        if (direction == null || distanceSquared == 0) {
+            return true;
+        }
+        float dot = dx * direction.x + dy * direction.y + dz * direction.z;
+        if (cosHalfAngle >= 0) {
+            return dot >= 0 && dot * dot >= cosHalfAngle * cosHalfAngle * distanceSquared;
+        }
+        return dot >= 0 || dot * dot <= cosHalfAngle * cosHalfAngle * distanceSquared;
+    }
+
+    private boolean inBox(int handle, Vector3f min, Vector3f max, int layerMask) {
+        return (layers[handle] & layerMask) != 0
+                && xs[handle] >= min.x && xs[handle] <= max.x
+                && ys[handle] >= min.y && ys[handle] <= max.y
+                && zs[handle] >= min.z && zs[handle] <= max.z;
+    }
+
+    /**
+     * If query covers more cells than there are game entities, it is faster
+     * to check all game entities.
+     */
+    private boolean isCheaperToScan(int minX, int minY, int minZ, int maxX, int maxY, int maxZ) {
+        long cells = (long) (maxX - minX + 1) * (maxY - minY + 1) * (maxZ - minZ + 1);
+        return cells > size;
+    }
+
+    private int cellIndex(float coordinate) {
+        return (int) Math.floor(coordinate * inverseCellSize);
+    }
+
+    private long keyOf(float x, float y, float z) {
+        return key(cellIndex(x), cellIndex(y), cellIndex(z));
+    }
+
+    private long key(int x, int y, int z) {
+        return ((x & COORDINATE_MASK) << (2 * COORDINATE_BITS))
+                | ((y & COORDINATE_MASK) << COORDINATE_BITS)
+                | (z & COORDINATE_MASK);
+    }
+
+    private int hash(long key) {
+        long h = key * 0x9E3779B97F4A7C15L;
+        return (int) (h >>> 32) & (cellKeys.length - 1);
+    }
+
+    /**
+     * @param key
+     * @return slot of cell in map, -1 if cell doesn't exist
+     */
+    private int findCell(long key) {
+        int mask = cellKeys.length - 1;
+        for (int slot = hash(key);; slot = (slot + 1) & mask) {
+            if (cellKeys[slot] == key) {
+                return slot;
+            }
+            if (cellKeys[slot] == EMPTY) {
+                return -1;
+            }
+        }
+    }
+
+    private int findOrCreateCell(long key) {
+        int slot = findCell(key);
+        if (slot >= 0) {
+            return slot;
+        }
+        if ((cellCount + 1) * 2 > cellKeys.length) {
+            rehash();
+        }
+        int mask = cellKeys.length - 1;
+        slot = hash(key);
+        while (cellKeys[slot] != EMPTY) {
+            slot = (slot + 1) & mask;
+        }
+        cellKeys[slot] = key;
+        cellHeads[slot] = -1;
+        cellCount++;
+        return slot;
+    }
+
+    /**
+     * Rebuilding map of cells without empty cells, and making it larger if
+     * most cells are used.
+     */
+    private void rehash() {
+        long[] oldKeys = cellKeys;
+        int[] oldHeads = cellHeads;
+        int used = 0;
+        for (int i = 0; i < oldKeys.length; i++) {
+            if (oldKeys[i] != EMPTY && oldHeads[i] != -1) {
+                used++;
+            }
+        }
+        int capacity = oldKeys.length;
+        while ((used + 1) * 4 > capacity) {
+            capacity *= 2;
+        }
+        cellKeys = new long[capacity];
+        cellHeads = new int[capacity];
+        Arrays.fill(cellKeys, EMPTY);
+        cellCount = 0;
+        int mask = capacity - 1;
+        for (int i = 0; i < oldKeys.length; i++) {
+            if (oldKeys[i] != EMPTY && oldHeads[i] != -1) {
+                int slot = hash(oldKeys[i]);
+                while (cellKeys[slot] != EMPTY) {
+                    slot = (slot + 1) & mask;
+                }
+                cellKeys[slot] = oldKeys[i];
+                cellHeads[slot] = oldHeads[i];
+                cellCount++;
+            }
+        }
+    }
+
+    private void link(int handle, long key) {
+        int slot = findOrCreateCell(key);
+        cellOf[handle] = key;
+        previous[handle] = -1;
+        next[handle] = cellHeads[slot];
+        if (next[handle] != -1) {
+            previous[next[handle]] = handle;
+        }
+        cellHeads[slot] = handle;
+    }
+
+    private void unlink(int handle) {
+        if (previous[handle] != -1) {
+            next[previous[handle]] = next[handle];
+        } else {
+            cellHeads[findCell(cellOf[handle])] = next[handle];
+        }
+        if (next[handle] != -1) {
+            previous[next[handle]] = previous[handle];
+        }
+    }
+
+    private void grow() {
+        int capacity = entities.length * 2;
+        GameEntity[] newEntities = new GameEntity[capacity];
+        System.arraycopy(entities, 0, newEntities, 0, size);
+        entities = newEntities;
+        layers = grow(layers, capacity);
+        next = grow(next, capacity);
+        previous = grow(previous, capacity);
+        long[] newCellOf = new long[capacity];
+        System.arraycopy(cellOf, 0, newCellOf, 0, size);
+        cellOf = newCellOf;
+        xs = grow(xs, capacity);
+        ys = grow(ys, capacity);
+        zs = grow(zs, capacity);
+    }
+
+    private int[] grow(int[] array, int capacity) {
+        int[] newArray = new int[capacity];
+        System.arraycopy(array, 0, newArray, 0, size);
+        return newArray;
+    }
+
+    private float[] grow(float[] array, int capacity) {
+        float[] newArray = new float[capacity];
+        System.arraycopy(array, 0, newArray, 0, size);
+        return newArray;
+    }
+}
@@ -0,0 +1,102 @@
+/**
+ * Copyright (c) 2014, jMonkeyEngine All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *
+ * Redistributions of source code must retain the above copyright notice, this
+ * list of conditions and the following disclaimer.
+ *
+ * Redistributions in binary form must reproduce the above copyright notice,
+ * this list of conditions and the following disclaimer in the documentation
+ * and/or other materials provided with the distribution.
+ *
+ * Neither the name of 'jMonkeyEngine' nor the names of its contributors may be
+ * used to endorse or promote products derived from this software without
+ * specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ */
+package com.jme3.ai.agents.util.spatial;
+
+import com.jme3.ai.agents.util.GameEntity;
+import com.jme3.math.Vector3f;
+
+/**
+ * Structure for finding game entities near some point faster than checking
+ * all of them. Positions of game entities are read when they are added and
+ * when index is refreshed, and queries use those positions, so index can be
+ * queried from many threads between two refreshes.
+ *
+ * @author Tihomir Radosavljević
+ * @version 1.0.0
+ */
+public interface SpatialIndex {
+
+    /**
+     * Layer of agents.
+     */
+    public static final int AGENT_LAYER = 1;
+    /**
+     * Layer of game entities that are not agents.
+     */
+    public static final int GAME_ENTITY_LAYER = 2;
+    /**
+     * Mask for querying game entities in all layers.
+     */
+    public static final int ALL_LAYERS = -1;
+
+    /**
+     * Adding game entity to index.
+     *
+     * @param gameEntity
+     * @param layer layer bit of game entity, queries can filter game entities
+     * by it
+     */
+    public void add(GameEntity gameEntity, int layer);
+
+    /**
+     * Removing game entity from index.
+     *
+     * @param gameEntity
+     * @return true if game entity was in index
+     */
+    public boolean remove(GameEntity gameEntity);
+
+    /**
+     * Reading current positions of all game entities in index.
+     */
+    public void refresh();
+
+    /**
+     * Removing all game entities from index.
+     */
+    public void clear();
+
+    /**
+     * @return number of game entities in index
+     */
+    public int size();
+
+    /**
+     * Finding game entities inside of sphere.
+     *
+     * @param center center of sphere
+     * @param radius radius of sphere
+     * @param layerMask only game entities in these layers are found
+     * @param store array where found game entities are written, search stops
+     * when it is full
+     * @return number of game entities written into store
+     */
+    public int queryRadius(Vector3f center, float radius, int layerMask, GameEntity[] store);
+}
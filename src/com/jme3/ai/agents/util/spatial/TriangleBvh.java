@@ -0,0 +1,390 @@
+/**
+ * Copyright (c) 2014, jMonkeyEngine All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *
+ * Redistributions of source code must retain the above copyright notice, this
+ * list of conditions and the following disclaimer.
+ *
+ * Redistributions in binary form must reproduce the above copyright notice,
+ * this list of conditions and the following disclaimer in the documentation
+ * and/or other materials provided with the distribution.
+ *
+ * Neither the name of 'jMonkeyEngine' nor the names of its contributors may be
+ * used to endorse or promote products derived from this software without
+ * specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ */
+package com.jme3.ai.agents.util.spatial;
+
+import com.jme3.math.Vector3f;
+import com.jme3.scene.Spatial;
+
+/**
+ * Bounding volume hierarchy over triangles of static spatial, for ray casts
+ * that don't walk scene graph. Triangles are read once in world space, so
+ * hierarchy must be built again if spatial moves or changes. <br><br>
+ *
+ * Every node splits its triangles in half along the axis on which their
+ * centers are spread the most. Nodes and triangles are kept in arrays in
+ * depth first order, and ray casts don't allocate, so hierarchy can be used
+ * from many threads.
+ *
+ * @author Tihomir Radosavljević
+ * @version 1.0.0
+ */
+public class TriangleBvh {
+
+    /**
+     * Largest number of triangles in leaf.
+     */
+    private static final int LEAF_SIZE = 4;
+    private static final long NO_HIT = 0xFFFFFFFFL;
+    /**
+     * Corners of triangles in order of leaves, 9 floats per triangle.
+     */
+    private final float[] triangles;
+    private final float[] normals;
+    private float[] minX;
+    private float[] minY;
+    private float[] minZ;
+    private float[] maxX;
+    private float[] maxY;
+    private float[] maxZ;
+    /**
+     * For inner node index of its second child, first child is next node.
+     * For leaf index of its first triangle.
+     */
+    private int[] next;
+    /**
+     * Number of triangles in leaf, 0 for inner node.
+     */
+    private int[] counts;
+    private int nodeCount;
+
+    /**
+     * Building hierarchy from triangles of spatial.
+     *
+     * @param spatial node or geometry, in world space
+     */
+    public TriangleBvh(Spatial spatial) {
+        this(DistanceField.collectTriangles(spatial));
+    }
+
+    /**
+     * @param triangles corners of triangles, 9 floats per triangle
+     */
+    TriangleBvh(float[] triangles) {
+        int triangleCount = triangles.length / 9;
+        int[] order = new int[triangleCount];
+        float[] centers = new float[triangleCount * 3];
+        for (int t = 0; t < triangleCount; t++) {
+            order[t] = t;
+            for (int axis = 0; axis < 3; axis++) {
+                centers[t * 3 + axis] = (triangles[t * 9 + axis] + triangles[t * 9 + 3 + axis] + triangles[t * 9 + 6 + axis]) / 3;
+            }
+        }
+        int capacity = Math.max(1, 2 * triangleCount);
+        minX = new float[capacity];
+        minY = new float[capacity];
+        minZ = new float[capacity];
+        maxX = new float[capacity];
+        maxY = new float[capacity];
+        maxZ = new float[capacity];
+        next = new int[capacity];
+        counts = new int[capacity];
+        if (triangleCount > 0) {
+            build(triangles, order, centers, 0, triangleCount);
+        }
+        //triangles in order of leaves
+        this.triangles = new float[triangles.length];
+        this.normals = new float[triangleCount * 3];
+        for (int i = 0; i < triangleCount; i++) {
+            System.arraycopy(triangles, order[i] * 9, this.triangles, i * 9, 9);
+            computeNormal(i);
+        }
+    }
+
+    /**
+     * @return index of built node
+     */
+    private int build(float[] triangles, int[] order, float[] centers, int from, int to) {
+        int node = nodeCount++;
+        float nMinX = Float.POSITIVE_INFINITY;
+        float nMinY = Float.POSITIVE_INFINITY;
+        float nMinZ = Float.POSITIVE_INFINITY;
+        float nMaxX = Float.NEGATIVE_INFINITY;
+        float nMaxY = Float.NEGATIVE_INFINITY;
+        float nMaxZ = Float.NEGATIVE_INFINITY;
+        float cMinX = Float.POSITIVE_INFINITY;
+        float cMinY = Float.POSITIVE_INFINITY;
+        float cMinZ = Float.POSITIVE_INFINITY;
+        float cMaxX = Float.NEGATIVE_INFINITY;
+        float cMaxY = Float.NEGATIVE_INFINITY;
+        float cMaxZ = Float.NEGATIVE_INFINITY;
+        for (int i = from; i < to; i++) {
+            int t = order[i];
+            for (int corner = t * 9; corner < t * 9 + 9; corner += 3) {
+                nMinX = Math.min(nMinX, triangles[corner]);
+                nMinY = Math.min(nMinY, triangles[corner + 1]);
+                nMinZ = Math.min(nMinZ, triangles[corner + 2]);
+                nMaxX = Math.max(nMaxX, triangles[corner]);
+                nMaxY = Math.max(nMaxY, triangles[corner + 1]);
+                nMaxZ = Math.max(nMaxZ, triangles[corner + 2]);
+            }
+            cMinX = Math.min(cMinX, centers[t * 3]);
+            cMinY = Math.min(cMinY, centers[t * 3 + 1]);
+            cMinZ = Math.min(cMinZ, centers[t * 3 + 2]);
+            cMaxX = Math.max(cMaxX, centers[t * 3]);
+            cMaxY = Math.max(cMaxY, centers[t * 3 + 1]);
+            cMaxZ = Math.max(cMaxZ, centers[t * 3 + 2]);
+        }
+        minX[node] = nMinX;
+        minY[node] = nMinY;
+        minZ[node] = nMinZ;
+        maxX[node] = nMaxX;
+        maxY[node] = nMaxY;
+        maxZ[node] = nMaxZ;
+        if (to - from <= LEAF_SIZE) {
+            next[node] = from;
+            counts[node] = to - from;
+            return node;
+        }
+        float spreadX = cMaxX - cMinX;
+        float spreadY = cMaxY - cMinY;
+        float spreadZ = cMaxZ - cMinZ;
+        int axis;
+        if (spreadX >= spreadY && spreadX >= spreadZ) {
+            axis = 0;
+        } else if (spreadY >= spreadZ) {
+            axis = 1;
+        } else {
+            axis = 2;
+        }
+        int middle = (from + to) >>> 1;
+        select(order, centers, axis, from, to - 1, middle);
+        counts[node] = 0;
+        build(triangles, order, centers, from, middle);
+        next[node] = build(triangles, order, centers, middle, to);
+        return node;
+    }
+
+    /**
+     * Quickselect of triangles by center along axis.
+     */
+    private static void select(int[] order, float[] centers, int axis, int left, int right, int k) {
+        while (right > left) {
+            float pivot = centers[order[(left + right) >>> 1] * 3 + axis];
+            int i = left;
+            int j = right;
+            while (i <= j) {
+                while (centers[order[i] * 3 + axis] < pivot) {
+                    i++;
+                }
+                while (centers[order[j] * 3 + axis] > pivot) {
+                    j--;
+                }
+                if (i <= j) {
+                    int temp = order[i];
+                    order[i] = order[j];
+                    order[j] = temp;
+                    i++;
+                    j--;
+                }
+            }
+            if (k <= j) {
+                right = j;
+            } else if (k >= i) {
+                left = i;
+            } else {
+                return;
+            }
+        }
+    }
+
+    /**
+     * Finding the closest triangle hit by ray. Both sides of triangles are
+     * hit.
+     *
+     * @param origin start of ray
+     * @param direction direction of ray, distances are in its lengths
+     * @param maxDistance triangles farther than this are not hit
+     * @param storePoint vector where hit point is written, can be null
+     * @param storeNormal vector where unit normal of hit triangle is written,
+     * can be null
+     * @return distance to hit, Float.POSITIVE_INFINITY if nothing is hit
+     */
+    public float intersect(Vector3f origin, Vector3f direction, float maxDistance, Vector3f storePoint, Vector3f storeNormal) {
+        if (nodeCount == 0 || !(maxDistance >= 0)) {
+            return Float.POSITIVE_INFINITY;
+        }
+        float limit = Math.min(maxDistance, Float.MAX_VALUE);
+        long best = closest(0, origin, direction, ((long) Float.floatToIntBits(limit) << 32) | NO_HIT);
+        int triangle = (int) best;
+        if (triangle < 0) {
+            return Float.POSITIVE_INFINITY;
+        }
+        float distance = Float.intBitsToFloat((int) (best >>> 32));
+        if (storePoint != null) {
+            storePoint.set(direction).multLocal(distance).addLocal(origin);
+        }
+        if (storeNormal != null) {
+            storeNormal.set(normals[triangle * 3], normals[triangle * 3 + 1], normals[triangle * 3 + 2]);
+        }
+        return distance;
+    }
+
+    /**
+     * @return number of triangles in hierarchy
+     */
+    public int getTriangleCount() {
+        return triangles.length / 9;
+    }
+
+    /**
+     * Searching subtree for closer hit. Distance of the closest hit so far is
+     * in upper half of best and index of its triangle in lower half, -1 if
+     * there isn't one. Non negative floats keep their order as ints.
+     */
+    private long closest(int node, Vector3f origin, Vector3f direction, long best) {
+        float limit = Float.intBitsToFloat((int) (best >>> 32));
+        if (!hitsBox(node, origin, direction, limit)) {
+            return best;
+        }
+        int count = counts[node];
+        if (count > 0) {
+            int first = next[node];
+            for (int t = first; t < first + count; t++) {
+                float distance = intersectTriangle(t, origin, direction);
+                if (distance >= 0 && distance < limit) {
+                    limit = distance;
+                    best = ((long) Float.floatToIntBits(distance) << 32) | t;
+                }
+            }
+            return best;
+        }
+        best = closest(node + 1, origin, direction, best);
+        return closest(next[node], origin, direction, best);
+    }
+
+    private boolean hitsBox(int node, Vector3f origin, Vector3f direction, float limit) {
+        float tMin = 0;
+        float tMax = limit;
+        for (int axis = 0; axis < 3; axis++) {
+            float o;
+            float d;
+            float low;
+            float high;
+            if (axis == 0) {
+                o = origin.x;
+                d = direction.x;
+                low = minX[node];
+                high = maxX[node];
+            } else if (axis == 1) {
+                o = origin.y;
+                d = direction.y;
+                low = minY[node];
+                high = maxY[node];
+            } else {
+                o = origin.z;
+                d = direction.z;
+                low = minZ[node];
+                high = maxZ[node];
+            }
+            if (d == 0) {
+                if (o < low || o > high) {
+                    return false;
+                }
+                continue;
+            }
+            float t1 = (low - o) / d;
+            float t2 = (high - o) / d;
+            if (t1 > t2) {
+                float temp = t1;
+                t1 = t2;
+                t2 = temp;
+            }
+            tMin = Math.max(tMin, t1);
+            tMax = Math.min(tMax, t2);
+            if (tMin > tMax) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Moller-Trumbore intersection.
+     *
+     * @return distance to hit, negative if triangle is not hit
+     */
+    private float intersectTriangle(int triangle, Vector3f origin, Vector3f direction) {
+        int base = triangle * 9;
+        float ax = triangles[base];
+        float ay = triangles[base + 1];
+        float az = triangles[base + 2];
+        float e1x = triangles[base + 3] - ax;
+        float e1y = triangles[base + 4] - ay;
+        float e1z = triangles[base + 5] - az;
+        float e2x = triangles[base + 6] - ax;
+        float e2y = triangles[base + 7] - ay;
+        float e2z = triangles[base + 8] - az;
+        float px = direction.y * e2z - direction.z * e2y;
+        float py = direction.z * e2x - direction.x * e2z;
+        float pz = direction.x * e2y - direction.y * e2x;
+        float determinant = e1x * px + e1y * py + e1z * pz;
+        if (determinant == 0) {
+            return -1;
+        }
+        float inverse = 1 / determinant;
+        float sx = origin.x - ax;
+        float sy = origin.y - ay;
+        float sz = origin.z - az;
+        float u = (sx * px + sy * py + sz * pz) * inverse;
+        if (u < 0 || u > 1) {
+            return -1;
+        }
+        float qx = sy * e1z - sz * e1y;
+        float qy = sz * e1x - sx * e1z;
+        float qz = sx * e1y - sy * e1x;
+        float v = (direction.x * qx + direction.y * qy + direction.z * qz) * inverse;
+        if (v < 0 || u + v > 1) {
+            return -1;
+        }
+        return (e2x * qx + e2y * qy + e2z * qz) * inverse;
+    }
+
+    private void computeNormal(int triangle) {
+        int base = triangle * 9;
+        float e1x = triangles[base + 3] - triangles[base];
+        float e1y = triangles[base + 4] - triangles[base + 1];
+        float e1z = triangles[base + 5] - triangles[base + 2];
+        float e2x = triangles[base + 6] - triangles[base];
+        float e2y = triangles[base + 7] - triangles[base + 1];
+        float e2z = triangles[base + 8] - triangles[base + 2];
+        float nx = e1y * e2z - e1z * e2y;
+        float ny = e1z * e2x - e1x * e2z;
+        float nz = e1x * e2y - e1y * e2x;
+        float length = (float) Math.sqrt(nx * nx + ny * ny + nz * nz);
+        if (length > 0) {
+            nx /= length;
+            ny /= length;
+            nz /= length;
+        }
+        normals[triangle * 3] = nx;
+        normals[triangle * 3 + 1] = ny;
+        normals[triangle * 3 + 2] = nz;
+    }
+}
@@ -31,7 +31,6 @@ package monkeystuff.bluepillagent;
 
 import com.jme3.ai.agents.Agent;
 import com.jme3.ai.agents.behaviors.Behavior;
-import com.jme3.ai.agents.util.control.MonkeyBrainsAppState;
 import com.jme3.input.controls.ActionListener;
 import com.jme3.math.Plane;
 import com.jme3.math.Ray;
@@ -46,7 +45,7 @@ import java.util.List;
  * ActionListener.
  *
  * @author Tihomir Radosavljević
- * @version 1.0.1
+ * @version 1.0.2
  */
 public class SimplePlayerAttackBehavior extends BluePillBehavior implements ActionListener {
 
@@ -83,7 +82,7 @@ public class SimplePlayerAttackBehavior extends BluePillBehavior implements Acti
         operation = name;
         if (isPressed) {
             supportedOperations.get(operation).setEnabled(true);
-            Vector2f click2d = MonkeyBrainsAppState.getInstance().getApp().getInputManager().getCursorPosition();
+            Vector2f click2d = agent.getAppState().getApp().getInputManager().getCursorPosition();
             Vector3f click3d = agent.getCamera().getWorldCoordinates(new Vector2f(click2d.x, click2d.y), 0f).clone();
             Vector3f dir = agent.getCamera().getWorldCoordinates(new Vector2f(click2d.x, click2d.y), 1f).subtractLocal(click3d).normalizeLocal();
             Ray ray = new Ray(click3d, dir);
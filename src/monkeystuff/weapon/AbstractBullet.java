@@ -33,10 +33,14 @@ import com.jme3.ai.agents.util.GameEntity;
 import com.jme3.scene.Spatial;
 
 /**
- * Base class for bullets in game.
+ * Base class for bullets in game. Bullets that are taken from BulletPool
+ * should be removed from game with expire(), so they are returned to their
+ * pool.
+ *
+ * @see BulletPool
  *
  * @author Tihomir Radosavljević
- * @version 1.0.0
+ * @version 1.1.1
  */
 public abstract class AbstractBullet extends GameEntity {
 
@@ -44,6 +48,16 @@ public abstract class AbstractBullet extends GameEntity {
      * Weapon from which bullet was fired.
      */
     protected AbstractBulletBasedWeapon weapon;
+    /**
+     * Pool that created bullet, null if bullet isn't pooled.
+     */
+    private BulletPool<?> pool;
+    private boolean inPool;
+    /**
+     * Number of sync points that app state had done when bullet was released
+     * during update.
+     */
+    private long releaseSyncCount;
 
     /**
      * Constructor for AbstractBullet.
@@ -73,4 +87,57 @@ public abstract class AbstractBullet extends GameEntity {
     public void setWeapon(AbstractBulletBasedWeapon weapon) {
         this.weapon = weapon;
     }
+
+    /**
+     * Removing bullet from game. If bullet is from pool, it is returned to
+     * it.
+     */
+    public void expire() {
+        getAppState().removeGameEntity(this);
+        if (pool != null) {
+            pool.release(this);
+        }
+    }
+
+    /**
+     * Called when bullet is taken from pool, before it is fired.
+     */
+    protected void onAcquire() {
+    }
+
+    /**
+     * Called when bullet is returned to pool.
+     */
+    protected void onRelease() {
+    }
+
+    /**
+     * @return pool that created bullet, null if bullet isn't pooled
+     */
+    public BulletPool<?> getPool() {
+        return pool;
+    }
+
+    void setPool(BulletPool<?> pool) {
+        this.pool = pool;
+    }
+
+    /**
+     * @return true if bullet is released to its pool
+     */
+    public boolean isInPool() {
+        return inPool;
+    }
+
+    void setInPool(boolean inPool) {
+        this.inPool = inPool;
+    }
+
+    long getReleaseSyncCount() {
+        return releaseSyncCount;
+    }
+
+    void setReleaseSyncCount(long releaseSyncCount) {
+        this.releaseSyncCount = releaseSyncCount;
+    }
 }
@@ -30,14 +30,16 @@
 package monkeystuff.weapon;
 
 import monkeystuff.weapon.AbstractBullet;
-import com.jme3.ai.agents.util.control.MonkeyBrainsAppState;
 import com.jme3.math.Vector3f;
 
 /**
- * Weapons with bullets.
+ * Weapons with bullets. Bullets can be taken from BulletPool, so they are
+ * used again instead of created for every shot.
+ *
+ * @see BulletPool
  *
  * @author Tihomir Radosavljević
- * @version 1.0.0
+ * @version 1.2.0
  */
 public abstract class AbstractBulletBasedWeapon extends AbstractWeapon {
 
@@ -46,6 +48,10 @@ public abstract class AbstractBulletBasedWeapon extends AbstractWeapon {
      * update().
      */
     protected AbstractBullet bullet;
+    /**
+     * Pool from which fired bullets are taken, null if bullets aren't pooled.
+     */
+    protected BulletPool<? extends AbstractBullet> bulletPool;
 
     /**
      * Method for creating bullets and setting them to move.
@@ -62,11 +68,15 @@ public abstract class AbstractBulletBasedWeapon extends AbstractWeapon {
         if (isInCooldown()) {
             return;
         }
+        //are all bullets from pool already fired
+        if (bulletPool != null && !bulletPool.canAcquire()) {
+            return;
+        }
         //fire bullet
         AbstractBullet firedBullet = controlAttack(direction, tpf);
         if (firedBullet != null) {
             //if there is bullet than add it to be updated regulary in game
-            MonkeyBrainsAppState.getInstance().addGameEntity(firedBullet);
+            getAppState().addGameEntity(firedBullet);
         }
         //set weapon cooldown
         setFullCooldown();
@@ -84,8 +94,37 @@ public abstract class AbstractBulletBasedWeapon extends AbstractWeapon {
         this.bullet = bullet;
     }
 
+    public BulletPool<? extends AbstractBullet> getBulletPool() {
+        return bulletPool;
+    }
+
+    /**
+     * Setting pool from which bullets are fired. Weapons that fire same type
+     * of bullet can share one pool.
+     *
+     * @param bulletPool pool of bullets, null for not pooling bullets
+     */
+    public void setBulletPool(BulletPool<? extends AbstractBullet> bulletPool) {
+        this.bulletPool = bulletPool;
+    }
+
+    /**
+     * Getting bullet that should be fired from pool. Use it in
+     * controlAttack().
+     *
+     * @return bullet from pool, or null if there isn't pool or all its bullets
+     * are fired
+     */
+    protected AbstractBullet acquireBullet() {
+        if (bulletPool == null) {
+            return null;
+        }
+        return bulletPool.acquire(this);
+    }
+
     /**
-     * Setting bullet that should be fired and giving it initial velocity.
+     * Setting bullet that should be fired and giving it initial velocity. If
+     * weapon has bullet pool, bullet should be taken with acquireBullet().
      *
      * @param direction
      * @param tpf
@@ -31,13 +31,14 @@ package monkeystuff.weapon;
 
 import com.jme3.ai.agents.Agent;
 import com.jme3.ai.agents.util.GameEntity;
+import com.jme3.ai.agents.util.control.MonkeyBrainsAppState;
 import com.jme3.math.Vector3f;
 
 /**
  * Abstract class for defining weapons used by agents.
  *
  * @author Tihomir Radosavljević
- * @version 2.0.0
+ * @version 2.1.0
  */
 public abstract class AbstractWeapon extends GameEntity {
 
@@ -171,6 +172,18 @@ public abstract class AbstractWeapon extends GameEntity {
         return agent;
     }
 
+    /**
+     * @return game of weapon, or game of agent that has this weapon if weapon
+     * isn't added to any
+     */
+    @Override
+    public MonkeyBrainsAppState getAppState() {
+        if (appState == null && agent != null) {
+            return agent.getAppState();
+        }
+        return super.getAppState();
+    }
+
     public void setAgent(Agent agent) {
         this.agent = agent;
     }
@@ -0,0 +1,259 @@
+/**
+ * Copyright (c) 2014, jMonkeyEngine All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *
+ * Redistributions of source code must retain the above copyright notice, this
+ * list of conditions and the following disclaimer.
+ *
+ * Redistributions in binary form must reproduce the above copyright notice,
+ * this list of conditions and the following disclaimer in the documentation
+ * and/or other materials provided with the distribution.
+ *
+ * Neither the name of 'jMonkeyEngine' nor the names of its contributors may be
+ * used to endorse or promote products derived from this software without
+ * specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ */
+package monkeystuff.weapon;
+
+import com.jme3.ai.agents.util.control.MonkeyBrainsAppState;
+
+/**
+ * Pool of bullets of one type. Bullets are created only when there aren't any
+ * released bullets to be used again, and there can never be more than
+ * capacity bullets created by one pool. <br><br>
+ *
+ * Bullet that is released while game is updating waits for next sync point
+ * of its MonkeyBrainsAppState, where its removal from game is done, so it
+ * isn't given again while its removal is still waiting. <br><br>
+ *
+ * All methods are synchronized, so one pool can be shared by weapons of
+ * agents that are updated in parallel.
+ *
+ * @see AbstractBulletBasedWeapon#setBulletPool(BulletPool)
+ * @see AbstractBullet#expire()
+ *
+ * @author Tihomir Radosavljević
+ * @version 1.1.0
+ */
+public abstract class BulletPool<T extends AbstractBullet> {
+
+    /**
+     * Maximum number of bullets that this pool can create.
+     */
+    private final int capacity;
+    /**
+     * Stack of bullets that can be used again.
+     */
+    private AbstractBullet[] free;
+    private int freeCount;
+    /**
+     * Queue of released bullets whose removal from game waits for sync point,
+     * in order in which they were released.
+     */
+    private AbstractBullet[] pending;
+    private int pendingHead;
+    private int pendingCount;
+    /**
+     * Number of bullets created by this pool.
+     */
+    private int created;
+
+    /**
+     * @param capacity maximum number of bullets that pool can create
+     * @throws IllegalArgumentException if capacity isn't positive
+     */
+    public BulletPool(int capacity) {
+        if (capacity <= 0) {
+            throw new IllegalArgumentException("Capacity of bullet pool must be positive: " + capacity);
+        }
+        this.capacity = capacity;
+        int initialSize = Math.min(capacity, 16);
+        free = new AbstractBullet[initialSize];
+        pending = new AbstractBullet[initialSize];
+    }
+
+    /**
+     * Creating new bullet of type of this pool.
+     *
+     * @return new bullet
+     */
+    protected abstract T createBullet();
+
+    /**
+     * Called when bullet is taken from pool, before it is fired. Override for
+     * resetting state of bullet.
+     *
+     * @param bullet bullet that is used
+     */
+    protected void onAcquire(T bullet) {
+    }
+
+    /**
+     * Called when bullet is returned to pool.
+     *
+     * @param bullet bullet that is released
+     */
+    protected void onRelease(T bullet) {
+    }
+
+    /**
+     * Creating bullets in advance, so they don't have to be created during
+     * game. Number of created bullets never goes over capacity.
+     *
+     * @param count number of bullets that should be ready in pool
+     */
+    public synchronized void prewarm(int count) {
+        int toCreate = Math.min(count - freeCount, capacity - created);
+        for (int i = 0; i < toCreate; i++) {
+            T bullet = createBullet();
+            bullet.setPool(this);
+            created++;
+            push(bullet);
+        }
+    }
+
+    /**
+     * @return true if acquire() will return bullet
+     */
+    public synchronized boolean canAcquire() {
+        return freeCount > 0 || created < capacity || collectPending() > 0;
+    }
+
+    /**
+     * Getting bullet from pool. Released bullet is used if there is one,
+     * otherwise new one is created.
+     *
+     * @param weapon weapon that fires bullet
+     * @return bullet, or null if all bullets that pool can have are in use
+     */
+    @SuppressWarnings("unchecked")
+    public synchronized T acquire(AbstractBulletBasedWeapon weapon) {
+        T bullet;
+        if (freeCount > 0 || collectPending() > 0) {
+            bullet = (T) free[--freeCount];
+            free[freeCount] = null;
+        } else if (created < capacity) {
+            bullet = createBullet();
+            bullet.setPool(this);
+            created++;
+        } else {
+            return null;
+        }
+        bullet.setInPool(false);
+        bullet.setWeapon(weapon);
+        bullet.onAcquire();
+        onAcquire(bullet);
+        return bullet;
+    }
+
+    /**
+     * Returning bullet to pool. Releasing bullet that isn't from this pool or
+     * that is already released is ignored.
+     *
+     * @param bullet bullet that isn't used anymore
+     * @return true if bullet is returned to pool
+     * @see AbstractBullet#expire()
+     */
+    @SuppressWarnings("unchecked")
+    public synchronized boolean release(AbstractBullet bullet) {
+        if (bullet.getPool() != this || bullet.isInPool()) {
+            return false;
+        }
+        bullet.onRelease();
+        onRelease((T) bullet);
+        bullet.setInPool(true);
+        MonkeyBrainsAppState appState = bullet.getAppState();
+        if (appState.isUpdating()) {
+            //removal of bullet is done in next sync point
+            bullet.setReleaseSyncCount(appState.getSyncCount());
+            if (pendingCount == pending.length) {
+                pending = growQueue(pending, pendingHead, pendingCount);
+                pendingHead = 0;
+            }
+            pending[(pendingHead + pendingCount) % pending.length] = bullet;
+            pendingCount++;
+        } else {
+            push(bullet);
+        }
+        return true;
+    }
+
+    private void push(AbstractBullet bullet) {
+        if (freeCount == free.length) {
+            free = growQueue(free, 0, freeCount);
+        }
+        free[freeCount++] = bullet;
+        bullet.setInPool(true);
+    }
+
+    /**
+     * Moving released bullets whose sync point has passed to free bullets.
+     * Bullets are checked in order of release, so checking stops at the
+     * first one that is still waiting.
+     *
+     * @return number of moved bullets
+     */
+    private int collectPending() {
+        int collected = 0;
+        while (pendingCount > 0) {
+            AbstractBullet bullet = pending[pendingHead];
+            if (bullet.getAppState().getSyncCount() == bullet.getReleaseSyncCount()) {
+                break;
+            }
+            pending[pendingHead] = null;
+            pendingHead = (pendingHead + 1) % pending.length;
+            pendingCount--;
+            push(bullet);
+            collected++;
+        }
+        return collected;
+    }
+
+    private AbstractBullet[] growQueue(AbstractBullet[] array, int head, int count) {
+        AbstractBullet[] newArray = new AbstractBullet[Math.min(capacity, array.length * 2)];
+        for (int i = 0; i < count; i++) {
+            newArray[i] = array[(head + i) % array.length];
+        }
+        return newArray;
+    }
+
+    public int getCapacity() {
+        return capacity;
+    }
+
+    /**
+     * @return number of bullets created by this pool
+     */
+    public synchronized int getCreatedCount() {
+        return created;
+    }
+
+    /**
+     * @return number of released bullets, including those whose removal from
+     * game is still waiting
+     */
+    public synchronized int getFreeCount() {
+        return freeCount + pendingCount;
+    }
+
+    /**
+     * @return number of bullets that are acquired and not released
+     */
+    public synchronized int getActiveCount() {
+        return created - freeCount - pendingCount;
+    }
+}